@@ -0,0 +1,53 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Alphabet.toInt.
+ *  @author Sharona Yang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+@State(Scope.Thread)
+public class AlphabetBenchmark {
+
+    /** Alphabet size. */
+    @Param({ "26", "96", "1024" })
+    private int size;
+
+    /** Alphabet under test. */
+    private Alphabet alphabet;
+
+    /** Its characters. */
+    private char[] chars;
+
+    /** Index of the next character to look up. */
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String alpha = BenchmarkData.alphabet(size);
+        alphabet = new Alphabet(alpha);
+        chars = alpha.toCharArray();
+    }
+
+    @Benchmark
+    public int toInt() {
+        next = next + 1 == chars.length ? 0 : next + 1;
+        return alphabet.toInt(chars[next]);
+    }
+}
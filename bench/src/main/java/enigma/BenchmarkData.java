@@ -0,0 +1,154 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/** Deterministic generators of alphabets, configurations and message
+ *  corpora of any size, for benchmarks.
+ *  @author Sharona Yang
+ */
+final class BenchmarkData {
+
+    /** Not instantiable. */
+    private BenchmarkData() {
+    }
+
+    /** Return a string of SIZE distinct characters usable as an alphabet
+     *  in a configuration file: the upper-case letters if SIZE <= 26, and
+     *  otherwise printable non-space characters other than '*', '(' and
+     *  ')'. */
+    static String alphabet(int size) {
+        if (size <= 26) {
+            return "ABCDEFGHIJKLMNOPQRSTUVWXYZ".substring(0, size);
+        }
+        StringBuilder result = new StringBuilder();
+        for (char c = '!'; result.length() < size; c += 1) {
+            if (c != '*' && c != '(' && c != ')'
+                && !Character.isWhitespace(c) && !Character.isISOControl(c)
+                && !Character.isSurrogate(c) && Character.isDefined(c)) {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return a random permutation of ALPHA in cycle notation, drawn from
+     *  RANDOM. If INVOLUTION, the cycles are pairs. */
+    static String cycles(String alpha, SplittableRandom random,
+                         boolean involution) {
+        char[] chars = alpha.toCharArray();
+        for (int i = chars.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            char t = chars[i];
+            chars[i] = chars[j];
+            chars[j] = t;
+        }
+        StringBuilder result = new StringBuilder();
+        int i = 0;
+        while (i < chars.length) {
+            int len = involution ? 2 : 1 + random.nextInt(chars.length - i);
+            len = Math.min(len, chars.length - i);
+            result.append('(').append(chars, i, len).append(") ");
+            i += len;
+        }
+        return result.toString().trim();
+    }
+
+    /** Return a configuration over an alphabet of SIZE characters with
+     *  NUMROTORS slots, PAWLS pawls and ROTORS moving rotors (named M0,
+     *  M1, ...), plus one reflector R and NUMROTORS-PAWLS-1 fixed rotors
+     *  (named N0, N1, ...), generated from SEED. */
+    static String config(int size, int numRotors, int pawls, int rotors,
+                         long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String alpha = alphabet(size);
+        StringBuilder result = new StringBuilder();
+        result.append(alpha).append('\n');
+        result.append(numRotors).append(' ').append(pawls).append('\n');
+        result.append("R R ").append(cycles(alpha, random, true))
+            .append('\n');
+        for (int k = 0; k < numRotors - pawls - 1; k += 1) {
+            result.append('N').append(k).append(" N ")
+                .append(cycles(alpha, random, false)).append('\n');
+        }
+        for (int k = 0; k < rotors; k += 1) {
+            result.append('M').append(k).append(" M")
+                .append(alpha.charAt(random.nextInt(size))).append(' ')
+                .append(cycles(alpha, random, false)).append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Return a settings line for a configuration made by config() with
+     *  the same SIZE, NUMROTORS and PAWLS, with PLUGS plugboard pairs,
+     *  drawn from RANDOM. */
+    static String settings(int size, int numRotors, int pawls, int plugs,
+                           SplittableRandom random) {
+        String alpha = alphabet(size);
+        StringBuilder result = new StringBuilder("* R");
+        for (int k = 0; k < numRotors - pawls - 1; k += 1) {
+            result.append(" N").append(k);
+        }
+        for (int k = 0; k < pawls; k += 1) {
+            result.append(" M").append(k);
+        }
+        result.append(' ');
+        for (int k = 1; k < numRotors; k += 1) {
+            result.append(alpha.charAt(random.nextInt(size)));
+        }
+        String pairs = cycles(alpha, random, true);
+        if (plugs > 0) {
+            result.append(' ').append(pairs, 0,
+                                      Math.min(pairs.length(), 5 * plugs));
+        }
+        return result.toString().trim();
+    }
+
+    /** Return an input file of LINES message lines of LENGTH characters
+     *  (in groups of five) over an alphabet of SIZE, with a new settings
+     *  line every SEGMENT lines, for a configuration made by config() with
+     *  the same SIZE, NUMROTORS and PAWLS, generated from SEED. */
+    static String corpus(int size, int numRotors, int pawls, int lines,
+                         int length, int segment, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String alpha = alphabet(size);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < lines; i += 1) {
+            if (i % segment == 0) {
+                result.append(settings(size, numRotors, pawls, 5, random))
+                    .append('\n');
+            }
+            for (int j = 0; j < length; j += 1) {
+                if (j % 5 == 0 && j != 0) {
+                    result.append(' ');
+                }
+                result.append(alpha.charAt(random.nextInt(size)));
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Return a temporary file containing TEXT in UTF-8, deleted on
+     *  exit. */
+    static Path tempFile(String text) throws IOException {
+        Path result = Files.createTempFile("enigma-bench", ".txt");
+        result.toFile().deleteOnExit();
+        Files.write(result, text.getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    /** Return a machine configured from the text CONFIG and set up with
+     *  the settings line SETTINGS. */
+    static Machine machine(String config, String settings)
+        throws IOException {
+        Main main = new Main(List.of(tempFile(config).toString()));
+        Machine result = main.readConfig();
+        main.setUp(result, settings);
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package enigma;
+
+import java.io.IOException;
+import java.util.List;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Main.readConfig on generated configurations.
+ *  @author Sharona Yang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+@State(Scope.Thread)
+public class ConfigBenchmark {
+
+    /** Alphabet size. */
+    @Param({ "26", "96", "1024" })
+    private int size;
+
+    /** Number of moving rotors described. */
+    @Param({ "8", "64" })
+    private int rotors;
+
+    /** Name of the configuration file. */
+    private String config;
+
+    @Setup
+    public void setUp() throws IOException {
+        config = BenchmarkData.tempFile(BenchmarkData.config(size, 5, 3,
+                                                             rotors, 1))
+            .toString();
+    }
+
+    @Benchmark
+    public Machine readConfig() {
+        return new Main(List.of(config)).readConfig();
+    }
+}
@@ -0,0 +1,149 @@
+package enigma;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Machine.convert on single characters and on messages
+ *  of various lengths, with a five-slot, three-pawl machine, and of
+ *  Machine and CompiledMachine on buffers of indices.
+ *  @author Sharona Yang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+public class MachineBenchmark {
+
+    /** A keyed machine and a stream of characters to convert. */
+    @State(Scope.Thread)
+    public static class Chars {
+
+        /** Alphabet size. */
+        @Param({ "26", "96", "1024" })
+        private int size;
+
+        /** Machine under test. */
+        private Machine machine;
+
+        /** Index of the next value to convert. */
+        private int next;
+
+        @Setup
+        public void setUp() throws IOException {
+            machine = keyed(size);
+        }
+    }
+
+    /** A keyed machine and a message to convert. */
+    @State(Scope.Thread)
+    public static class Messages {
+
+        /** Alphabet size. */
+        @Param({ "26", "96" })
+        private int size;
+
+        /** Message length. */
+        @Param({ "10", "100", "1000", "10000" })
+        private int length;
+
+        /** Machine under test. */
+        private Machine machine;
+
+        /** Message to convert. */
+        private String message;
+
+        @Setup
+        public void setUp() throws IOException {
+            machine = keyed(size);
+            String alpha = BenchmarkData.alphabet(size);
+            SplittableRandom random = new SplittableRandom(2);
+            StringBuilder msg = new StringBuilder();
+            for (int i = 0; i < length; i += 1) {
+                msg.append(alpha.charAt(random.nextInt(size)));
+            }
+            message = msg.toString();
+        }
+    }
+
+    /** A keyed machine, its compiled equivalent, and a buffer of
+     *  indices to convert. */
+    @State(Scope.Thread)
+    public static class Buffers {
+
+        /** Alphabet size. */
+        @Param({ "26", "96" })
+        private int size;
+
+        /** Interpreted machine under test. */
+        private Machine machine;
+
+        /** Compiled machine under test. */
+        private CompiledMachine compiled;
+
+        /** Indices to convert. */
+        private int[] message;
+
+        /** Converted indices. */
+        private int[] result;
+
+        @Setup
+        public void setUp() throws IOException {
+            machine = keyed(size);
+            compiled = CompiledMachine.compile(machine);
+            SplittableRandom random = new SplittableRandom(2);
+            message = new int[10000];
+            result = new int[message.length];
+            for (int i = 0; i < message.length; i += 1) {
+                message[i] = random.nextInt(size);
+            }
+        }
+    }
+
+    /** Return a machine over an alphabet of SIZE, keyed. */
+    static Machine keyed(int size) throws IOException {
+        return BenchmarkData.machine(BenchmarkData.config(size, 5, 3, 8, 1),
+                                     BenchmarkData.settings(
+                                         size, 5, 3, 10,
+                                         new SplittableRandom(1)));
+    }
+
+    @Benchmark
+    public int convertChar(Chars state) {
+        state.next = state.next + 1 == state.size ? 0 : state.next + 1;
+        return state.machine.convert(state.next);
+    }
+
+    @Benchmark
+    public String convertMessage(Messages state) {
+        return state.machine.convert(state.message);
+    }
+
+    @Benchmark
+    public int[] convertBuffer(Buffers state) {
+        state.machine.convert(state.message, state.result,
+                              state.message.length);
+        return state.result;
+    }
+
+    @Benchmark
+    public int[] convertBufferCompiled(Buffers state) {
+        state.compiled.convert(state.message, state.result,
+                               state.message.length);
+        return state.result;
+    }
+}
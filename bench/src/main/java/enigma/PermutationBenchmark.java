@@ -0,0 +1,60 @@
+package enigma;
+
+import java.util.SplittableRandom;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Permutation.permute and Permutation.invert.
+ *  @author Sharona Yang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+@State(Scope.Thread)
+public class PermutationBenchmark {
+
+    /** Alphabet size. */
+    @Param({ "26", "96", "1024" })
+    private int size;
+
+    /** Permutation under test. */
+    private Permutation perm;
+
+    /** Index of the next value to convert. */
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String alpha = BenchmarkData.alphabet(size);
+        perm = new Permutation(BenchmarkData.cycles(alpha,
+                                                    new SplittableRandom(1),
+                                                    false),
+                               new Alphabet(alpha));
+    }
+
+    @Benchmark
+    public int permute() {
+        next = next + 1 == size ? 0 : next + 1;
+        return perm.permute(next);
+    }
+
+    @Benchmark
+    public int invert() {
+        next = next + 1 == size ? 0 : next + 1;
+        return perm.invert(next);
+    }
+}
@@ -0,0 +1,63 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end benchmarks of Main.process on generated corpora of
+ *  64-character lines, with a new settings line every 100 lines.
+ *  @author Sharona Yang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+@State(Scope.Thread)
+public class ProcessBenchmark {
+
+    /** Alphabet size. */
+    @Param({ "26", "96" })
+    private int size;
+
+    /** Number of message lines. */
+    @Param({ "100", "10000" })
+    private int lines;
+
+    /** Files named on the command line: config, input, output. */
+    private List<String> args;
+
+    @Setup
+    public void setUp() throws IOException {
+        Path output = Files.createTempFile("enigma-bench", ".out");
+        output.toFile().deleteOnExit();
+        args = List.of(BenchmarkData.tempFile(
+                           BenchmarkData.config(size, 5, 3, 8, 1)).toString(),
+                       BenchmarkData.tempFile(
+                           BenchmarkData.corpus(size, 5, 3, lines, 64, 100,
+                                                1)).toString(),
+                       output.toString());
+    }
+
+    @Benchmark
+    public void process() {
+        Main main = new Main(args);
+        main.process();
+        main.close();
+    }
+}
@@ -0,0 +1,59 @@
+package enigma;
+
+import java.util.SplittableRandom;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Rotor.convertForward.
+ *  @author Sharona Yang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfile.encoding=UTF-8")
+@State(Scope.Thread)
+public class RotorBenchmark {
+
+    /** Alphabet size. */
+    @Param({ "26", "96", "1024" })
+    private int size;
+
+    /** Rotor under test. */
+    private Rotor rotor;
+
+    /** Index of the next value to convert. */
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String alpha = BenchmarkData.alphabet(size);
+        Alphabet alphabet = new Alphabet(alpha);
+        rotor = new MovingRotor("M",
+                                new Permutation(
+                                    BenchmarkData.cycles(
+                                        alpha, new SplittableRandom(1),
+                                        false),
+                                    alphabet),
+                                alpha.substring(0, 1));
+        rotor.set(size / 3);
+    }
+
+    @Benchmark
+    public int convertForward() {
+        next = next + 1 == size ? 0 : next + 1;
+        return rotor.convertForward(next);
+    }
+}
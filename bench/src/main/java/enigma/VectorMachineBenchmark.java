@@ -0,0 +1,102 @@
+package enigma;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of a VectorMachine against the same number of scalar
+ *  Machines converting the same message, each lane a five-slot,
+ *  three-pawl machine at its own random start position.  Both are built
+ *  during setup, so only conversion is measured.  The scalar machines go
+ *  back to their start positions after each message; the vector lanes
+ *  carry on from where the last one left them, which costs the same.
+ *  @author Sharona Yang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Dfile.encoding=UTF-8",
+                                   "--add-modules", "jdk.incubator.vector" })
+public class VectorMachineBenchmark {
+
+    /** Keyed machines, one per lane, and a message for all of them. */
+    @State(Scope.Thread)
+    public static class Lanes {
+
+        /** Alphabet size. */
+        @Param({ "26", "96" })
+        private int size;
+
+        /** Number of lanes. */
+        @Param({ "8", "64" })
+        private int lanes;
+
+        /** Machines under test, at their start positions. */
+        private Machine[] keys;
+
+        /** Start positions of the lanes. */
+        private int[][] positions;
+
+        /** Indices to convert. */
+        private int[] message;
+
+        /** The vector machine running all of the keys. */
+        private VectorMachine vector;
+
+        /** Converted indices of each lane. */
+        private int[][] result;
+
+        @Setup
+        public void setUp() throws IOException {
+            Machine template = MachineBenchmark.keyed(size);
+            SplittableRandom random = new SplittableRandom(lanes);
+            keys = new Machine[lanes];
+            positions = new int[lanes][template.numRotors() - 1];
+            for (int k = 0; k < lanes; k += 1) {
+                keys[k] = template.copy();
+                for (int i = 0; i < positions[k].length; i += 1) {
+                    positions[k][i] = random.nextInt(size);
+                }
+                keys[k].setRotors(positions[k]);
+            }
+            message = new int[10000];
+            for (int i = 0; i < message.length; i += 1) {
+                message[i] = random.nextInt(size);
+            }
+            result = new int[lanes][message.length];
+            vector = new VectorMachine(keys);
+        }
+    }
+
+    @Benchmark
+    public int[][] convertScalar(Lanes state) {
+        for (int k = 0; k < state.lanes; k += 1) {
+            Machine mach = state.keys[k];
+            mach.convert(state.message, state.result[k],
+                         state.message.length);
+            mach.setRotors(state.positions[k]);
+        }
+        return state.result;
+    }
+
+    @Benchmark
+    public int[][] convertVector(Lanes state) {
+        state.vector.convert(state.message, state.result,
+                             state.message.length);
+        return state.result;
+    }
+}
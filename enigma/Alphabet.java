@@ -1,4 +1,7 @@
 package enigma;
+
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
@@ -24,6 +27,15 @@ class Alphabet {
                 _alphabet[i] = chars.charAt(i);
             }
         }
+        int limit = 0;
+        for (char c : _alphabet) {
+            limit = Math.max(limit, c + 1);
+        }
+        _index = new int[limit];
+        Arrays.fill(_index, -1);
+        for (int i = 0; i < _alphabet.length; i++) {
+            _index[_alphabet[i]] = i;
+        }
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -38,12 +50,7 @@ class Alphabet {
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        for (int i = 0; i < _alphabet.length; i++) {
-            if (_alphabet[i] == ch) {
-                return true;
-            }
-        }
-        return false;
+        return indexOf(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
@@ -58,18 +65,22 @@ class Alphabet {
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        int index = 0;
-        for (int i = 0; i < _alphabet.length; i++) {
-            if (_alphabet[i] == ch) {
-                index = i;
-            }
-        }
-        return index;
+        return Math.max(0, indexOf(ch));
+    }
+
+    /** Returns the index of character CH, or -1 if it is not in the
+     *  alphabet. */
+    int indexOf(char ch) {
+        return ch < _index.length ? _index[ch] : -1;
     }
 
     /** Alphabet array. */
     private char[] _alphabet;
 
+    /** Index of each character in _alphabet, or -1, indexed by
+     *  character (up to the largest one in the alphabet). */
+    private int[] _index;
+
     /** The current character. */
     private char currChar;
 }
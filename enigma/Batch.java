@@ -0,0 +1,294 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** Runs many Enigma jobs in one JVM.  A job is a configuration file, an
+ *  input file and an output file, processed exactly as Main would.  Each
+ *  distinct configuration is read only once.  Jobs run on a
+ *  work-stealing pool, largest input first, so that one big file started
+ *  last does not leave the other threads idle at the end.  Afterwards a
+ *  report gives the status and time of each job.
+ *  @author Sharona Yang
+ */
+public final class Batch {
+
+    /** Run the jobs listed in the manifest ARGS[0], each line of which
+     *  gives the names of a configuration, input and output file separated
+     *  by whitespace (blank lines and lines starting with '#' are
+     *  ignored).  Options: --threads sets the pool size (default: the
+     *  number of processors), --keystream is as for Main, and --report
+     *  names the file for the report (default: the standard output).
+     *  Exits normally if every job succeeds; otherwise with code 1. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--threads=(\\d+){0,1} "
+                                + "--keystream=(\\d+){0,1} "
+                                + "--report=(.+){0,1} --=(.*){1,1}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Batch [--threads=N] "
+                            + "[--keystream=N] [--report=FILE] MANIFEST");
+            }
+            Batch batch = new Batch(readManifest(options.get("--").get(0)));
+            batch._keystreamLength =
+                Main.intOption(options, "--keystream",
+                               batch._keystreamLength);
+            int threads = Math.max(1, Main.intOption(
+                options, "--threads",
+                Runtime.getRuntime().availableProcessors()));
+            boolean ok = batch.run(threads);
+            PrintStream report = System.out;
+            if (options.contains("--report")) {
+                report = new PrintStream(
+                    new File(options.get("--report").get(0)));
+            }
+            batch.report(report);
+            report.close();
+            if (ok) {
+                return;
+            }
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the jobs listed in the manifest file named NAME. */
+    static List<Job> readManifest(String name) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+        ArrayList<Job> result = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i += 1) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 3) {
+                throw error("%s:%d: expected CONFIG INPUT OUTPUT", name,
+                            i + 1);
+            }
+            result.add(new Job(fields[0], fields[1], fields[2]));
+        }
+        return result;
+    }
+
+    /** A batch of JOBS. */
+    Batch(List<Job> jobs) {
+        _jobs = jobs;
+    }
+
+    /** Run all my jobs on a pool of THREADS threads, returning true iff
+     *  all succeed. */
+    boolean run(int threads) {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            HashMap<String, ForkJoinTask<Config>> configs = new HashMap<>();
+            for (Job job : _jobs) {
+                if (!configs.containsKey(job.config())) {
+                    String name = job.config();
+                    configs.put(name, pool.submit(() -> readConfig(name)));
+                }
+            }
+            ArrayList<Job> bySize = new ArrayList<>(_jobs);
+            bySize.sort(Comparator.comparingLong(Job::bytes).reversed());
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Job job : bySize) {
+                ForkJoinTask<Config> config = configs.get(job.config());
+                tasks.add(pool.submit(() -> job.run(config.join())));
+            }
+            boolean ok = true;
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+            for (Job job : _jobs) {
+                ok &= job.ok();
+            }
+            return ok;
+        } finally {
+            pool.shutdown();
+            _elapsed = System.nanoTime() - start;
+        }
+    }
+
+    /** Return the configuration file named NAME, read. */
+    private Config readConfig(String name) {
+        try {
+            Main parsed = new Main(List.of(name));
+            parsed.useKeystreams(_keystreamLength);
+            Machine template = parsed.readConfig();
+            parsed.close();
+            return new Config(parsed, template, null);
+        } catch (EnigmaException excp) {
+            return new Config(null, null, excp.getMessage());
+        } catch (RuntimeException excp) {
+            return new Config(null, null, excp.toString());
+        }
+    }
+
+    /** Write a line per job (in manifest order) to REPORT, giving its
+     *  status, time in milliseconds, input size, files and any error
+     *  message, followed by a summary. */
+    void report(PrintStream report) {
+        report.println("# status\tms\tbytes\tconfig\tinput\toutput\tmessage");
+        int failed = 0;
+        for (Job job : _jobs) {
+            report.printf("%s\t%.3f\t%d\t%s\t%s\t%s\t%s%n",
+                          job.ok() ? "OK" : "ERROR", job.nanos() / 1e6,
+                          job.bytes(), job.config(), job.input(),
+                          job.output(), job.message());
+            if (!job.ok()) {
+                failed += 1;
+            }
+        }
+        report.printf("# %d jobs, %d failed, %.3f ms elapsed%n",
+                      _jobs.size(), failed, _elapsed / 1e6);
+    }
+
+    /** A configuration read once for all the jobs that use it. */
+    private static final class Config {
+
+        /** The Main instance PARSED that read the configuration into
+         *  TEMPLATE, or the ERROR that reading it caused. */
+        Config(Main parsed, Machine template, String error) {
+            _parsed = parsed;
+            _template = template;
+            _error = error;
+        }
+
+        /** Main instance whose configuration fields are filled in. */
+        private final Main _parsed;
+
+        /** Machine that jobs copy. */
+        private final Machine _template;
+
+        /** Error message, or null if the configuration is good. */
+        private final String _error;
+    }
+
+    /** One configuration, input and output, and the outcome of running
+     *  it. */
+    static final class Job {
+
+        /** A job converting the file INPUT into OUTPUT with the
+         *  configuration file CONFIG. */
+        Job(String config, String input, String output) {
+            _config = config;
+            _input = input;
+            _output = output;
+            _bytes = new File(input).length();
+            _message = "not run";
+        }
+
+        /** Run me with CONFIG, the result of reading my configuration. */
+        void run(Config config) {
+            long start = System.nanoTime();
+            try {
+                if (config._error != null) {
+                    throw error("%s", config._error);
+                }
+                Main main = new Main(config._parsed, _input, _output);
+                try {
+                    main.process(config._template.copy());
+                } finally {
+                    main.close();
+                }
+                _ok = true;
+                _message = "";
+            } catch (EnigmaException excp) {
+                _message = excp.getMessage();
+            } catch (RuntimeException excp) {
+                _message = excp.toString();
+            } finally {
+                _nanos = System.nanoTime() - start;
+            }
+        }
+
+        /** Return the name of my configuration file. */
+        String config() {
+            return _config;
+        }
+
+        /** Return the name of my input file. */
+        String input() {
+            return _input;
+        }
+
+        /** Return the name of my output file. */
+        String output() {
+            return _output;
+        }
+
+        /** Return the size of my input file when I was created. */
+        long bytes() {
+            return _bytes;
+        }
+
+        /** Return true iff I have run successfully. */
+        boolean ok() {
+            return _ok;
+        }
+
+        /** Return my error message, or "" if none. */
+        String message() {
+            return _message;
+        }
+
+        /** Return the time I took to run, in nanoseconds. */
+        long nanos() {
+            return _nanos;
+        }
+
+        /** Configuration file name. */
+        private final String _config;
+
+        /** Input file name. */
+        private final String _input;
+
+        /** Output file name. */
+        private final String _output;
+
+        /** Input size in bytes. */
+        private final long _bytes;
+
+        /** True iff run successfully. */
+        private boolean _ok;
+
+        /** Error message. */
+        private String _message;
+
+        /** Running time in nanoseconds. */
+        private long _nanos;
+    }
+
+    /** Jobs in manifest order. */
+    private final List<Job> _jobs;
+
+    /** Keystream length for Main, or 0. */
+    private int _keystreamLength;
+
+    /** Wall-clock time of the last run, in nanoseconds. */
+    private long _elapsed;
+}
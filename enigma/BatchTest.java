@@ -0,0 +1,86 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Batch class.
+ *  @author Sharona Yang
+ */
+public class BatchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration with some of the naval rotors. */
+    private static final String CONFIG =
+        UPPER_STRING + "\n 5 3\n"
+        + " I MQ " + NAVALA.get("I") + "\n"
+        + " III MV " + NAVALA.get("III") + "\n"
+        + " IV MJ " + NAVALA.get("IV") + "\n"
+        + " Beta N " + NAVALA.get("Beta") + "\n"
+        + " B R " + NAVALA.get("B") + "\n";
+
+    /** Return a file in DIR named NAME containing TEXT. */
+    private Path write(Path dir, String name, String text)
+        throws IOException {
+        return Files.write(dir.resolve(name), text.getBytes());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testBatch() throws IOException {
+        Path dir = Files.createTempDirectory("enigma-batch");
+        Path config = write(dir, "naval.conf", CONFIG);
+        Path small = write(dir, "small.in",
+                           "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+                           + "FROM HIS SHOULDER HIAWATHA\n");
+        StringBuilder big = new StringBuilder("* B Beta I IV III AAAA\n");
+        for (int i = 0; i < 100; i += 1) {
+            big.append("HELLO WORLD\n");
+        }
+        Path large = write(dir, "large.in", big.toString());
+        Path bad = write(dir, "bad.in", "* B Beta III IV X AXLE\nHELLO\n");
+
+        List<Batch.Job> jobs = List.of(
+            new Batch.Job(config.toString(), small.toString(),
+                          dir.resolve("small.out").toString()),
+            new Batch.Job(config.toString(), large.toString(),
+                          dir.resolve("large.out").toString()),
+            new Batch.Job(config.toString(), bad.toString(),
+                          dir.resolve("bad.out").toString()),
+            new Batch.Job(dir.resolve("missing.conf").toString(),
+                          small.toString(),
+                          dir.resolve("missing.out").toString()));
+        Batch batch = new Batch(jobs);
+        assertFalse(batch.run(2));
+
+        assertTrue(jobs.get(0).ok());
+        assertTrue(jobs.get(1).ok());
+        assertFalse(jobs.get(2).ok());
+        assertEquals("Bad rotor name", jobs.get(2).message());
+        assertFalse(jobs.get(3).ok());
+        assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW\n",
+                     new String(Files.readAllBytes(
+                                    dir.resolve("small.out"))));
+
+        Main reference = new Main(List.of(config.toString(), large.toString(),
+                                          dir.resolve("ref.out").toString()));
+        reference.process();
+        reference.close();
+        assertArrayEquals(Files.readAllBytes(dir.resolve("ref.out")),
+                          Files.readAllBytes(dir.resolve("large.out")));
+    }
+}
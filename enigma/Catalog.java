@@ -0,0 +1,631 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A catalog, in the manner of Rejewski's, of the cycle structures of the
+ *  products AD, BE and CF of the permutations enciphering the six letters
+ *  of a doubled message key, for every rotor order and start position of
+ *  a configuration.  The plugboard only conjugates these products, so
+ *  the structure identifies rotor order and position whatever the
+ *  plugboard.  A structure is represented by a 40-bit fingerprint, its
+ *  signature, which different structures may (rarely) share, so lookups
+ *  return candidates rather than certainties.
+ *
+ *  A catalog is a directory.  Its subdirectory runs holds, for each rotor
+ *  order, the sorted signatures of its positions in a file named by a
+ *  fingerprint of the wiring, notches and order of its rotors, so that a
+ *  rebuild after rotors are added to the configuration computes only the
+ *  new rotor orders.  The runs are merged into the file index, a header
+ *  followed by fixed-size entries sorted by signature, which lookups
+ *  binary-search through a memory mapping.
+ *  @author Sharona Yang
+ */
+public final class Catalog {
+
+    /** Build the catalog ARGS[1] for the configuration ARGS[0], or, with
+     *  --lookup, print the rotor orders and positions in catalog ARGS[0]
+     *  fitting the doubled message keys, six characters each (after
+     *  removing whitespace), in the file ARGS[1].  Option --threads sets
+     *  the number of threads building.  Exits normally if there are no
+     *  errors; otherwise with code 1. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--threads=(\\d+){0,1} --lookup{0,1} "
+                                + "--=(.*){2,2}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Catalog [--threads=N] "
+                            + "CONFIG CATALOG%n"
+                            + "       java enigma.Catalog --lookup CATALOG "
+                            + "INDICATORS");
+            }
+            List<String> files = options.get("--");
+            if (options.contains("--lookup")) {
+                Catalog catalog = open(files.get(0));
+                String text;
+                try {
+                    text = new String(Files.readAllBytes(
+                                          Paths.get(files.get(1))));
+                } catch (IOException excp) {
+                    throw error("could not read %s", files.get(1));
+                }
+                long sig =
+                    signature(Arrays.asList(text.trim().split("\\s+")),
+                              catalog.alphabet());
+                long start = System.nanoTime();
+                List<String> found = catalog.lookup(sig);
+                long micros = (System.nanoTime() - start) / 1000;
+                for (String key : found) {
+                    System.out.println(key);
+                }
+                System.err.printf("%d of %d entries match (%d us)%n",
+                                  found.size(), catalog.size(), micros);
+                catalog.close();
+            } else {
+                int threads =
+                    Main.intOption(options, "--threads",
+                                   Runtime.getRuntime()
+                                   .availableProcessors());
+                Main parsed = new Main(files.subList(0, 1));
+                Machine template = parsed.readConfig();
+                parsed.close();
+                int computed = build(template, files.get(1), threads);
+                System.err.printf("computed %d rotor orders%n", computed);
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Build or update the catalog in the directory DIR for every rotor
+     *  order of TEMPLATE's configuration, using THREADS threads.  Return
+     *  the number of rotor orders whose runs had to be computed. */
+    static int build(Machine template, String dir, int threads) {
+        List<String[]> orders = Cracker.rotorOrders(template);
+        Path runs = Paths.get(dir, "runs");
+        long positions = 1;
+        for (int i = 1; i < template.numRotors(); i += 1) {
+            positions *= template.alphabet().size();
+        }
+        if (positions > 1L << POSITION_BITS) {
+            throw error("too many rotor positions to catalog");
+        }
+        int numPositions = (int) positions;
+        long memoBytes = memoryBudget()
+            / Math.max(1, Math.min(threads, orders.size()));
+        Path[] files = new Path[orders.size()];
+        ArrayList<Callable<Boolean>> tasks = new ArrayList<>();
+        try {
+            Files.createDirectories(runs);
+            for (int i = 0; i < files.length; i += 1) {
+                String[] order = orders.get(i);
+                Path run = runs.resolve(String.format(
+                    "%016x.run", fingerprint(template, order)));
+                files[i] = run;
+                tasks.add(() -> {
+                    if (Files.exists(run)) {
+                        return false;
+                    }
+                    writeRun(run, computeRun(template, order,
+                                             numPositions, memoBytes));
+                    return true;
+                });
+            }
+        } catch (IOException excp) {
+            throw error("could not create %s", runs);
+        }
+        int computed = 0;
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                computed += result.get() ? 1 : 0;
+            }
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("could not build catalog: %s", excp.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        merge(template, orders, files, Paths.get(dir, "index"));
+        return computed;
+    }
+
+    /** Return the sorted entries, each a signature shifted left
+     *  POSITION_BITS and combined with a position number, of the
+     *  NUMPOSITIONS start positions of ORDER in TEMPLATE's
+     *  configuration.  Position numbers count in the order of Cracker's
+     *  odometer, the fast rotor last.  The conversions at each position
+     *  are memoized if that takes at most MEMOBYTES bytes. */
+    private static long[] computeRun(Machine template, String[] order,
+                                     int numPositions, long memoBytes) {
+        Machine mach = template.copy();
+        mach.insertRotors(order);
+        int size = mach.alphabet().size();
+        mach.setPlugboard(new Permutation("", mach.alphabet()));
+        int[][] steps = new int[KEY_LENGTH][size];
+        int[] posn = new int[mach.numRotors() - 1];
+        Scratch scratch = new Scratch(size);
+        if ((long) numPositions * size <= MEMO_LIMIT
+            && Scratch.memoBytes(numPositions, size) <= memoBytes) {
+            scratch.memoize(numPositions);
+        }
+        long[] run = new long[numPositions];
+        for (int p = 0; p < numPositions; p += 1) {
+            mach.setRotors(posn);
+            long sig = signature(mach, steps, scratch);
+            run[p] = sig << POSITION_BITS | p;
+            for (int i = posn.length - 1; i >= 0; i -= 1) {
+                posn[i] += 1;
+                if (posn[i] < size) {
+                    break;
+                }
+                posn[i] = 0;
+            }
+        }
+        Arrays.sort(run);
+        return run;
+    }
+
+    /** Write RUN to the file NAME, replacing it atomically. */
+    private static void writeRun(Path name, long[] run) throws IOException {
+        Path tmp = Paths.get(name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(tmp),
+                                          BUFFER_SIZE))) {
+            for (long entry : run) {
+                out.writeLong(entry);
+            }
+        }
+        Files.move(tmp, name, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Merge the runs in FILES, of the rotor orders ORDERS of TEMPLATE's
+     *  configuration, into the index file INDEX. */
+    private static void merge(Machine template, List<String[]> orders,
+                              Path[] files, Path index) {
+        Path tmp = Paths.get(index + ".tmp");
+        ArrayList<DataInputStream> inputs = new ArrayList<>();
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(tmp),
+                                          BUFFER_SIZE))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(bytes);
+            StringBuilder chars = new StringBuilder();
+            for (int i = 0; i < template.alphabet().size(); i += 1) {
+                chars.append(template.alphabet().toChar(i));
+            }
+            header.writeUTF(chars.toString());
+            header.writeInt(template.numRotors() - 1);
+            header.writeInt(orders.size());
+            long total = 0;
+            for (int i = 0; i < orders.size(); i += 1) {
+                header.writeUTF(String.join(" ", orders.get(i)));
+                total += Files.size(files[i]) / Long.BYTES;
+            }
+            header.writeLong(total);
+            while ((bytes.size() + 2 * Integer.BYTES) % Long.BYTES != 0) {
+                header.writeByte(0);
+            }
+            out.writeInt(MAGIC);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+
+            PriorityQueue<long[]> heads = new PriorityQueue<>(
+                (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+                : Long.compare(a[1], b[1]));
+            for (int i = 0; i < files.length; i += 1) {
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(files[i]),
+                                            BUFFER_SIZE));
+                inputs.add(in);
+                advance(in, i, heads);
+            }
+            while (!heads.isEmpty()) {
+                long[] head = heads.poll();
+                out.writeLong(head[0]);
+                out.writeInt((int) head[1]);
+                advance(inputs.get((int) head[1]), (int) head[1], heads);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", index);
+        } finally {
+            for (DataInputStream in : inputs) {
+                try {
+                    in.close();
+                } catch (IOException excp) {
+                    /* Ignore. */
+                }
+            }
+        }
+        try {
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw error("could not write %s", index);
+        }
+    }
+
+    /** Add the next entry of IN, the run of rotor order ORDER, to HEADS,
+     *  if there is one. */
+    private static void advance(DataInputStream in, int order,
+                                PriorityQueue<long[]> heads)
+        throws IOException {
+        try {
+            heads.add(new long[] { in.readLong(), order });
+        } catch (EOFException excp) {
+            /* End of run. */
+        }
+    }
+
+    /** Return the catalog in directory DIR, opened for lookups. */
+    static Catalog open(String dir) {
+        return new Catalog(Paths.get(dir, "index"));
+    }
+
+    /** The catalog whose index file is INDEX. */
+    private Catalog(Path index) {
+        try {
+            _channel = FileChannel.open(index, StandardOpenOption.READ);
+            ByteBuffer start = ByteBuffer.allocate(2 * Integer.BYTES);
+            _channel.read(start, 0);
+            start.flip();
+            if (start.remaining() < start.capacity()
+                || start.getInt() != MAGIC) {
+                throw error("%s is not a catalog index", index);
+            }
+            int length = start.getInt();
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            _channel.read(bytes, start.capacity());
+            DataInputStream header = new DataInputStream(
+                new ByteArrayInputStream(bytes.array()));
+            _alphabet = new Alphabet(header.readUTF());
+            _numPositions = header.readInt();
+            _orders = new String[header.readInt()];
+            for (int i = 0; i < _orders.length; i += 1) {
+                _orders[i] = header.readUTF();
+            }
+            _size = header.readLong();
+            long offset = start.capacity() + length;
+            int numSegments =
+                (int) ((_size + SEGMENT_ENTRIES - 1) / SEGMENT_ENTRIES);
+            _segments = new MappedByteBuffer[numSegments];
+            for (int s = 0; s < numSegments; s += 1) {
+                long n = Math.min(SEGMENT_ENTRIES,
+                                  _size - (long) s * SEGMENT_ENTRIES);
+                _segments[s] = _channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    offset + (long) s * SEGMENT_ENTRIES * ENTRY_BYTES,
+                    n * ENTRY_BYTES);
+            }
+        } catch (IOException excp) {
+            throw error("could not read %s", index);
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return my number of entries: one for each rotor order and
+     *  position. */
+    long size() {
+        return _size;
+    }
+
+    /** Return the rotor orders and start positions with signature SIG,
+     *  each as the rotor names and rotor settings of a settings line.
+     *  Only the 40-bit signatures are compared, not the cycle structures
+     *  they fingerprint, so a result may have a different structure
+     *  whose signature collides with SIG.  Callers that must be sure
+     *  should compare the cycle structures of each result's products
+     *  with those the indicators fix. */
+    List<String> lookup(long sig) {
+        long lo = 0, hi = _size;
+        long target = sig << POSITION_BITS;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (key(mid) < target) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        ArrayList<String> result = new ArrayList<>();
+        for (long i = lo; i < _size && key(i) >>> POSITION_BITS == sig;
+             i += 1) {
+            int p = (int) (key(i) & ((1L << POSITION_BITS) - 1));
+            char[] setting = new char[_numPositions];
+            for (int j = setting.length - 1; j >= 0; j -= 1) {
+                setting[j] = _alphabet.toChar(p % _alphabet.size());
+                p /= _alphabet.size();
+            }
+            result.add(_orders[order(i)] + " " + new String(setting));
+        }
+        return result;
+    }
+
+    /** Release my index file. */
+    void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            /* Ignore. */
+        }
+    }
+
+    /** Return the key (signature and position) of entry I. */
+    private long key(long i) {
+        return _segments[(int) (i / SEGMENT_ENTRIES)]
+            .getLong((int) (i % SEGMENT_ENTRIES) * ENTRY_BYTES);
+    }
+
+    /** Return the rotor order number of entry I. */
+    private int order(long i) {
+        return _segments[(int) (i / SEGMENT_ENTRIES)]
+            .getInt((int) (i % SEGMENT_ENTRIES) * ENTRY_BYTES + Long.BYTES);
+    }
+
+    /** Return the signature of MACH, whose plugboard may be anything, at
+     *  its current position; that is, of the permutations by which it
+     *  enciphers the next six characters.  Advances MACH six steps. */
+    static long signature(Machine mach) {
+        int size = mach.alphabet().size();
+        return signature(mach, new int[KEY_LENGTH][size], new Scratch(size));
+    }
+
+    /** Return the signature of MACH at its current position, advancing it
+     *  six steps and using STEPS (six tables of alphabet size) and
+     *  SCRATCH as scratch space.  The conversion at each position is
+     *  computed once if SCRATCH memoizes. */
+    private static long signature(Machine mach, int[][] steps,
+                                  Scratch scratch) {
+        for (int[] step : steps) {
+            mach.advance();
+            if (scratch._memo == null) {
+                mach.composite(step);
+                continue;
+            }
+            int p = 0;
+            for (int r = 1; r < mach.numRotors(); r += 1) {
+                p = p * step.length + mach.getRotor(r).setting();
+            }
+            int base = p * step.length;
+            if (!scratch._known[p]) {
+                mach.composite(step);
+                for (int c = 0; c < step.length; c += 1) {
+                    scratch._memo[base + c] = (char) step[c];
+                }
+                scratch._known[p] = true;
+            } else {
+                for (int c = 0; c < step.length; c += 1) {
+                    step[c] = scratch._memo[base + c];
+                }
+            }
+        }
+        long hash = 0;
+        for (int k = 0; k < KEY_LENGTH / 2; k += 1) {
+            int[] first = steps[k], second = steps[k + KEY_LENGTH / 2];
+            for (int c = 0; c < first.length; c += 1) {
+                scratch._product[c] = second[first[c]];
+            }
+            hash = addCycles(hash, scratch._product, scratch);
+        }
+        return hash >>> (Long.SIZE - SIGNATURE_BITS);
+    }
+
+    /** Return the signature implied by INDICATORS, doubled message keys
+     *  enciphered at one rotor position and written in the characters of
+     *  ALPHA, which must together fix the products AD, BE and CF. */
+    static long signature(List<String> indicators, Alphabet alpha) {
+        int size = alpha.size();
+        int[][] products = new int[KEY_LENGTH / 2][size];
+        for (int[] product : products) {
+            Arrays.fill(product, -1);
+        }
+        for (String indicator : indicators) {
+            if (indicator.length() != KEY_LENGTH) {
+                throw error("indicator %s is not %d characters long",
+                            indicator, KEY_LENGTH);
+            }
+            for (int k = 0; k < KEY_LENGTH / 2; k += 1) {
+                int from = alpha.indexOf(indicator.charAt(k)),
+                    to = alpha.indexOf(indicator.charAt(k + KEY_LENGTH / 2));
+                if (from < 0 || to < 0) {
+                    throw error("indicator %s is not in the alphabet",
+                                indicator);
+                }
+                if (products[k][from] >= 0 && products[k][from] != to) {
+                    throw error("indicators are inconsistent at %s",
+                                indicator);
+                }
+                products[k][from] = to;
+            }
+        }
+        Scratch scratch = new Scratch(size);
+        long hash = 0;
+        for (int[] product : products) {
+            for (int c : product) {
+                if (c < 0) {
+                    throw error("too few indicators to fix the products");
+                }
+            }
+            hash = addCycles(hash, product, scratch);
+        }
+        return hash >>> (Long.SIZE - SIGNATURE_BITS);
+    }
+
+    /** Return HASH combined with the cycle lengths of the permutation
+     *  PRODUCT, using SCRATCH. */
+    private static long addCycles(long hash, int[] product, Scratch scratch) {
+        int n = Permutation.cycleLengths(product, scratch._seen,
+                                         scratch._lengths);
+        for (int i = 0; i < n; i += 1) {
+            hash = mix(hash + scratch._lengths[i]);
+        }
+        return mix(hash + SEPARATOR);
+    }
+
+    /** Return a fingerprint of the rotor order ORDER in TEMPLATE's
+     *  configuration: of the alphabet, the numbers of slots and pawls,
+     *  and the names, wirings and notches of the rotors in order. */
+    static long fingerprint(Machine template, String[] order) {
+        Alphabet alpha = template.alphabet();
+        long hash = mix(template.numRotors() * 31L + template.numPawls());
+        for (int i = 0; i < alpha.size(); i += 1) {
+            hash = mix(hash + alpha.toChar(i));
+        }
+        for (String name : order) {
+            Rotor rotor = null;
+            for (Rotor r : template.allRotors()) {
+                if (r.name().equals(name)) {
+                    rotor = r;
+                }
+            }
+            hash = mix(hash + name.hashCode());
+            hash = mix(hash + rotor.notches().hashCode());
+            hash = mix(hash + (rotor.reflecting() ? 2 : 0)
+                       + (rotor.rotates() ? 1 : 0));
+            for (int c = 0; c < alpha.size(); c += 1) {
+                hash = mix(hash + rotor.permutation().permute(c));
+            }
+        }
+        return hash;
+    }
+
+    /** Return the most memory that the memos of runs computed at once
+     *  may take. */
+    private static long memoryBudget() {
+        return Runtime.getRuntime().maxMemory() / MEMORY_FRACTION;
+    }
+
+    /** Return a well-mixed function of X (the SplitMix64 finalizer). */
+    static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    /** Scratch arrays for computing signatures. */
+    private static final class Scratch {
+        /** Scratch arrays for an alphabet of SIZE characters. */
+        Scratch(int size) {
+            _product = new int[size];
+            _seen = new boolean[size];
+            _lengths = new int[size];
+        }
+
+        /** Return the bytes taken by memoizing the conversions of an
+         *  alphabet of SIZE characters at NUMPOSITIONS rotor positions. */
+        static long memoBytes(int numPositions, int size) {
+            return (long) numPositions * (size * Character.BYTES + 1);
+        }
+
+        /** Remember the conversions at each of NUMPOSITIONS rotor
+         *  positions once computed. */
+        void memoize(int numPositions) {
+            _memo = new char[numPositions * _product.length];
+            _known = new boolean[numPositions];
+        }
+
+        /** A product permutation. */
+        private final int[] _product;
+
+        /** Characters visited. */
+        private final boolean[] _seen;
+
+        /** Cycle lengths. */
+        private final int[] _lengths;
+
+        /** Conversion tables by rotor position, or null. */
+        private char[] _memo;
+
+        /** True at the rotor positions whose conversions are in _memo. */
+        private boolean[] _known;
+    }
+
+    /** First word of an index file. */
+    private static final int MAGIC = 0x454e4331;
+
+    /** Length of a doubled message key. */
+    static final int KEY_LENGTH = 6;
+
+    /** Number of bits in a signature. */
+    static final int SIGNATURE_BITS = 40;
+
+    /** Number of bits of a position number in an entry key. */
+    private static final int POSITION_BITS = Long.SIZE - SIGNATURE_BITS;
+
+    /** Bytes in an index entry: key, then rotor order number. */
+    private static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+    /** Entries in each mapped segment of the index. */
+    private static final long SEGMENT_ENTRIES = (1 << 30) / ENTRY_BYTES;
+
+    /** Largest number of characters memoized while computing a run. */
+    private static final long MEMO_LIMIT = 1 << 26;
+
+    /** The memos of the runs computed at once may take at most
+     *  1 / MEMORY_FRACTION of the heap. */
+    private static final int MEMORY_FRACTION = 4;
+
+    /** Value hashed between the cycle lengths of two products. */
+    private static final long SEPARATOR = 0x100;
+
+    /** Size of file buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Alphabet of the configuration. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor settings in a position. */
+    private final int _numPositions;
+
+    /** Rotor names of each rotor order, space-separated. */
+    private final String[] _orders;
+
+    /** Number of entries. */
+    private final long _size;
+
+    /** Index file. */
+    private final FileChannel _channel;
+
+    /** The entries of the index file, in mapped segments. */
+    private final MappedByteBuffer[] _segments;
+}
@@ -0,0 +1,98 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Catalog class.
+ *  @author Sharona Yang
+ */
+public class CatalogTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with three slots and one pawl whose available
+     *  rotors are the naval rotors named in NAMES. */
+    private Machine machine(String... names) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (String name : names) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            if (name.equals("B") || name.equals("C")) {
+                rotors.add(new Reflector(name, perm));
+            } else if (name.equals("Beta") || name.equals("Gamma")) {
+                rotors.add(new FixedRotor(name, perm));
+            } else {
+                rotors.add(new MovingRotor(name, perm,
+                                           name.equals("I") ? "Q" : "E"));
+            }
+        }
+        return new Machine(UPPER, 3, 1, rotors);
+    }
+
+    /** Return the doubled message keys AAA, BBB, ..., enciphered by MACH
+     *  from the rotor setting SETTING. */
+    private List<String> indicators(Machine mach, String setting) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < UPPER.size(); i += 1) {
+            mach.setRotors(setting);
+            char c = UPPER.toChar(i);
+            result.add(mach.convert(String.valueOf(new char[] {
+                c, c, c, c, c, c })));
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testBuildAndLookup() throws IOException {
+        String dir = Files.createTempDirectory("enigma-catalog").toString();
+        assertEquals(2, Catalog.build(machine("B", "Beta", "Gamma", "I"),
+                                      dir, 2));
+        Machine full = machine("B", "C", "Beta", "Gamma", "I", "II");
+        assertEquals(6, Catalog.build(full, dir, 2));
+        assertEquals(0, Catalog.build(full, dir, 2));
+
+        Catalog catalog = Catalog.open(dir);
+        assertEquals(8 * 26 * 26, catalog.size());
+        full.insertRotors(new String[] { "C", "Gamma", "II" });
+        full.setPlugboard(new Permutation("(AQ) (ZX) (PE) (MN)", UPPER));
+        full.setRotors("RD");
+        long sig = Catalog.signature(full);
+        List<String> found = catalog.lookup(sig);
+        assertTrue(found.contains("C Gamma II RD"));
+        assertTrue(found.size() < 10);
+        assertEquals(sig, Catalog.signature(indicators(full, "RD"), UPPER));
+        catalog.close();
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTooFewIndicators() {
+        Catalog.signature(List.of("ABCDEF", "GHIJKL"), UPPER);
+    }
+
+    @Test
+    public void testFingerprint() {
+        String[] order = { "B", "Beta", "I" };
+        assertEquals(Catalog.fingerprint(machine("B", "Beta", "I"), order),
+                     Catalog.fingerprint(machine("B", "C", "Beta", "I"),
+                                         order));
+        assertNotEquals(Catalog.fingerprint(machine("B", "Beta", "I"), order),
+                        Catalog.fingerprint(machine("B", "Beta", "I"),
+                                            new String[] { "B", "Beta",
+                                                           "I", "I" }));
+    }
+}
@@ -0,0 +1,83 @@
+package enigma;
+
+import java.io.IOException;
+
+/** Converts buffers of characters or bytes in place through a machine,
+ *  treating characters outside its alphabet according to a policy.  The
+ *  common core of the Enigma filter streams.  Bytes stand for the
+ *  characters with the same codes (ISO-8859-1).
+ *  @author Sharona Yang
+ */
+final class CharConverter {
+
+    /** A converter running MACH, which must be set up, with POLICY for
+     *  characters outside its alphabet. */
+    CharConverter(Machine mach, UnknownCharPolicy policy) {
+        _mach = mach;
+        _alphabet = mach.alphabet();
+        _policy = policy;
+    }
+
+    /** Convert BUF[OFF .. OFF+LEN-1] in place, returning the number of
+     *  characters left there (fewer than LEN if some were dropped). */
+    int convert(char[] buf, int off, int len) throws IOException {
+        int to = off;
+        for (int i = off; i < off + len; i += 1) {
+            int k = _alphabet.indexOf(buf[i]);
+            if (k >= 0) {
+                buf[to++] = _alphabet.toChar(_mach.convert(k));
+            } else if (keep(buf[i])) {
+                buf[to++] = buf[i];
+            }
+        }
+        return to - off;
+    }
+
+    /** Convert BUF[OFF .. OFF+LEN-1] in place, returning the number of
+     *  bytes left there (fewer than LEN if some were dropped). */
+    int convert(byte[] buf, int off, int len) throws IOException {
+        int to = off;
+        for (int i = off; i < off + len; i += 1) {
+            char c = (char) (buf[i] & 0xff);
+            int k = _alphabet.indexOf(c);
+            if (k >= 0) {
+                char e = _alphabet.toChar(_mach.convert(k));
+                if (e > MAX_BYTE) {
+                    throw new IOException(
+                        String.format("'%c' cannot be written as a byte", e));
+                }
+                buf[to++] = (byte) e;
+            } else if (keep(c)) {
+                buf[to++] = buf[i];
+            }
+        }
+        return to - off;
+    }
+
+    /** Return true iff C, which is not in the alphabet, is to be passed
+     *  on unchanged; false if it is to be dropped. */
+    private boolean keep(char c) throws IOException {
+        switch (_policy) {
+        case PASS:
+            return true;
+        case DROP:
+            return false;
+        default:
+            throw new IOException(
+                String.format("character '%c' (%d) is not in the alphabet",
+                              c, (int) c));
+        }
+    }
+
+    /** Largest character a byte can hold. */
+    private static final char MAX_BYTE = 0xff;
+
+    /** The machine. */
+    private final Machine _mach;
+
+    /** Its alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Treatment of characters outside _alphabet. */
+    private final UnknownCharPolicy _policy;
+}
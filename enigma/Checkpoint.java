@@ -0,0 +1,170 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The state of a run of Main at the start of some input line: how far
+ *  it has got through its input and output files, the settings line in
+ *  force, and the rotor positions, which are all that is needed to
+ *  carry on from there without replaying earlier messages.  Stored as a
+ *  small text file, one "key value" pair per line; the settings line is
+ *  stored last, as the rest of its line.
+ *  @author Sharona Yang
+ */
+class Checkpoint {
+
+    /** A checkpoint of a run with configuration CONFIG, input INPUT and
+     *  output OUTPUT (absolute file names), having consumed INPUTOFFSET
+     *  bytes of input and written OUTPUTOFFSET bytes of output, under
+     *  SETTINGS (or "" if none yet) with rotors 1 .. POSITIONS.length at
+     *  POSITIONS. */
+    Checkpoint(String config, String input, String output,
+               long inputOffset, long outputOffset, String settings,
+               int[] positions) {
+        _config = config;
+        _input = input;
+        _output = output;
+        _inputOffset = inputOffset;
+        _outputOffset = outputOffset;
+        _settings = settings;
+        _positions = positions;
+    }
+
+    /** Return the checkpoint stored in the file NAME. */
+    static Checkpoint read(String name) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(name),
+                                       StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw error("could not read checkpoint %s", name);
+        }
+        if (lines.size() != NUM_LINES || !lines.get(0).equals(MAGIC)) {
+            throw error("%s is not a checkpoint", name);
+        }
+        try {
+            String value = value(lines, 6, "positions");
+            String[] packed = value.isEmpty() ? new String[0]
+                : value.split(",");
+            int[] positions = new int[packed.length];
+            for (int i = 0; i < positions.length; i += 1) {
+                positions[i] = Integer.parseInt(packed[i]);
+            }
+            return new Checkpoint(value(lines, 1, "config"),
+                                  value(lines, 2, "input"),
+                                  value(lines, 3, "output"),
+                                  Long.parseLong(value(lines, 4,
+                                                       "inputOffset")),
+                                  Long.parseLong(value(lines, 5,
+                                                       "outputOffset")),
+                                  value(lines, 7, "settings"), positions);
+        } catch (NumberFormatException excp) {
+            throw error("%s is not a checkpoint", name);
+        }
+    }
+
+    /** Return the value on line K of LINES, which must have key KEY. */
+    private static String value(List<String> lines, int k, String key) {
+        String line = lines.get(k);
+        if (!line.startsWith(key + " ")) {
+            throw error("checkpoint lacks %s", key);
+        }
+        return line.substring(key.length() + 1);
+    }
+
+    /** Store me in the file NAME, replacing it atomically so that a crash
+     *  leaves either the old checkpoint or the new one. */
+    void write(String name) {
+        StringBuilder packed = new StringBuilder();
+        for (int p : _positions) {
+            if (packed.length() > 0) {
+                packed.append(',');
+            }
+            packed.append(p);
+        }
+        String text = String.format("%s%nconfig %s%ninput %s%noutput %s%n"
+                                    + "inputOffset %d%noutputOffset %d%n"
+                                    + "positions %s%nsettings %s%n",
+                                    MAGIC, _config, _input, _output,
+                                    _inputOffset, _outputOffset, packed,
+                                    _settings);
+        Path path = Paths.get(name).toAbsolutePath();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw error("could not write checkpoint %s", name);
+        }
+    }
+
+    /** Return the absolute name of the configuration file. */
+    String config() {
+        return _config;
+    }
+
+    /** Return the absolute name of the input file. */
+    String input() {
+        return _input;
+    }
+
+    /** Return the absolute name of the output file. */
+    String output() {
+        return _output;
+    }
+
+    /** Return the number of input bytes consumed. */
+    long inputOffset() {
+        return _inputOffset;
+    }
+
+    /** Return the number of output bytes written. */
+    long outputOffset() {
+        return _outputOffset;
+    }
+
+    /** Return the settings line in force, or "" if none. */
+    String settings() {
+        return _settings;
+    }
+
+    /** Return the positions of rotors 1 .. numRotors()-1. */
+    int[] positions() {
+        return _positions;
+    }
+
+    /** First line of a checkpoint file. */
+    private static final String MAGIC = "enigma checkpoint 1";
+
+    /** Number of lines in a checkpoint file. */
+    private static final int NUM_LINES = 8;
+
+    /** Absolute name of the configuration file. */
+    private final String _config;
+
+    /** Absolute name of the input file. */
+    private final String _input;
+
+    /** Absolute name of the output file. */
+    private final String _output;
+
+    /** Input bytes consumed. */
+    private final long _inputOffset;
+
+    /** Output bytes written. */
+    private final long _outputOffset;
+
+    /** Settings line in force. */
+    private final String _settings;
+
+    /** Rotor positions. */
+    private final int[] _positions;
+}
@@ -0,0 +1,127 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for checkpointing in Main and the
+ *  Checkpoint and LineReader classes.
+ *  @author Sharona Yang
+ */
+public class CheckpointTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval configuration used by the acceptance tests. */
+    private static final String CONFIG = "../testing/correct/default.conf";
+
+    /** A good settings line and one of the same length that is bad. */
+    private static final String GOOD = "* B Beta III IV I AXLE (HQ) (EX)",
+        BAD = "* B Beta III IV X AXLE (HQ) (EX)";
+
+    /** Return an input with many settings lines in which settings line
+     *  number BADLINE (if non-negative) is BAD. */
+    private String input(int badLine) {
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < 60; k += 1) {
+            result.append(k == badLine ? BAD : GOOD).append("\r\n");
+            for (int i = 0; i < 5; i += 1) {
+                for (int j = 0; j < 7 + 3 * i + k; j += 1) {
+                    result.append((char) ('A' + (i * 7 + j * 3 + k) % 26));
+                }
+                result.append(i % 2 == 0 ? "\n" : "\r\n");
+            }
+        }
+        return result.toString();
+    }
+
+    /** Run Main with ARGS, KEYSTREAM and, if CHECKPOINT is non-null,
+     *  checkpoints every EVERY bytes to CHECKPOINT, resuming if
+     *  RESUME. Return true iff it completes. */
+    private boolean run(List<String> args, int keystream, String checkpoint,
+                        long every, boolean resume) {
+        Main main = checkpoint == null ? new Main(args)
+            : new Main(args, checkpoint, every, resume);
+        main.useKeystreams(keystream);
+        try {
+            main.process();
+            main.close();
+            return true;
+        } catch (EnigmaException excp) {
+            return false;
+        }
+    }
+
+    /** Check a run with KEYSTREAM that fails partway and is resumed. */
+    private void checkResume(int keystream) throws IOException {
+        Path dir = Files.createTempDirectory("enigma-checkpoint");
+        String in = dir.resolve("in.txt").toString(),
+            out = dir.resolve("out.txt").toString(),
+            ref = dir.resolve("ref.txt").toString(),
+            checkpoint = dir.resolve("ckpt").toString();
+        Files.write(dir.resolve("in.txt"), input(-1).getBytes());
+        assertTrue(run(List.of(CONFIG, in, ref), 0, null, 0, false));
+
+        Files.write(dir.resolve("in.txt"), input(40).getBytes());
+        assertFalse(run(List.of(CONFIG, in, out), keystream, checkpoint,
+                        500, false));
+        Checkpoint saved = Checkpoint.read(checkpoint);
+        assertTrue(saved.inputOffset() > 0);
+        assertEquals(GOOD, saved.settings());
+        assertEquals(4, saved.positions().length);
+        assertEquals(new File(in).getAbsolutePath(), saved.input());
+
+        Files.write(dir.resolve("in.txt"), input(-1).getBytes());
+        assertTrue(run(List.of(CONFIG, in, out), keystream, checkpoint,
+                       500, true));
+        assertFalse(new File(checkpoint).exists());
+        assertArrayEquals(Files.readAllBytes(dir.resolve("ref.txt")),
+                          Files.readAllBytes(dir.resolve("out.txt")));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testResume() throws IOException {
+        checkResume(0);
+    }
+
+    @Test
+    public void testResumeWithKeystream() throws IOException {
+        checkResume(9);
+    }
+
+    @Test
+    public void testLineReader() throws IOException {
+        Path file = Files.createTempFile("enigma-lines", ".txt");
+        StringBuilder text = new StringBuilder("one\r\n\ntwo\n");
+        for (int i = 0; i < 200000; i += 1) {
+            text.append((char) ('A' + i % 26));
+        }
+        Files.write(file, text.toString().getBytes());
+        LineReader lines = new LineReader(file.toString(), 0);
+        assertEquals("one", lines.nextLine());
+        assertEquals(5, lines.offset());
+        assertEquals("", lines.nextLine());
+        assertEquals("two", lines.nextLine());
+        assertEquals(200000, lines.nextLine().length());
+        assertFalse(lines.hasNextLine());
+        assertEquals(text.length(), lines.offset());
+        lines.close();
+        lines = new LineReader(file.toString(), 5);
+        assertEquals("", lines.nextLine());
+        assertEquals("two", lines.nextLine());
+        lines.close();
+    }
+}
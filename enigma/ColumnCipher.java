@@ -0,0 +1,522 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** Encrypts selected columns of a delimited (CSV or TSV) file, passing
+ *  every other byte through untouched.  Fields may be quoted as in RFC
+ *  4180: a field starting with '"' runs to the next '"' not doubled, and
+ *  may hold delimiters and line breaks.  Within a selected field, bytes
+ *  that are characters of the alphabet (taken as ISO-8859-1, as
+ *  Interactive does) are converted and all others, including quotes,
+ *  are passed on and do not advance the rotors.  The delimiter, the
+ *  quote and line breaks must therefore not be in the alphabet, which
+ *  must consist of single-byte characters.
+ *
+ *  The machine is keyed per file, in which case the selected fields of
+ *  all rows form one message, or per row, in which case it is reset to
+ *  the settings at the start of every row.  Since the machine is
+ *  reciprocal, converting the output again with the same options gives
+ *  back the input.
+ *
+ *  The input is read in chunks of whole rows.  One thread reads each
+ *  chunk and parses it into field slices (offsets into the chunk's
+ *  buffer, so no field becomes a String); when keyed per file, it also
+ *  counts the characters the chunk will convert and steps a machine
+ *  past them without converting anything, which gives the position at
+ *  which the next chunk starts.  The chunks are then converted in place
+ *  by a pool of threads and written in their original order.  Buffers
+ *  are reused once written.
+ *  @author Sharona Yang
+ */
+public final class ColumnCipher {
+
+    /** Convert the selected columns of the file ARGS[2] with the
+     *  configuration ARGS[0] and settings line ARGS[1], writing the
+     *  result to the file ARGS[3].  Options: --columns, a comma-separated
+     *  list of columns, each a number (counting from 1) or, with
+     *  --header, a name from the first row, which is then never
+     *  converted; --delimiter, a single character or "tab" (default
+     *  ','); --key, "file" (the default) or "row"; --threads (default:
+     *  the number of processors); and --chunk, the size of a chunk in
+     *  bytes.  Exits normally if there are no errors; otherwise with code
+     *  1. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--columns=(.+){1,1} --delimiter=(.+){0,1} "
+                                + "--header --key=(file|row){0,1} "
+                                + "--threads=(\\d+){0,1} "
+                                + "--chunk=(\\d+){0,1} --=(.*){4,4}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.ColumnCipher "
+                            + "--columns=C1,C2,... [--header] "
+                            + "[--delimiter=C|tab] [--key=file|row] "
+                            + "[--threads=N] [--chunk=BYTES] CONFIG "
+                            + "SETTINGS INPUT OUTPUT");
+            }
+            List<String> files = options.get("--");
+            byte delimiter = ',';
+            if (options.contains("--delimiter")) {
+                String name = options.get("--delimiter").get(0);
+                if (name.equals("tab")) {
+                    name = "\t";
+                }
+                if (name.length() != 1 || name.charAt(0) > MAX_BYTE) {
+                    throw error("delimiter must be one single-byte "
+                                + "character");
+                }
+                delimiter = (byte) name.charAt(0);
+            }
+            int threads = Math.max(1, Main.intOption(
+                options, "--threads",
+                Runtime.getRuntime().availableProcessors()));
+            int chunk = Main.intOption(options, "--chunk", DEFAULT_CHUNK);
+            Main parsed = new Main(files.subList(0, 1));
+            Machine mach = parsed.readConfig();
+            parsed.close();
+            parsed.setUp(mach, files.get(1));
+            ColumnCipher cipher =
+                new ColumnCipher(mach, delimiter,
+                                 options.get("--columns").get(0).split(","),
+                                 options.contains("--header"),
+                                 options.contains("--key")
+                                 && options.get("--key").get(0)
+                                    .equals("row"));
+            try (InputStream in = new BufferedInputStream(
+                     new FileInputStream(files.get(2)));
+                 OutputStream out = new BufferedOutputStream(
+                     new FileOutputStream(files.get(3)))) {
+                cipher.run(in, out, threads, chunk);
+            } catch (IOException excp) {
+                throw error("%s", excp.getMessage());
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A cipher converting with the machine MACH, already set up, the
+     *  COLUMNS (numbers counting from 1 or, if HEADER, names in the first
+     *  row) of rows separated by DELIMITER, resetting MACH at each row if
+     *  PERROW. */
+    ColumnCipher(Machine mach, byte delimiter, String[] columns,
+                 boolean header, boolean perRow) {
+        Alphabet alpha = mach.alphabet();
+        _index = new int[MAX_BYTE + 1];
+        Arrays.fill(_index, -1);
+        _chars = new byte[alpha.size()];
+        for (int c = 0; c < alpha.size(); c += 1) {
+            char ch = alpha.toChar(c);
+            if (ch > MAX_BYTE) {
+                throw error("column encryption needs an alphabet of "
+                            + "single-byte characters");
+            }
+            _index[ch] = c;
+            _chars[c] = (byte) ch;
+        }
+        for (byte b : new byte[] { delimiter, QUOTE, '\n', '\r' }) {
+            if (_index[b & MAX_BYTE] >= 0) {
+                throw error("'%c' separates fields, so it may not be in "
+                            + "the alphabet", (char) (b & MAX_BYTE));
+            }
+        }
+        _template = mach;
+        _start = new int[mach.numRotors() - 1];
+        for (int i = 0; i < _start.length; i += 1) {
+            _start[i] = mach.getRotor(i + 1).setting();
+        }
+        _delimiter = delimiter;
+        _header = header;
+        _perRow = perRow;
+        _columns = columns;
+        int widest = 0;
+        for (String column : columns) {
+            if (column.matches("\\d{1,9}")) {
+                widest = Math.max(widest, Integer.parseInt(column));
+            } else if (column.matches("\\d+")) {
+                throw error("column number %s is too large", column);
+            } else if (!header) {
+                throw error("column %s is named, but there is no header",
+                            column);
+            }
+        }
+        _selected = new boolean[widest];
+        for (String column : columns) {
+            if (column.matches("\\d+")) {
+                if (Integer.parseInt(column) < 1) {
+                    throw error("columns are numbered from 1");
+                }
+                _selected[Integer.parseInt(column) - 1] = true;
+            }
+        }
+        _named = countNumbers(columns) < columns.length;
+    }
+
+    /** Return the number of elements of COLUMNS that are numbers. */
+    private static int countNumbers(String[] columns) {
+        int n = 0;
+        for (String column : columns) {
+            if (column.matches("\\d+")) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Convert my columns of IN, writing the result to OUT, with THREADS
+     *  threads converting chunks of about CHUNKSIZE bytes. */
+    void run(InputStream in, OutputStream out, int threads, int chunkSize)
+        throws IOException {
+        chunkSize = Math.max(MIN_CHUNK, chunkSize);
+        _firstRow = true;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<Machine> machines =
+            ThreadLocal.withInitial(_template::copy);
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        ArrayDeque<Chunk> free = new ArrayDeque<>();
+        Machine stepper = _perRow ? null : _template.copy();
+        Chunk carry = new Chunk(chunkSize);
+        try {
+            boolean eof = false;
+            while (!eof) {
+                Chunk chunk = free.isEmpty() ? new Chunk(chunkSize)
+                    : free.pop();
+                eof = fill(chunk, carry, in, chunkSize);
+                if (stepper != null) {
+                    for (int i = 0; i < _start.length; i += 1) {
+                        chunk._start[i] = stepper.getRotor(i + 1).setting();
+                    }
+                    stepper.advance(count(chunk));
+                }
+                pending.add(pool.submit(() -> convert(chunk,
+                                                      machines.get())));
+                while (pending.size() > 2 * threads
+                       || eof && !pending.isEmpty()) {
+                    Chunk done = pending.remove().get();
+                    out.write(done._data, 0, done._length);
+                    free.push(done);
+                }
+            }
+            out.flush();
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("column conversion failed: %s", excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Fill CHUNK with the bytes held over in CARRY and then from IN,
+     *  up to about CHUNKSIZE bytes, and parse it, keeping whole rows
+     *  in CHUNK and moving the bytes of the last, incomplete row to
+     *  CARRY.  Return true iff IN is exhausted. */
+    private boolean fill(Chunk chunk, Chunk carry, InputStream in,
+                         int chunkSize) throws IOException {
+        chunk.reserve(Math.max(chunkSize, 2 * carry._length));
+        System.arraycopy(carry._data, 0, chunk._data, 0, carry._length);
+        int n = carry._length;
+        boolean eof = false;
+        while (true) {
+            while (n < chunk._data.length) {
+                int k = in.read(chunk._data, n, chunk._data.length - n);
+                if (k < 0) {
+                    eof = true;
+                    break;
+                }
+                n += k;
+            }
+            int end = parse(chunk, n, eof);
+            if (end > 0 || eof) {
+                carry.reserve(n - end);
+                System.arraycopy(chunk._data, end, carry._data, 0, n - end);
+                carry._length = n - end;
+                chunk._length = end;
+                return eof;
+            }
+            chunk.reserve(2 * chunk._data.length);
+        }
+    }
+
+    /** Parse the first N bytes of CHUNK, which start a row, into the
+     *  slices of my columns, as if they end the input iff EOF.  Return
+     *  the length of its complete rows, keeping only their slices. */
+    private int parse(Chunk chunk, int n, boolean eof) {
+        byte[] data = chunk._data;
+        if (_named && !resolveColumns(data, n, eof)) {
+            return 0;
+        }
+        chunk._slices = 0;
+        int committed = 0, end = 0, field = 0, row = 0, i = 0;
+        boolean skip = _header && _firstRow;
+        while (i < n) {
+            int e = fieldEnd(data, i, n, eof);
+            if (e < 0 || e == n && !eof) {
+                break;
+            }
+            if (!skip && field < _selected.length && _selected[field]) {
+                chunk.addSlice(i, e, row);
+            }
+            if (e < n && data[e] == _delimiter) {
+                field += 1;
+                i = e + 1;
+            } else {
+                i = Math.min(n, e + 1);
+                end = i;
+                committed = chunk._slices;
+                field = 0;
+                row += 1;
+                skip = false;
+            }
+        }
+        if (eof) {
+            end = n;
+            committed = chunk._slices;
+        }
+        chunk._slices = committed;
+        if (end > 0) {
+            _firstRow = false;
+        }
+        return end;
+    }
+
+    /** Return the end of the field starting at DATA[I], which is the
+     *  index of the delimiter or line break that ends it, or N if the
+     *  field runs to the end of the first N bytes of DATA; if those do not
+     *  show where a quoted field ends, return -1 unless EOF, in which
+     *  case the field runs to N. */
+    private int fieldEnd(byte[] data, int i, int n, boolean eof) {
+        if (i < n && data[i] == QUOTE) {
+            i += 1;
+            while (true) {
+                if (i >= n) {
+                    return eof ? n : -1;
+                }
+                if (data[i] == QUOTE) {
+                    if (i + 1 >= n && !eof) {
+                        return -1;
+                    }
+                    if (i + 1 < n && data[i + 1] == QUOTE) {
+                        i += 2;
+                        continue;
+                    }
+                    i += 1;
+                    break;
+                }
+                i += 1;
+            }
+        }
+        while (i < n && data[i] != _delimiter && data[i] != '\n') {
+            i += 1;
+        }
+        return i;
+    }
+
+    /** Select the columns named in _columns from the header at the start
+     *  of the first N bytes of DATA, the end of the input iff EOF.
+     *  Return false if the header is incomplete. */
+    private boolean resolveColumns(byte[] data, int n, boolean eof) {
+        int[] bounds = new int[0];
+        int i = 0;
+        while (true) {
+            int e = fieldEnd(data, i, n, eof);
+            if (e < 0 || e == n && !eof) {
+                return false;
+            }
+            bounds = Arrays.copyOf(bounds, bounds.length + 2);
+            bounds[bounds.length - 2] = i;
+            bounds[bounds.length - 1] = e;
+            if (e >= n || data[e] != _delimiter) {
+                break;
+            }
+            i = e + 1;
+        }
+        boolean[] selected =
+            Arrays.copyOf(_selected, Math.max(_selected.length,
+                                              bounds.length / 2));
+        for (String column : _columns) {
+            if (column.matches("\\d+")) {
+                continue;
+            }
+            boolean found = false;
+            for (int k = 0; k < bounds.length; k += 2) {
+                if (name(data, bounds[k], bounds[k + 1]).equals(column)) {
+                    selected[k / 2] = true;
+                    found = true;
+                }
+            }
+            if (!found) {
+                throw error("no column named %s", column);
+            }
+        }
+        _selected = selected;
+        _named = false;
+        return true;
+    }
+
+    /** Return the header field in DATA[START .. END-1], unquoted and
+     *  without a trailing carriage return. */
+    private static String name(byte[] data, int start, int end) {
+        if (end > start && data[end - 1] == '\r') {
+            end -= 1;
+        }
+        String result =
+            new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+        if (result.length() >= 2 && result.charAt(0) == QUOTE
+            && result.charAt(result.length() - 1) == QUOTE) {
+            result = result.substring(1, result.length() - 1)
+                .replace("\"\"", "\"");
+        }
+        return result;
+    }
+
+    /** Return the number of characters of the alphabet in the slices of
+     *  CHUNK. */
+    private long count(Chunk chunk) {
+        long result = 0;
+        byte[] data = chunk._data;
+        int[] slices = chunk._bounds;
+        for (int s = 0; s < 3 * chunk._slices; s += 3) {
+            for (int i = slices[s]; i < slices[s + 1]; i += 1) {
+                if (_index[data[i] & MAX_BYTE] >= 0) {
+                    result += 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Convert the slices of CHUNK in place with MACH, returning CHUNK. */
+    private Chunk convert(Chunk chunk, Machine mach) {
+        mach.setRotors(_perRow ? _start : chunk._start);
+        byte[] data = chunk._data;
+        int[] slices = chunk._bounds;
+        int row = -1;
+        for (int s = 0; s < 3 * chunk._slices; s += 3) {
+            if (_perRow && slices[s + 2] != row) {
+                row = slices[s + 2];
+                mach.setRotors(_start);
+            }
+            for (int i = slices[s]; i < slices[s + 1]; i += 1) {
+                int c = _index[data[i] & MAX_BYTE];
+                if (c >= 0) {
+                    data[i] = _chars[mach.convert(c)];
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /** A buffer of whole rows and the slices of my columns in it. */
+    private final class Chunk {
+
+        /** An empty chunk with room for CAPACITY bytes. */
+        Chunk(int capacity) {
+            _data = new byte[capacity];
+            _start = new int[ColumnCipher.this._start.length];
+        }
+
+        /** Make room for at least CAPACITY bytes, keeping those held. */
+        void reserve(int capacity) {
+            if (_data.length < capacity) {
+                _data = Arrays.copyOf(_data, capacity);
+            }
+        }
+
+        /** Add the slice _data[START .. END-1] of the ROWth row. */
+        void addSlice(int start, int end, int row) {
+            if (3 * _slices + 3 > _bounds.length) {
+                _bounds = Arrays.copyOf(_bounds,
+                                        Math.max(48, 2 * _bounds.length));
+            }
+            _bounds[3 * _slices] = start;
+            _bounds[3 * _slices + 1] = end;
+            _bounds[3 * _slices + 2] = row;
+            _slices += 1;
+        }
+
+        /** Bytes of the chunk. */
+        private byte[] _data;
+
+        /** Number of bytes of _data in use. */
+        private int _length;
+
+        /** Start, end and row of each slice, in threes. */
+        private int[] _bounds = new int[0];
+
+        /** Number of slices. */
+        private int _slices;
+
+        /** Rotor settings at the start of the chunk, when keyed per
+         *  file. */
+        private final int[] _start;
+    }
+
+    /** Default size of a chunk in bytes. */
+    static final int DEFAULT_CHUNK = 1 << 20;
+
+    /** Smallest size of a chunk in bytes. */
+    private static final int MIN_CHUNK = 16;
+
+    /** Largest character a byte can hold. */
+    private static final int MAX_BYTE = 0xff;
+
+    /** The quote character. */
+    private static final byte QUOTE = '"';
+
+    /** Machine set up with the settings, copied by each thread. */
+    private final Machine _template;
+
+    /** Rotor settings of _template. */
+    private final int[] _start;
+
+    /** _index[B] is the alphabet index of byte B, or -1. */
+    private final int[] _index;
+
+    /** _chars[C] is the byte of alphabet index C. */
+    private final byte[] _chars;
+
+    /** The byte separating fields. */
+    private final byte _delimiter;
+
+    /** True iff the first row is a header, never converted. */
+    private final boolean _header;
+
+    /** True iff the machine is reset at each row. */
+    private final boolean _perRow;
+
+    /** The columns asked for, as numbers or names. */
+    private final String[] _columns;
+
+    /** _selected[K] is true iff column K (from 0) is converted. */
+    private boolean[] _selected;
+
+    /** True iff named columns are still to be found in the header. */
+    private boolean _named;
+
+    /** True until the first row has been parsed. */
+    private boolean _firstRow;
+}
@@ -0,0 +1,143 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ColumnCipher class.
+ *  @author Sharona Yang
+ */
+public class ColumnCipherTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval configuration used by the acceptance tests. */
+    private static final String CONFIG = "../testing/correct/default.conf";
+
+    /** Settings used throughout. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** Return a machine set up with SETTINGS. */
+    private Machine machine() {
+        Main parsed = new Main(List.of(CONFIG));
+        Machine mach = parsed.readConfig();
+        parsed.close();
+        parsed.setUp(mach, SETTINGS);
+        return mach;
+    }
+
+    /** Return INPUT with COLUMNS converted by a cipher keyed per row if
+     *  PERROW, with a header if HEADER, using THREADS threads and chunks
+     *  of CHUNK bytes. */
+    private String run(String input, String columns, boolean header,
+                       boolean perRow, int threads, int chunk)
+        throws IOException {
+        ColumnCipher cipher =
+            new ColumnCipher(machine(), (byte) ',', columns.split(","),
+                             header, perRow);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cipher.run(new ByteArrayInputStream(
+                       input.getBytes(StandardCharsets.ISO_8859_1)),
+                   out, threads, chunk);
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return a file of N rows with a header, quoted fields and
+     *  characters outside the alphabet. */
+    private String table(int n) {
+        StringBuilder result = new StringBuilder("id,name,note\r\n");
+        for (int i = 0; i < n; i += 1) {
+            result.append(i).append(',');
+            if (i % 3 == 0) {
+                result.append("\"SMITH, J \"\"JR\"\"\nLINE\"");
+            } else {
+                result.append("HIAWATHA").append(i % 7);
+            }
+            result.append(",note ").append(i).append("\r\n");
+        }
+        return result.toString();
+    }
+
+    /** Return the alphabetic characters of the second column of the
+     *  rows of TABLE, after its header. */
+    private String names(String table) {
+        StringBuilder result = new StringBuilder();
+        int field = 0;
+        boolean quoted = false, header = true;
+        for (char c : table.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                field += 1;
+            } else if (c == '\n' && !quoted) {
+                field = 0;
+                header = false;
+            } else if (!header && field == 1 && c >= 'A' && c <= 'Z') {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testFileKeyed() throws IOException {
+        String input = table(500);
+        String output = run(input, "name", true, false, 3, 64);
+        assertEquals(input.length(), output.length());
+        for (int i = 0; i < input.length(); i += 1) {
+            char c = input.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                assertEquals(c, output.charAt(i));
+            }
+        }
+        assertTrue(output.startsWith("id,name,note\r\n"));
+        assertEquals(machine().convert(names(input)), names(output));
+        assertEquals(output, run(input, "2", true, false, 1, 1 << 20));
+        assertEquals(input, run(output, "name", true, false, 2, 100));
+    }
+
+    @Test
+    public void testRowKeyed() throws IOException {
+        String input = "A,HELLO,X\nB,HELLO,Y\nC,\"HEL\nLO\",Z";
+        String output = run(input, "2", false, true, 2, 16);
+        String hello = machine().convert("HELLO");
+        assertEquals("A," + hello + ",X\nB," + hello + ",Y\nC,\""
+                     + hello.substring(0, 3) + "\n" + hello.substring(3)
+                     + "\",Z", output);
+        assertEquals(input, run(output, "2", false, true, 1, 16));
+    }
+
+    @Test
+    public void testUntouched() throws IOException {
+        String input = "ABC,DEF\n,\n\"\",\"\"\"\"\nGHI";
+        String output = run(input, "1", false, false, 1, 16);
+        String abc = machine().convert("ABCGHI");
+        assertEquals(abc.substring(0, 3) + ",DEF\n,\n\"\",\"\"\"\"\n"
+                     + abc.substring(3), output);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingName() throws IOException {
+        run(table(2), "surname", true, false, 1, 1024);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDelimiterInAlphabet() {
+        new ColumnCipher(machine(), (byte) 'A', new String[] { "1" }, false,
+                         false);
+    }
+}
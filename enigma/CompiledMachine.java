@@ -0,0 +1,413 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import static enigma.EnigmaException.*;
+
+/** An Enigma machine specialized to one shape: alphabet size, rotor
+ *  count, pawl count, and which slots hold moving rotors with which
+ *  notches.  For each shape, compile() generates the source of a
+ *  subclass whose conversion loop is unrolled over the slots, with the
+ *  stepping logic of Machine reduced to comparisons against constant
+ *  notch positions and every rotor hop a lookup in a local table, so
+ *  that the compiled loop keeps the rotor positions in registers and
+ *  makes no virtual calls.  The source is compiled in memory with the
+ *  system Java compiler and defined as a hidden class.  Generated classes
+ *  are cached by shape, so changing rotor wirings, positions or the
+ *  plugboard of a shape costs nothing more than a load().  When no
+ *  compiler is available (e.g., on a bare JRE), or the machine has no
+ *  pawls, compile() returns an equivalent machine that delegates to an
+ *  ordinary Machine, and whose specialized() is false.  Generated code
+ *  that fails to compile or load is an error, reported with the
+ *  compiler's diagnostics.
+ *
+ *  Results are exactly those of the Machine a CompiledMachine was loaded
+ *  from, except that verbose tracing (Main.verbose()) is not done.
+ *  @author Sharona Yang
+ */
+abstract class CompiledMachine {
+
+    /** Return a machine specialized to the shape of MACH, which must
+     *  have its rotors inserted, in the state of MACH (which is not
+     *  itself modified). */
+    static CompiledMachine compile(Machine mach) {
+        CompiledMachine result;
+        MethodHandle constructor = constructorFor(mach);
+        if (constructor == null) {
+            result = new Interpreted();
+        } else {
+            try {
+                result = (CompiledMachine) constructor.invoke();
+            } catch (Throwable excp) {
+                throw error("could not instantiate compiled machine: %s",
+                            excp);
+            }
+        }
+        result.load(mach);
+        return result;
+    }
+
+    /** Return true iff a class specialized to the shape of MACH, which
+     *  must have its rotors inserted, has already been generated, so
+     *  that compile(MACH) costs no more than a load(). */
+    static boolean cached(Machine mach) {
+        return mach.numPawls() > 0 && CLASSES.containsKey(shape(mach));
+    }
+
+    /** Return true iff machines can actually be compiled here. */
+    static boolean available() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    /** Set my rotor wirings, positions and plugboard from MACH, which must
+     *  have the shape I was compiled for. MACH is not modified. */
+    void load(Machine mach) {
+        int n = mach.numRotors();
+        _alphabet = mach.alphabet();
+        _size = _alphabet.size();
+        _plugboard = new int[_size];
+        _forward = new int[n][2 * _size];
+        _backward = new int[n][2 * _size];
+        _notches = new boolean[n][_size];
+        _positions = new int[n];
+        for (int c = 0; c < _size; c += 1) {
+            _plugboard[c] = mach.plugboard().permute(c);
+        }
+        for (int k = 0; k < n; k += 1) {
+            Rotor rotor = mach.getRotor(k);
+            Permutation perm = rotor.permutation();
+            for (int c = 0; c < 2 * _size; c += 1) {
+                _forward[k][c] = perm.permute(c);
+                _backward[k][c] = perm.invert(c);
+            }
+            for (int notch : notches(rotor)) {
+                _notches[k][notch] = true;
+            }
+            _positions[k] = rotor.setting();
+        }
+    }
+
+    /** Convert the first N indices of MSG, storing the results in the
+     *  first N elements of RESULT (which may be MSG itself) and advancing
+     *  my rotors accordingly. */
+    abstract void convert(int[] msg, int[] result, int n);
+
+    /** Return true iff I run code generated for my shape, rather than
+     *  an ordinary Machine. */
+    boolean specialized() {
+        return true;
+    }
+
+    /** Returns the encoding/decoding of MSG, advancing my rotors
+     *  accordingly. */
+    String convert(String msg) {
+        int[] text = new int[msg.length()];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = _alphabet.toInt(msg.charAt(i));
+        }
+        convert(text, text, text.length);
+        StringBuilder result = new StringBuilder(text.length);
+        for (int c : text) {
+            result.append(_alphabet.toChar(c));
+        }
+        return result.toString();
+    }
+
+    /** Return the current setting of rotor #K. */
+    int setting(int k) {
+        return _positions[k];
+    }
+
+    /** Return the notch positions of ROTOR, as Machine sees them: those
+     *  at which its atNotch() is true. */
+    private static TreeSet<Integer> notches(Rotor rotor) {
+        TreeSet<Integer> result = new TreeSet<>();
+        if (rotor.rotates()) {
+            String notches = rotor.notches();
+            for (int i = 0; i < notches.length(); i += 1) {
+                result.add(rotor.alphabet().toInt(notches.charAt(i)));
+            }
+        }
+        return result;
+    }
+
+    /** Return the constructor of the generated class for the shape of
+     *  MACH, generating it if necessary, or null if there is no compiler
+     *  or MACH has no pawls. */
+    private static MethodHandle constructorFor(Machine mach) {
+        if (mach.numPawls() == 0 || !available()) {
+            return null;
+        }
+        String shape = shape(mach);
+        MethodHandle result = CLASSES.get(shape);
+        if (result == null) {
+            result = define(mach);
+            MethodHandle old = CLASSES.putIfAbsent(shape, result);
+            if (old != null) {
+                result = old;
+            }
+        }
+        return result;
+    }
+
+    /** Return a description of the shape of MACH: everything that the
+     *  generated code depends on. */
+    private static String shape(Machine mach) {
+        StringBuilder result = new StringBuilder();
+        result.append(mach.alphabet().size()).append(' ')
+            .append(mach.numRotors()).append(' ').append(mach.numPawls());
+        for (int k = 0; k < mach.numRotors(); k += 1) {
+            Rotor rotor = mach.getRotor(k);
+            if (rotor == null) {
+                throw error("rotors not inserted");
+            }
+            result.append(rotor.rotates() ? " M" : " N")
+                .append(notches(rotor));
+        }
+        return result.toString();
+    }
+
+    /** Generate, compile and define a class specialized to the shape of
+     *  MACH, returning its constructor. */
+    private static MethodHandle define(Machine mach) {
+        String name = "Specialized" + COUNT.incrementAndGet();
+        byte[] bytes = compileSource(name, source(name, mach));
+        try {
+            MethodHandles.Lookup lookup =
+                MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return lookup.findConstructor(lookup.lookupClass(),
+                                          MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException excp) {
+            throw error("could not load compiled machine for shape %s: %s",
+                        shape(mach), excp);
+        }
+    }
+
+    /** Return the source of class NAME, specialized to the shape of
+     *  MACH. */
+    private static String source(String name, Machine mach) {
+        int n = mach.numRotors();
+        int pawls = mach.numPawls();
+        int size = mach.alphabet().size();
+        boolean[] rotates = new boolean[n];
+        StringBuilder out = new StringBuilder();
+        out.append("package enigma;\n")
+            .append("final class ").append(name)
+            .append(" extends CompiledMachine {\n")
+            .append("  @Override\n")
+            .append("  void convert(int[] msg, int[] result, int n) {\n")
+            .append("    final int[] plug = _plugboard;\n");
+        for (int k = 0; k < n; k += 1) {
+            Rotor rotor = mach.getRotor(k);
+            rotates[k] = rotor.rotates();
+            out.append(String.format("    final int[] f%d = _forward[%d], "
+                                     + "b%d = _backward[%d];%n",
+                                     k, k, k, k));
+            out.append(String.format("    int p%d = _positions[%d];%n",
+                                     k, k));
+            if (rotates[k] && notches(rotor).size() > INLINE_NOTCHES) {
+                out.append(String.format("    final boolean[] t%d = "
+                                         + "_notches[%d];%n", k, k));
+            }
+        }
+        out.append("    for (int i = 0; i < n; i += 1) {\n");
+        for (int k = n - pawls; k < n; k += 1) {
+            out.append(String.format("      boolean w%d = %s, h%d = false;%n",
+                                     k, atNotch(mach.getRotor(k), k), k));
+        }
+        for (int k = n - 1; k > n - pawls; k -= 1) {
+            if (!rotates[k] || !rotates[k - 1]) {
+                continue;
+            }
+            out.append(String.format("      if (w%d && !h%d) {%n", k, k - 1))
+                .append(advance(k - 1, size, "        "));
+            if (k != n - 1) {
+                out.append(String.format("        if (!h%d) {%n", k))
+                    .append(advance(k, size, "          "))
+                    .append("        }\n");
+            }
+            out.append("      }\n");
+        }
+        out.append(String.format("      if (!h%d) {%n", n - 1));
+        if (rotates[n - 1]) {
+            out.append(advance(n - 1, size, "        "));
+        } else {
+            out.append(String.format("        h%d = true;%n", n - 1));
+        }
+        out.append("      }\n");
+        out.append("      int c = plug[msg[i]];\n");
+        for (int k = n - 1; k >= 0; k -= 1) {
+            out.append(hop("f", k, size));
+        }
+        for (int k = 1; k < n; k += 1) {
+            out.append(hop("b", k, size));
+        }
+        out.append("      result[i] = plug[c];\n")
+            .append("    }\n");
+        for (int k = 0; k < n; k += 1) {
+            out.append(String.format("    _positions[%d] = p%d;%n", k, k));
+        }
+        out.append("  }\n}\n");
+        return out.toString();
+    }
+
+    /** Return an expression that is true iff ROTOR, in slot K, is at a
+     *  notch. */
+    private static String atNotch(Rotor rotor, int k) {
+        TreeSet<Integer> notches = notches(rotor);
+        if (notches.isEmpty()) {
+            return "false";
+        } else if (notches.size() > INLINE_NOTCHES) {
+            return String.format("t%d[p%d]", k, k);
+        }
+        StringBuilder result = new StringBuilder();
+        for (int notch : notches) {
+            if (result.length() > 0) {
+                result.append(" || ");
+            }
+            result.append(String.format("p%d == %d", k, notch));
+        }
+        return result.toString();
+    }
+
+    /** Return statements, indented by INDENT, advancing the moving rotor
+     *  in slot K of a machine with an alphabet of SIZE characters. */
+    private static String advance(int k, int size, String indent) {
+        return String.format("%sp%d = p%d == %d ? 0 : p%d + 1;%n"
+                             + "%sh%d = true;%n",
+                             indent, k, k, size - 1, k, indent, k);
+    }
+
+    /** Return a statement passing c through table TABLE ("f" or "b") of
+     *  slot K of a machine with an alphabet of SIZE characters. */
+    private static String hop(String table, int k, int size) {
+        return String.format("      c = %s%d[c + p%d] - p%d;%n"
+                             + "      if (c < 0) {%n"
+                             + "        c += %d;%n"
+                             + "      }%n", table, k, k, k, size);
+    }
+
+    /** Return the class file produced by compiling SOURCE, which defines
+     *  the class enigma.NAME, using the system compiler, which must be
+     *  available. */
+    private static byte[] compileSource(String name, String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        JavaFileObject input =
+            new SimpleJavaFileObject(URI.create("string:///enigma/" + name
+                                                + ".java"),
+                                     JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreErrors) {
+                    return source;
+                }
+            };
+        JavaFileManager files =
+            new ForwardingJavaFileManager<JavaFileManager>(
+                compiler.getStandardFileManager(null, null, null)) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(
+                    Location location, String className,
+                    JavaFileObject.Kind kind, FileObject sibling) {
+                    return new SimpleJavaFileObject(
+                        URI.create("bytes:///" + className), kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            return classFile;
+                        }
+                    };
+                }
+            };
+        List<String> options =
+            List.of("-classpath", System.getProperty("java.class.path"),
+                    "-proc:none", "-g:none");
+        StringWriter errors = new StringWriter();
+        boolean ok = compiler.getTask(errors, files, null, options, null,
+                                      List.of(input)).call();
+        if (!ok) {
+            throw error("could not compile %s:%n%s", name,
+                        errors.toString().trim());
+        }
+        return classFile.toByteArray();
+    }
+
+    /** A machine of any shape that runs an ordinary Machine. */
+    private static final class Interpreted extends CompiledMachine {
+
+        @Override
+        void load(Machine mach) {
+            super.load(mach);
+            _mach = mach.copy();
+        }
+
+        @Override
+        void convert(int[] msg, int[] result, int n) {
+            _mach.convert(msg, result, n);
+        }
+
+        @Override
+        boolean specialized() {
+            return false;
+        }
+
+        @Override
+        int setting(int k) {
+            return _mach.getRotor(k).setting();
+        }
+
+        /** The machine doing the work. */
+        private Machine _mach;
+    }
+
+    /** Slots whose rotors have more notches than this test them with a
+     *  table rather than with comparisons. */
+    private static final int INLINE_NOTCHES = 4;
+
+    /** Constructors of the generated classes, by shape. */
+    private static final ConcurrentHashMap<String, MethodHandle> CLASSES =
+        new ConcurrentHashMap<>();
+
+    /** Number of classes generated. */
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    /** My alphabet. */
+    private Alphabet _alphabet;
+
+    /** Size of my alphabet. */
+    private int _size;
+
+    /** Plugboard permutation. */
+    protected int[] _plugboard;
+
+    /** Forward wiring of each slot, at setting 0, repeated twice so that
+     *  a character plus a position indexes it without wrapping. */
+    protected int[][] _forward;
+
+    /** Inverse wiring of each slot, repeated as for _forward. */
+    protected int[][] _backward;
+
+    /** Positions at which the rotor in each slot is at a notch. */
+    protected boolean[][] _notches;
+
+    /** Current setting of each slot. */
+    protected int[] _positions;
+}
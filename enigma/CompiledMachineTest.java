@@ -0,0 +1,142 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CompiledMachine class.
+ *  @author Sharona Yang
+ */
+public class CompiledMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String[][] ORDERS = {
+        { "B", "Beta", "III", "IV", "I" },
+        { "C", "Gamma", "VI", "VII", "VIII" },
+        { "B", "Gamma", "V", "II", "VI" },
+    };
+
+    private static final String[] NOTCHES = {
+        "I", "Q", "II", "E", "III", "V", "IV", "J", "V", "Z",
+        "VI", "ZM", "VII", "ZM", "VIII", "ZM",
+    };
+
+    /** A message of LENGTH upper-case letters. */
+    private String message(int length) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i += 1) {
+            result.append(UPPER_STRING.charAt((i * 17 + i / 26) % 26));
+        }
+        return result.toString();
+    }
+
+    /** Return an unkeyed machine with the naval rotors. */
+    private Machine naval() {
+        HashMap<String, String> nav = NAVALA;
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), UPPER)));
+        rotors.add(new Reflector("C", new Permutation(nav.get("C"), UPPER)));
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(nav.get("Beta"), UPPER)));
+        rotors.add(new FixedRotor("Gamma",
+                                  new Permutation(nav.get("Gamma"), UPPER)));
+        for (int i = 0; i < NOTCHES.length; i += 2) {
+            rotors.add(new MovingRotor(NOTCHES[i],
+                                       new Permutation(nav.get(NOTCHES[i]),
+                                                       UPPER),
+                                       NOTCHES[i + 1]));
+        }
+        return new Machine(UPPER, 5, 3, rotors);
+    }
+
+    /** Check that COMPILED and MACH convert MSG alike and end with the
+     *  same settings. */
+    private void checkSame(Machine mach, CompiledMachine compiled,
+                           String msg) {
+        assertEquals(mach.convert(msg), compiled.convert(msg));
+        for (int r = 1; r < mach.numRotors(); r += 1) {
+            assertEquals(mach.getRotor(r).setting(), compiled.setting(r));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testNaval() {
+        String msg = message(3000);
+        for (int k = 0; k < 30; k += 1) {
+            Machine mach = naval();
+            mach.insertRotors(ORDERS[k % ORDERS.length]);
+            mach.setRotors(new int[] { k % 26, (k * 7) % 26,
+                                       (k * 11 + 3) % 26, (k * 5) % 26 });
+            mach.setPlugboard(new Permutation(k % 2 == 0 ? "(AQ) (EX)"
+                                              : "(TR) (BY) (HZ)", UPPER));
+            CompiledMachine compiled = CompiledMachine.compile(mach);
+            checkSame(mach, compiled, msg.substring(0, 1000));
+            checkSame(mach, compiled, msg.substring(1000));
+        }
+    }
+
+    @Test
+    public void testIrregular() {
+        HashMap<String, String> nav = NAVALA;
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), UPPER)));
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(nav.get("Beta"), UPPER)));
+        rotors.add(new MovingRotor("I", new Permutation(nav.get("I"), UPPER),
+                                   "ACEGIKMOQ"));
+        rotors.add(new FixedRotor("Gamma",
+                                  new Permutation(nav.get("Gamma"), UPPER)));
+        rotors.add(new MovingRotor("II",
+                                   new Permutation(nav.get("II"), UPPER),
+                                   "B*"));
+        rotors.add(new MovingRotor("III",
+                                   new Permutation(nav.get("III"), UPPER),
+                                   "ABCDEFGHIJKLM"));
+        Machine mach = new Machine(UPPER, 6, 4, rotors);
+        mach.insertRotors(new String[] { "B", "Beta", "I", "Gamma", "II",
+                                         "III" });
+        mach.setRotors("QRSTU");
+        mach.setPlugboard(new Permutation("(AZ) (MN)", UPPER));
+        CompiledMachine compiled = CompiledMachine.compile(mach);
+        String msg = message(5000);
+        checkSame(mach, compiled, msg);
+
+        Machine other = mach.copy();
+        other.setRotors("AAAAA");
+        compiled.load(other);
+        checkSame(other, compiled, msg);
+    }
+
+    @Test
+    public void testSpecialized() {
+        Machine mach = naval();
+        mach.insertRotors(ORDERS[0]);
+        mach.setPlugboard(new Permutation("", UPPER));
+        assertEquals(CompiledMachine.available(),
+                     CompiledMachine.compile(mach).specialized());
+        assertEquals(CompiledMachine.available(),
+                     CompiledMachine.cached(mach));
+
+        ArrayList<Rotor> rotors = new ArrayList<>(mach.allRotors());
+        Machine still = new Machine(UPPER, 3, 0, rotors);
+        still.insertRotors(new String[] { "B", "Beta", "Gamma" });
+        still.setRotors("XY");
+        still.setPlugboard(new Permutation("(AQ)", UPPER));
+        CompiledMachine compiled = CompiledMachine.compile(still);
+        assertFalse(compiled.specialized());
+        checkSame(still, compiled, message(100));
+    }
+}
@@ -0,0 +1,370 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** The rotor conversion (without plugboard) at every start position of
+ *  one rotor order of a configuration, kept in a file and read through a
+ *  memory mapping.  Once a store is built, converting a character at a
+ *  position is one byte read from the mapping, so trial decryptions of
+ *  that rotor order under any positions and plugboards read memory
+ *  instead of running the rotors, and allocate nothing.
+ *
+ *  A store is a file in a directory of stores, named, like the runs of a
+ *  Catalog, by the fingerprint of the wiring, notches and order of its
+ *  rotors, so that later runs, and other programs, map the existing file
+ *  instead of computing it again.  It holds a header and then, for each
+ *  position in the order of Cracker's odometer (the fast rotor last), one
+ *  byte per character: its conversion at that position.  Tables are
+ *  computed on several threads, each writing its own range of positions
+ *  straight into a mapping of the file.
+ *  @author Sharona Yang
+ */
+public final class CompositeStore {
+
+    /** Build, if it is not already there, the store in directory ARGS[1]
+     *  for the rotor order ARGS[2] (the rotor names of a settings line,
+     *  separated by spaces) of the configuration ARGS[0].  Option
+     *  --threads sets the number of threads building.  Exits normally if
+     *  there are no errors; otherwise with code 1. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--threads=(\\d+){0,1} --=(.*){3,3}",
+                                args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.CompositeStore "
+                            + "[--threads=N] CONFIG DIR \"ROTORS\"");
+            }
+            List<String> files = options.get("--");
+            int threads =
+                Main.intOption(options, "--threads",
+                               Runtime.getRuntime().availableProcessors());
+            Main parsed = new Main(files.subList(0, 1));
+            Machine template = parsed.readConfig();
+            parsed.close();
+            long start = System.nanoTime();
+            CompositeStore store =
+                open(template, files.get(2).trim().split("\\s+"),
+                     files.get(1), threads);
+            System.err.printf("%s %d positions in %d ms%n",
+                              store.computed() ? "computed" : "mapped",
+                              store.positions(),
+                              (System.nanoTime() - start) / 1_000_000);
+            store.close();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the store in directory DIR for the rotor order ORDER of
+     *  TEMPLATE's configuration, computing it with THREADS threads if it
+     *  is not already there. */
+    static CompositeStore open(Machine template, String[] order, String dir,
+                               int threads) {
+        Machine mach = template.copy();
+        mach.insertRotors(order);
+        int size = mach.alphabet().size();
+        if (size > MAX_SIZE) {
+            throw error("alphabet too large for a composite store");
+        }
+        long positions = 1;
+        for (int i = 1; i < mach.numRotors(); i += 1) {
+            positions *= size;
+            if (positions * size > MAX_BYTES) {
+                throw error("too many rotor positions to store");
+            }
+        }
+        long fingerprint = Catalog.fingerprint(template, order);
+        Path file = Paths.get(dir, String.format("%016x.rc", fingerprint));
+        boolean computed = false;
+        if (!valid(file, fingerprint, size, mach.numRotors() - 1)) {
+            compute(mach, file, fingerprint, positions, threads);
+            computed = true;
+        }
+        return new CompositeStore(file, order, size, positions, computed);
+    }
+
+    /** Return true iff FILE is a complete store with fingerprint
+     *  FINGERPRINT for an alphabet of SIZE characters and SLOTS rotor
+     *  settings. */
+    private static boolean valid(Path file, long fingerprint, int size,
+                                 int slots) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel =
+             FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES
+                || header.getInt() != MAGIC || header.getInt() != size
+                || header.getInt() != slots) {
+                return false;
+            }
+            header.getInt();
+            long positions = 1;
+            for (int i = 0; i < slots; i += 1) {
+                positions *= size;
+            }
+            return header.getLong() == fingerprint
+                && channel.size() == HEADER_BYTES + positions * size;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Compute the store FILE, with fingerprint FINGERPRINT, of the
+     *  POSITIONS positions of MACH, whose rotors are inserted, using
+     *  THREADS threads, replacing FILE atomically when done. */
+    private static void compute(Machine mach, Path file, long fingerprint,
+                                long positions, int threads) {
+        int size = mach.alphabet().size();
+        int slots = mach.numRotors() - 1;
+        Path tmp = Paths.get(file + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        } catch (IOException excp) {
+            throw error("could not create %s", file.getParent());
+        }
+        try (FileChannel channel =
+             FileChannel.open(tmp, StandardOpenOption.CREATE,
+                              StandardOpenOption.READ,
+                              StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(size).putInt(slots).putInt(0)
+                .putLong(fingerprint);
+            header.flip();
+            channel.write(header, 0);
+            MappedByteBuffer[] segments = map(channel,
+                                              FileChannel.MapMode.READ_WRITE,
+                                              size, positions);
+            threads = (int) Math.max(1, Math.min(threads, positions));
+            ArrayList<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t += 1) {
+                long from = positions * t / threads,
+                    to = positions * (t + 1) / threads;
+                tasks.add(() -> {
+                    fill(mach.copy(), segments, from, to);
+                    return null;
+                });
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                for (Future<Void> result : pool.invokeAll(tasks)) {
+                    result.get();
+                }
+            } catch (InterruptedException excp) {
+                throw error("interrupted");
+            } catch (ExecutionException excp) {
+                throw error("could not compute %s: %s", file,
+                            excp.getCause());
+            } finally {
+                pool.shutdown();
+            }
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", file);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw error("could not write %s", file);
+        }
+    }
+
+    /** Store in SEGMENTS the rotor conversions of MACH at positions FROM
+     *  up to TO. */
+    private static void fill(Machine mach, MappedByteBuffer[] segments,
+                             long from, long to) {
+        int size = mach.alphabet().size();
+        long rows = rowsPerSegment(size);
+        int[] posn = new int[mach.numRotors() - 1];
+        long p = from;
+        for (int i = posn.length - 1; i >= 0; i -= 1) {
+            posn[i] = (int) (p % size);
+            p /= size;
+        }
+        int[] table = new int[size];
+        byte[] row = new byte[size];
+        ByteBuffer segment = null;
+        for (p = from; p < to; p += 1) {
+            if (segment == null || p % rows == 0) {
+                segment = segments[(int) (p / rows)].duplicate();
+            }
+            mach.setRotors(posn);
+            mach.rotorComposite(table);
+            for (int c = 0; c < size; c += 1) {
+                row[c] = (byte) table[c];
+            }
+            segment.put((int) (p % rows) * size, row);
+            for (int i = posn.length - 1; i >= 0; i -= 1) {
+                posn[i] += 1;
+                if (posn[i] < size) {
+                    break;
+                }
+                posn[i] = 0;
+            }
+        }
+    }
+
+    /** Return mappings with mode MODE of the tables of the POSITIONS
+     *  positions, each of SIZE bytes, in CHANNEL, no table split between
+     *  two mappings. */
+    private static MappedByteBuffer[] map(FileChannel channel,
+                                          FileChannel.MapMode mode,
+                                          int size, long positions)
+        throws IOException {
+        long rows = rowsPerSegment(size);
+        int numSegments = (int) ((positions + rows - 1) / rows);
+        MappedByteBuffer[] result = new MappedByteBuffer[numSegments];
+        for (int s = 0; s < numSegments; s += 1) {
+            long n = Math.min(rows, positions - s * rows);
+            result[s] = channel.map(mode, HEADER_BYTES + s * rows * size,
+                                    n * size);
+        }
+        return result;
+    }
+
+    /** Return the number of tables of SIZE bytes in each mapping. */
+    private static long rowsPerSegment(int size) {
+        return SEGMENT_BYTES / size;
+    }
+
+    /** The store in FILE, of rotor order ORDER, for an alphabet of SIZE
+     *  characters and POSITIONS positions; COMPUTED iff it was computed
+     *  rather than found. */
+    private CompositeStore(Path file, String[] order, int size,
+                           long positions, boolean computed) {
+        _order = order.clone();
+        _size = size;
+        _positions = positions;
+        _rows = rowsPerSegment(size);
+        _computed = computed;
+        try {
+            _channel = FileChannel.open(file, StandardOpenOption.READ);
+            _segments = map(_channel, FileChannel.MapMode.READ_ONLY,
+                            size, positions);
+        } catch (IOException excp) {
+            throw error("could not read %s", file);
+        }
+    }
+
+    /** Return true iff I was computed when opened, rather than found. */
+    boolean computed() {
+        return _computed;
+    }
+
+    /** Return my number of positions. */
+    long positions() {
+        return _positions;
+    }
+
+    /** Return the number of the position of the rotors of MACH, which
+     *  must be of my rotor order. */
+    long position(Machine mach) {
+        long p = 0;
+        for (int k = 1; k < mach.numRotors(); k += 1) {
+            p = p * _size + mach.getRotor(k).setting();
+        }
+        return p;
+    }
+
+    /** Return the rotor conversion of C at position number P. */
+    int convert(long p, int c) {
+        return _segments[(int) (p / _rows)]
+            .get((int) (p % _rows) * _size + c) & BYTE_MASK;
+    }
+
+    /** Store in RESULT the conversion by MACH, which must be of my rotor
+     *  order, of the first N indices of MSG with plugboard PLUG, stepping
+     *  MACH as convert would but taking each rotor conversion from me.
+     *  MACH's own plugboard is ignored. */
+    void convert(Machine mach, int[] msg, int[] result, int n,
+                 Plugboard plug) {
+        for (int k = 0; k < _order.length; k += 1) {
+            if (!mach.getRotor(k).name().equals(_order[k])) {
+                throw error("machine is not of the stored rotor order");
+            }
+        }
+        int[] p = plug.table();
+        for (int i = 0; i < n; i += 1) {
+            mach.advance();
+            result[i] = p[convert(position(mach), p[msg[i]])];
+        }
+    }
+
+    /** Release my file. */
+    void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            /* Ignore. */
+        }
+    }
+
+    /** First word of a store file. */
+    private static final int MAGIC = 0x454e5331;
+
+    /** Bytes in a store file's header: MAGIC, alphabet size, number of
+     *  rotor settings, padding and fingerprint. */
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + Long.BYTES;
+
+    /** Largest alphabet whose conversions fit in a byte. */
+    private static final int MAX_SIZE = 1 << Byte.SIZE;
+
+    /** Mask selecting the low byte of an int. */
+    private static final int BYTE_MASK = MAX_SIZE - 1;
+
+    /** Largest store, in bytes of tables. */
+    private static final long MAX_BYTES = 1L << 36;
+
+    /** Largest mapping of a store file. */
+    private static final long SEGMENT_BYTES = 1 << 30;
+
+    /** Rotor names, in order. */
+    private final String[] _order;
+
+    /** Alphabet size. */
+    private final int _size;
+
+    /** Number of positions. */
+    private final long _positions;
+
+    /** Number of positions in each mapping. */
+    private final long _rows;
+
+    /** True iff I was computed when opened. */
+    private final boolean _computed;
+
+    /** The store file, open for reading. */
+    private final FileChannel _channel;
+
+    /** Mappings of the tables. */
+    private final MappedByteBuffer[] _segments;
+}
@@ -0,0 +1,84 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the CompositeStore class.
+ *  @author Sharona Yang
+ */
+public class CompositeStoreTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval configuration used by the acceptance tests. */
+    private static final String CONFIG = "../testing/correct/default.conf";
+
+    /** The rotor order stored. */
+    private static final String[] ORDER = { "B", "Beta", "III", "IV", "I" };
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testStore() throws IOException {
+        Main parsed = new Main(List.of(CONFIG));
+        Machine template = parsed.readConfig();
+        Path dir = Files.createTempDirectory("enigma-store");
+        CompositeStore store =
+            CompositeStore.open(template, ORDER, dir.toString(), 3);
+        assertTrue(store.computed());
+        assertEquals(26L * 26 * 26 * 26, store.positions());
+
+        Machine mach = template.copy();
+        parsed.setUp(mach, "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR)");
+        Machine check = mach.copy();
+        int[] msg = new int[5000], expected = new int[msg.length],
+            actual = new int[msg.length];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (i * 7 + i / 26) % 26;
+        }
+        check.convert(msg, expected, msg.length);
+        store.convert(mach.copy(), msg, actual, msg.length,
+                      new Plugboard(mach.plugboard()));
+        assertArrayEquals(expected, actual);
+
+        int[] table = new int[26];
+        mach.setPlugboard(new Permutation("", mach.alphabet()));
+        for (long p = 0; p < store.positions(); p += 9973) {
+            long q = p;
+            int[] posn = new int[4];
+            for (int i = 3; i >= 0; i -= 1) {
+                posn[i] = (int) (q % 26);
+                q /= 26;
+            }
+            mach.setRotors(posn);
+            assertEquals(p, store.position(mach));
+            mach.rotorComposite(table);
+            for (int c = 0; c < 26; c += 1) {
+                assertEquals(table[c], store.convert(p, c));
+            }
+        }
+        store.close();
+
+        CompositeStore again =
+            CompositeStore.open(template, ORDER, dir.toString(), 1);
+        assertFalse(again.computed());
+        parsed.setUp(mach, "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR)");
+        Arrays.fill(actual, -1);
+        again.convert(mach, msg, actual, msg.length,
+                      new Plugboard(mach.plugboard()));
+        assertArrayEquals(expected, actual);
+        again.close();
+    }
+}
@@ -0,0 +1,548 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only attack on a message enciphered by an Enigma machine
+ *  with a known configuration.  The attack first ranks every rotor order
+ *  and start position by the index of coincidence of the decryption it
+ *  gives with an empty plugboard, and then hill-climbs plugboard pairs
+ *  from the best of these by N-gram score.  Both phases run on all
+ *  available processors.  The restarts of the second are independent,
+ *  so that the result does not depend on their timing, and the best key
+ *  any of them finishes with is kept.
+ *  @author Sharona Yang
+ */
+public final class Cracker {
+
+    /** Attack a ciphertext as specified by ARGS, where ARGS[0] is the name
+     *  of a configuration file, ARGS[1] names the file of ciphertext,
+     *  ARGS[2] names a file of plaintext in the message language from
+     *  which to count N-grams, and the optional ARGS[3] names the output
+     *  file (otherwise, the standard output).  The output is a settings
+     *  line followed by the decrypted message, so that it can be fed back
+     *  to Main.  Options --candidates, --restarts and --pairs set the
+     *  number of positions kept from the first phase, the number of
+     *  hill-climbing restarts, and the largest number of plugboard pairs
+     *  tried.  Exits normally if there are no errors; otherwise with
+     *  code 1. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--candidates=(\\d+){0,1} "
+                                + "--restarts=(\\d+){0,1} "
+                                + "--pairs=(\\d+){0,1} --=(.*){3,4}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Cracker [--candidates=N] "
+                            + "[--restarts=N] [--pairs=N] CONFIG "
+                            + "CIPHERTEXT CORPUS [OUTPUT]");
+            }
+            List<String> files = options.get("--");
+            Machine mach = new Main(files.subList(0, 1)).readConfig();
+            Cracker cracker =
+                new Cracker(mach, readCiphertext(mach.alphabet(),
+                                                 files.get(1)),
+                            NGrams.read(mach.alphabet(), files.get(2)));
+            if (options.contains("--candidates")) {
+                cracker.setCandidates(intOption(options, "--candidates"));
+            }
+            if (options.contains("--restarts")) {
+                cracker.setRestarts(intOption(options, "--restarts"));
+            }
+            if (options.contains("--pairs")) {
+                cracker.setMaxPairs(intOption(options, "--pairs"));
+            }
+            PrintStream output = System.out;
+            if (files.size() > 3) {
+                output = new PrintStream(new File(files.get(3)));
+            }
+            cracker.report(cracker.crack(), output);
+            output.close();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the value of the numeric option KEY in OPTIONS. */
+    private static int intOption(CommandArgs options, String key) {
+        try {
+            return Integer.parseInt(options.get(key).get(0));
+        } catch (NumberFormatException excp) {
+            throw error("bad value for %s", key);
+        }
+    }
+
+    /** Return the indices in ALPHABET of the characters in the file
+     *  named NAME, ignoring whitespace. */
+    static int[] readCiphertext(Alphabet alphabet, String name) {
+        String text;
+        try {
+            text = new String(Files.readAllBytes(Paths.get(name)));
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+        int[] result = new int[text.length()];
+        int n = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            } else if (!alphabet.contains(c)) {
+                throw error("ciphertext character '%c' not in alphabet", c);
+            }
+            result[n] = alphabet.toInt(c);
+            n += 1;
+        }
+        if (n < 2) {
+            throw error("ciphertext too short");
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** An attack on CIPHER, a message given as indices into the alphabet
+     *  of TEMPLATE, which must be configured but need not have rotors
+     *  inserted.  Candidate decryptions are scored by NGRAMS, which may
+     *  be null if only rankPositions is used. TEMPLATE itself is never
+     *  stepped. */
+    Cracker(Machine template, int[] cipher, NGrams ngrams) {
+        _template = template;
+        _cipher = cipher;
+        _ngrams = ngrams;
+        _alphabet = template.alphabet();
+        _threads = Runtime.getRuntime().availableProcessors();
+        _candidates = 4 * _threads;
+        _restarts = 4 * _candidates;
+        _maxPairs = Math.min(10, _alphabet.size() / 2);
+    }
+
+    /** Keep the best N rotor orders and positions from the first phase. */
+    void setCandidates(int n) {
+        _candidates = Math.max(1, n);
+    }
+
+    /** Perform N hill-climbing restarts in the second phase. */
+    void setRestarts(int n) {
+        _restarts = Math.max(1, n);
+    }
+
+    /** Try plugboards of at most N pairs. */
+    void setMaxPairs(int n) {
+        _maxPairs = Math.max(0, Math.min(n, _alphabet.size() / 2));
+    }
+
+    /** Return the best key found for my ciphertext. */
+    Key crack() {
+        List<Key> candidates = rankPositions();
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (int r = 0; r < _restarts; r += 1) {
+            Key start = candidates.get(r % candidates.size());
+            long seed = r;
+            boolean scramble = r >= candidates.size();
+            tasks.add(() -> {
+                offer(climb(start, new SplittableRandom(seed), scramble));
+                return null;
+            });
+        }
+        runAll(tasks);
+        return _best;
+    }
+
+    /** Print KEY to OUTPUT as a settings line, followed by the decryption
+     *  of my ciphertext under it in groups of five. */
+    void report(Key key, PrintStream output) {
+        output.println(key.settings(_alphabet));
+        int[] plain = new int[_cipher.length];
+        Machine mach = key.machine(_template);
+        mach.convert(_cipher, plain, plain.length);
+        for (int i = 0; i < plain.length; i += 1) {
+            if (i % 5 == 0 && i != 0) {
+                output.print(" ");
+            }
+            output.print(_alphabet.toChar(plain[i]));
+        }
+        output.println();
+    }
+
+    /** Return the best candidates (as many as _candidates) of all rotor
+     *  orders and start positions with an empty plugboard, ranked by
+     *  index of coincidence, best first. */
+    List<Key> rankPositions() {
+        ArrayList<Callable<List<Key>>> tasks = new ArrayList<>();
+        for (String[] order : rotorOrders(_template)) {
+            tasks.add(() -> rankPositions(order));
+        }
+        PriorityQueue<Key> best = new PriorityQueue<>();
+        for (List<Key> keys : runAll(tasks)) {
+            for (Key key : keys) {
+                keep(best, key);
+            }
+        }
+        ArrayList<Key> result = new ArrayList<>(best);
+        Collections.sort(result, Collections.reverseOrder());
+        return result;
+    }
+
+    /** Return the best candidates among the start positions of ORDER,
+     *  ranked by index of coincidence. */
+    private List<Key> rankPositions(String[] order) {
+        return rankPositions(order, 0, numPositions(_template));
+    }
+
+    /** Return the best candidates among the start positions numbered FROM
+     *  up to TO of ORDER, ranked by index of coincidence.  Positions are
+     *  numbered in odometer order, the fast rotor last. */
+    List<Key> rankPositions(String[] order, long from, long to) {
+        Machine mach = _template.copy();
+        mach.insertRotors(order);
+        mach.setPlugboard(new Permutation("", _alphabet));
+        int[] posn = position(from, mach.numRotors() - 1, _alphabet.size());
+        int[] plain = new int[_cipher.length];
+        int[] counts = new int[_alphabet.size()];
+        PriorityQueue<Key> best = new PriorityQueue<>();
+        for (long p = from; p < to; p += 1) {
+            mach.setRotors(posn);
+            mach.convert(_cipher, plain, plain.length);
+            double ioc = indexOfCoincidence(plain, plain.length, counts);
+            if (best.size() < _candidates || ioc > best.peek().score()) {
+                keep(best, new Key(order, posn.clone(), null, ioc));
+            }
+            nextPosition(posn);
+        }
+        return new ArrayList<>(best);
+    }
+
+    /** Return the number of start positions of a rotor order of
+     *  TEMPLATE's configuration. */
+    static long numPositions(Machine template) {
+        long result = 1;
+        for (int i = 1; i < template.numRotors(); i += 1) {
+            result *= template.alphabet().size();
+        }
+        return result;
+    }
+
+    /** Return start position number P, in odometer order, of SLOTS rotors
+     *  over an alphabet of SIZE characters. */
+    static int[] position(long p, int slots, int size) {
+        int[] result = new int[slots];
+        for (int i = slots - 1; i >= 0; i -= 1) {
+            result[i] = (int) (p % size);
+            p /= size;
+        }
+        return result;
+    }
+
+    /** Return the number, in odometer order, of start position POSN over
+     *  an alphabet of SIZE characters. */
+    static long positionNumber(int[] posn, int size) {
+        long result = 0;
+        for (int p : posn) {
+            result = result * size + p;
+        }
+        return result;
+    }
+
+    /** Add KEY to BEST, a heap of the best keys seen so far, discarding
+     *  the worst if there are now more than _candidates. */
+    private void keep(PriorityQueue<Key> best, Key key) {
+        best.add(key);
+        if (best.size() > _candidates) {
+            best.poll();
+        }
+    }
+
+    /** Set POSN to the start position following it in odometer order,
+     *  returning false if it wraps around to all zeros. */
+    private boolean nextPosition(int[] posn) {
+        for (int i = posn.length - 1; i >= 0; i -= 1) {
+            posn[i] += 1;
+            if (posn[i] < _alphabet.size()) {
+                return true;
+            }
+            posn[i] = 0;
+        }
+        return false;
+    }
+
+    /** Return the index of coincidence of the first LEN indices of TEXT,
+     *  using COUNTS (of alphabet size) as scratch space. */
+    static double indexOfCoincidence(int[] text, int len, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < len; i += 1) {
+            counts[text[i]] += 1;
+        }
+        long sum = 0;
+        for (int count : counts) {
+            sum += (long) count * (count - 1);
+        }
+        return (double) sum / ((double) len * (len - 1));
+    }
+
+    /** Return all rotor orders permitted by the configuration of
+     *  TEMPLATE: a reflector, then distinct non-moving rotors, then
+     *  distinct moving rotors in the slots with pawls. */
+    static List<String[]> rotorOrders(Machine template) {
+        ArrayList<String[]> result = new ArrayList<>();
+        String[] order = new String[template.numRotors()];
+        for (Rotor r : template.allRotors()) {
+            if (r.reflecting()) {
+                order[0] = r.name();
+                fillOrders(template, order, 1, result);
+            }
+        }
+        if (result.isEmpty()) {
+            throw error("no rotor order fits the configuration");
+        }
+        return result;
+    }
+
+    /** Add to RESULT every completion of ORDER from slot K onward that
+     *  fits TEMPLATE. */
+    private static void fillOrders(Machine template, String[] order, int k,
+                                   List<String[]> result) {
+        if (k == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        boolean moving = k >= template.numRotors() - template.numPawls();
+        for (Rotor r : template.allRotors()) {
+            if (r.reflecting() || r.rotates() != moving
+                || Arrays.asList(order).subList(1, k).contains(r.name())) {
+                continue;
+            }
+            order[k] = r.name();
+            fillOrders(template, order, k + 1, result);
+        }
+    }
+
+    /** Return the best key reachable by hill-climbing plugboard pairs
+     *  from START, using RANDOM to choose a few initial pairs if
+     *  SCRAMBLE.  The rotor path of the message is computed once; each
+     *  trial only rewires the plugboard. */
+    private Key climb(Key start, SplittableRandom random, boolean scramble) {
+        Machine mach = start.machine(_template);
+        RotorCore core = new RotorCore(mach, _cipher.length);
+        int size = _alphabet.size();
+        Plugboard plug = new Plugboard(size), saved = new Plugboard(size);
+        int[] plain = new int[_cipher.length];
+        if (scramble) {
+            for (int k = random.nextInt(_maxPairs / 2 + 1); k > 0; k -= 1) {
+                int a = random.nextInt(size), b = random.nextInt(size);
+                if (plug.permute(a) == a && plug.permute(b) == b) {
+                    plug.pair(a, b);
+                }
+            }
+        }
+        double score = evaluate(core, plug, plain);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < size; a += 1) {
+                for (int b = a + 1; b < size; b += 1) {
+                    saved.copyFrom(plug);
+                    if (!repair(plug, a, b)) {
+                        continue;
+                    }
+                    double trial = evaluate(core, plug, plain);
+                    if (trial > score) {
+                        score = trial;
+                        improved = true;
+                    } else {
+                        plug.copyFrom(saved);
+                    }
+                }
+            }
+        }
+        return new Key(start.rotors(), start.positions(),
+                       plug.table().clone(), score);
+    }
+
+    /** Modify the plugboard PLUG to try A and B: unplug them if they form
+     *  a pair, and otherwise pair them, unplugging their old partners.
+     *  Return false if that would exceed _maxPairs. */
+    private boolean repair(Plugboard plug, int a, int b) {
+        if (plug.permute(a) == b) {
+            plug.unpair(a);
+            return true;
+        }
+        if (plug.permute(a) == a && plug.permute(b) == b
+            && plug.pairs() >= _maxPairs) {
+            return false;
+        }
+        plug.pair(a, b);
+        return true;
+    }
+
+    /** Return the N-gram score of my ciphertext decrypted along the rotor
+     *  path CORE with plugboard PLUG, using PLAIN as the buffer for the
+     *  decryption. */
+    private double evaluate(RotorCore core, Plugboard plug, int[] plain) {
+        core.convert(_cipher, plain, plain.length, plug);
+        return _ngrams.score(plain, plain.length);
+    }
+
+    /** Return the cycle notation over ALPHABET of the plugboard PLUG. */
+    static String cycles(int[] plug, Alphabet alphabet) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < plug.length; i += 1) {
+            if (plug[i] > i) {
+                result.append('(').append(alphabet.toChar(i))
+                    .append(alphabet.toChar(plug[i])).append(") ");
+            }
+        }
+        return result.toString().trim();
+    }
+
+    /** Record KEY as the best so far if it beats the current best. */
+    private synchronized void offer(Key key) {
+        if (_best == null || key.score() > _best.score()) {
+            _best = key;
+        }
+    }
+
+    /** Run TASKS on _threads threads, returning their results in order. */
+    private <T> List<T> runAll(List<Callable<T>> tasks) {
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        try {
+            ArrayList<T> result = new ArrayList<>();
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (InterruptedException excp) {
+            throw error("attack interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** A candidate key: rotor order, start position and plugboard,
+     *  together with its score (higher is better). */
+    static final class Key implements Comparable<Key> {
+
+        /** A key with rotors named ROTORS at start position POSITIONS,
+         *  plugboard PLUG (an involution on indices, or null for none),
+         *  and score SCORE. */
+        Key(String[] rotors, int[] positions, int[] plug, double score) {
+            _rotors = rotors;
+            _positions = positions;
+            _plug = plug;
+            _score = score;
+        }
+
+        /** Return my rotor names, reflector first. */
+        String[] rotors() {
+            return _rotors;
+        }
+
+        /** Return my start position as alphabet indices. */
+        int[] positions() {
+            return _positions;
+        }
+
+        /** Return my score. */
+        double score() {
+            return _score;
+        }
+
+        /** Return a copy of TEMPLATE set to me. */
+        Machine machine(Machine template) {
+            Machine mach = template.copy();
+            mach.insertRotors(_rotors);
+            mach.setRotors(_positions);
+            mach.setPlugboard(new Permutation(_plug == null ? ""
+                                              : cycles(_plug,
+                                                       mach.alphabet()),
+                                              mach.alphabet()));
+            return mach;
+        }
+
+        /** Return me as a settings line over ALPHABET. */
+        String settings(Alphabet alphabet) {
+            StringBuilder result = new StringBuilder("*");
+            for (String name : _rotors) {
+                result.append(' ').append(name);
+            }
+            result.append(' ');
+            for (int p : _positions) {
+                result.append(alphabet.toChar(p));
+            }
+            if (_plug != null && !cycles(_plug, alphabet).isEmpty()) {
+                result.append(' ').append(cycles(_plug, alphabet));
+            }
+            return result.toString();
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return Double.compare(_score, other._score);
+        }
+
+        /** Rotor names, reflector first. */
+        private final String[] _rotors;
+
+        /** Start position. */
+        private final int[] _positions;
+
+        /** Plugboard, or null. */
+        private final int[] _plug;
+
+        /** Score of this key. */
+        private final double _score;
+    }
+
+    /** Machine whose copies perform all trial decryptions. */
+    private final Machine _template;
+
+    /** Alphabet of _template. */
+    private final Alphabet _alphabet;
+
+    /** The ciphertext under attack. */
+    private final int[] _cipher;
+
+    /** Scores candidate decryptions. */
+    private final NGrams _ngrams;
+
+    /** Number of threads used. */
+    private final int _threads;
+
+    /** Number of candidates kept from the first phase. */
+    private int _candidates;
+
+    /** Number of hill-climbing restarts. */
+    private int _restarts;
+
+    /** Largest number of plugboard pairs tried. */
+    private int _maxPairs;
+
+    /** Best key any finished restart has returned. */
+    private Key _best;
+}
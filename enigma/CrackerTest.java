@@ -0,0 +1,95 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Cracker class.
+ *  @author Sharona Yang
+ */
+public class CrackerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String PLAIN =
+        "SHOULDYOUASKMEWHENCETHESESTORIESWHENCETHESELEGENDSANDTRADITIONS"
+        + "WITHTHEODORSOFTHEFORESTWITHTHEDEWANDDAMPOFMEADOWSWITHTHECURLING"
+        + "SMOKEOFWIGWAMSWITHTHERUSHINGOFGREATRIVERSWITHTHEIRFREQUENT"
+        + "REPETITIONSANDTHEIRWILDREVERBERATIONSASOFTHUNDERINTHEMOUNTAINS"
+        + "ISHOULDANSWERISHOULDTELLYOUFROMTHEFORESTSANDTHEPRAIRIESFROMTHE"
+        + "GREATLAKESOFTHENORTHLANDFROMTHELANDOFTHEOJIBWAYSFROMTHELANDOF"
+        + "THEDACOTAHSFROMTHEMOUNTAINSMOORSANDFENLANDSWHERETHEHERONTHE";
+
+    /** A machine with reflector B and moving rotors I, II and III, of
+     *  which it uses two. */
+    private Machine machine() {
+        HashMap<String, String> nav = NAVALA;
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), UPPER)));
+        rotors.add(new MovingRotor("I",
+                                   new Permutation(nav.get("I"), UPPER),
+                                   "Q"));
+        rotors.add(new MovingRotor("II",
+                                   new Permutation(nav.get("II"), UPPER),
+                                   "E"));
+        rotors.add(new MovingRotor("III",
+                                   new Permutation(nav.get("III"), UPPER),
+                                   "V"));
+        return new Machine(UPPER, 3, 2, rotors);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testIndexOfCoincidence() {
+        int[] text = { 0, 0, 1, 1 };
+        assertEquals(2.0 / 6.0,
+                     Cracker.indexOfCoincidence(text, 4, new int[26]),
+                     1e-9);
+    }
+
+    @Test
+    public void testCycles() {
+        int[] plug = new int[26];
+        for (int i = 0; i < plug.length; i += 1) {
+            plug[i] = i;
+        }
+        assertEquals("", Cracker.cycles(plug, UPPER));
+        plug[0] = 25;
+        plug[25] = 0;
+        plug[3] = 4;
+        plug[4] = 3;
+        assertEquals("(AZ) (DE)", Cracker.cycles(plug, UPPER));
+    }
+
+    @Test
+    public void testCrack() {
+        Machine mach = machine();
+        mach.insertRotors(new String[] { "B", "III", "I" });
+        mach.setRotors("KD");
+        mach.setPlugboard(new Permutation("(AQ) (TZ)", UPPER));
+        String cipher = mach.convert(PLAIN);
+        int[] text = new int[cipher.length()];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = UPPER.toInt(cipher.charAt(i));
+        }
+
+        Cracker cracker = new Cracker(machine(), text,
+                                      new NGrams(UPPER, 3, PLAIN));
+        cracker.setCandidates(8);
+        cracker.setRestarts(16);
+        cracker.setMaxPairs(3);
+        Cracker.Key key = cracker.crack();
+        assertEquals("* B III I KD (AQ) (TZ)", key.settings(UPPER));
+    }
+}
@@ -0,0 +1,606 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static enigma.EnigmaException.*;
+
+/** The choice, for the messages under each settings line (a segment), of
+ *  how Main converts them.  There are three strategies:
+ *  <ul>
+ *  <li> DIRECT: Machine's own hop through each rotor; no setup at all.
+ *  <li> COMPILED: a CompiledMachine for the rotor order's shape; fast
+ *       per character, but generating and compiling the class for a new
+ *       shape is costly.
+ *  <li> TABLES: the rotor conversion at every start position of the
+ *       rotor order (alphabet size entries for each of size^slots
+ *       positions), so that each character is one table lookup after
+ *       stepping; the tables are kept for reuse by later segments with
+ *       the same rotor order, but for large alphabets or many slots they
+ *       cost too much time and memory to build.
+ *  </ul>
+ *  An adaptive selector starts each segment DIRECT and, before each
+ *  message line, switches to the strategy that minimizes its estimated
+ *  cost of setting up plus converting the rest of the segment, which it
+ *  expects to be as long again as the part seen so far.  What each
+ *  strategy would cost to set up for a segment is worked out once when
+ *  the segment starts, and with it the length below which none can beat
+ *  the current one; until a segment reaches that length, its lines are
+ *  converted without reconsidering.  The per-character cost of DIRECT
+ *  and the cost of building tables come from a brief calibration at
+ *  startup; COMPILED and TABLES, whose code is fast only once warmed
+ *  up, start from fixed estimates.  All are refined from the
+ *  conversions actually done, once a strategy has converted enough of a
+ *  segment to be warmed up.  A shape already compiled (by this or an
+ *  earlier selector) costs nothing to set up.  Tables are not
+ *  considered if they would take more than a fraction of the memory
+ *  available.  Each switch is logged, with the estimates that led to
+ *  it, and finish() logs how many segments and characters each
+ *  strategy converted.
+ *  @author Sharona Yang
+ */
+final class EngineSelector {
+
+    /** Ways of converting a segment. */
+    enum Strategy {
+        /** Machine's rotor hops. */
+        DIRECT,
+        /** A CompiledMachine. */
+        COMPILED,
+        /** Tables of the rotor conversion at every position. */
+        TABLES;
+
+        /** Return my name as in the --engine option. */
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** Return the strategy named NAME in the --engine option, or null for
+     *  "auto", meaning an adaptive choice. */
+    static Strategy parse(String name) {
+        if (name.equals("auto")) {
+            return null;
+        }
+        for (Strategy s : Strategy.values()) {
+            if (s.label().equals(name)) {
+                return s;
+            }
+        }
+        throw error("unknown engine %s", name);
+    }
+
+    /** A selector that always uses FIXED or, if FIXED is null, chooses
+     *  adaptively, logging its choices to LOG (if not null). */
+    EngineSelector(Strategy fixed, PrintStream log) {
+        _fixed = fixed;
+        _log = log;
+        _perChar[Strategy.DIRECT.ordinal()] = DEFAULT_DIRECT_NANOS;
+        _perChar[Strategy.COMPILED.ordinal()] = DEFAULT_COMPILED_NANOS;
+        _perChar[Strategy.TABLES.ordinal()] = DEFAULT_TABLES_NANOS;
+        _compilable = CompiledMachine.available();
+    }
+
+    /** Measure the per-character cost of DIRECT and the cost of building
+     *  tables on a copy of TEMPLATE, a machine of the configuration to be
+     *  used, briefly enough not to slow short runs.  The per-character
+     *  costs of COMPILED and TABLES are not measured here: before their
+     *  code is warmed up, their costs say nothing about those on a long
+     *  segment, so they keep fixed estimates until measured in use. */
+    void calibrate(Machine template) {
+        long start = System.nanoTime();
+        Machine mach = template.copy();
+        mach.insertRotors(Cracker.rotorOrders(template).get(0));
+        mach.setPlugboard(new Permutation("", mach.alphabet()));
+        int size = mach.alphabet().size();
+        int[] msg = new int[CALIBRATION_CHARS],
+            result = new int[CALIBRATION_CHARS];
+        SplittableRandom random = new SplittableRandom(size);
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = random.nextInt(size);
+        }
+        int probe = (int) Math.min(Math.max(1, CALIBRATION_ENTRIES / size),
+                                   Cracker.numPositions(mach));
+        char[] table = new char[probe * size];
+        double direct = Double.MAX_VALUE, build = Double.MAX_VALUE;
+        for (int round = 0; round < CALIBRATION_ROUNDS; round += 1) {
+            Machine copy = mach.copy();
+            long t0 = System.nanoTime();
+            copy.convert(msg, result, msg.length);
+            direct = Math.min(direct, (double) (System.nanoTime() - t0)
+                              / msg.length);
+
+            t0 = System.nanoTime();
+            fill(mach.copy(), table, probe);
+            build = Math.min(build, (double) (System.nanoTime() - t0)
+                             / table.length);
+        }
+        _perChar[Strategy.DIRECT.ordinal()] = direct;
+        _buildNanosPerEntry = build;
+        String compiledCost = "compiled unavailable";
+        if (_compilable) {
+            compiledCost = String.format("compiled %.0f ns/char + %d ms per "
+                                         + "shape",
+                                         _perChar[Strategy.COMPILED
+                                                  .ordinal()],
+                                         _compileNanos / 1_000_000);
+        }
+        log("calibrated in %d ms: direct %.0f ns/char, tables %.1f "
+            + "ns/entry built; until measured, tables %.0f ns/char, %s",
+            (System.nanoTime() - start) / 1_000_000, direct,
+            _buildNanosPerEntry, _perChar[Strategy.TABLES.ordinal()],
+            compiledCost);
+    }
+
+    /** Start a new segment, whose machine MACH has just been set up. */
+    void startSegment(Machine mach) {
+        endSegment();
+        _segment += 1;
+        _seen = 0;
+        _warm = 0;
+        _compiled = null;
+        _table = null;
+        _current = _fixed == null ? Strategy.DIRECT : _fixed;
+        if (_fixed == Strategy.DIRECT) {
+            return;
+        }
+        _tableBytesNeeded = tableBytes(mach);
+        if (_fixed == Strategy.TABLES) {
+            if (_tableBytesNeeded == Long.MAX_VALUE) {
+                throw error("too many rotor positions for tables");
+            } else if (_tableBytesNeeded > memoryBudget()) {
+                throw error("rotor tables would need %d MB of the %d MB "
+                            + "allowed", _tableBytesNeeded >> 20,
+                            memoryBudget() >> 20);
+            }
+        }
+        _fingerprint = _tableBytesNeeded <= memoryBudget()
+            ? fingerprint(mach) : 0;
+        if (_fixed == null) {
+            _orderName = orderName(mach);
+            _setup[Strategy.DIRECT.ordinal()] = 0;
+            _setup[Strategy.COMPILED.ordinal()] =
+                !_compilable || mach.numPawls() == 0
+                ? Double.POSITIVE_INFINITY
+                : CompiledMachine.cached(mach) ? 0 : _compileNanos;
+            _setup[Strategy.TABLES.ordinal()] =
+                _tableBytesNeeded > memoryBudget() ? Double.POSITIVE_INFINITY
+                : _tables.containsKey(_fingerprint) ? 0
+                : _tableBytesNeeded / Character.BYTES * _buildNanosPerEntry;
+            _breakEven = breakEven();
+        }
+    }
+
+    /** End the current segment and, if choosing adaptively, log the
+     *  number of segments and characters each strategy converted. */
+    void finish() {
+        endSegment();
+        if (_fixed != null) {
+            return;
+        }
+        StringBuilder summary = new StringBuilder();
+        for (Strategy s : Strategy.values()) {
+            summary.append(String.format(", %s %d (%d chars)", s.label(),
+                                         _segments[s.ordinal()],
+                                         _chars[s.ordinal()]));
+        }
+        log("%d segments by final strategy%s", _segment,
+            summary.toString());
+    }
+
+    /** Count the current segment, if any, as converted by the strategy
+     *  it ended with. */
+    private void endSegment() {
+        if (_segment > _counted) {
+            _segments[_current.ordinal()] += 1;
+            _counted = _segment;
+        }
+    }
+
+    /** Return the length of segment below which no strategy can beat the
+     *  current one by SWITCH_MARGIN, or infinity if none ever can. */
+    private double breakEven() {
+        double current = _perChar[_current.ordinal()] * SWITCH_MARGIN;
+        double result = Double.POSITIVE_INFINITY;
+        for (Strategy s : Strategy.values()) {
+            double saving = current - _perChar[s.ordinal()];
+            if (s != _current && saving > 0) {
+                result = Math.min(result, _setup[s.ordinal()] / saving);
+            }
+        }
+        return result;
+    }
+
+    /** Return the conversion of MSG by MACH, which must be in the segment
+     *  last started, advancing its rotors accordingly. */
+    String convert(Machine mach, String msg) {
+        int n = msg.length();
+        if (_fixed == null && Math.max(n, _seen + n) >= _breakEven) {
+            reconsider(mach, n);
+        }
+        _chars[_current.ordinal()] += n;
+        if (_current == Strategy.DIRECT) {
+            long start = System.nanoTime();
+            String result = mach.convert(msg);
+            measure(start, n);
+            return result;
+        }
+        Alphabet alpha = mach.alphabet();
+        if (_text.length < n) {
+            _text = new int[Math.max(n, 2 * _text.length)];
+            _letters = new char[_text.length];
+        }
+        int[] text = _text;
+        for (int i = 0; i < n; i += 1) {
+            text[i] = alpha.toInt(msg.charAt(i));
+        }
+        long start = System.nanoTime();
+        switch (_current) {
+        case COMPILED:
+            if (_compiled == null) {
+                _compiled = compile(mach);
+                start = System.nanoTime();
+            }
+            _compiled.convert(text, text, n);
+            if (_posn.length != mach.numRotors() - 1) {
+                _posn = new int[mach.numRotors() - 1];
+            }
+            for (int k = 0; k < _posn.length; k += 1) {
+                _posn[k] = _compiled.setting(k + 1);
+            }
+            mach.setRotors(_posn);
+            break;
+        case TABLES:
+            if (_table == null) {
+                _table = table(mach);
+                _plug = new int[alpha.size()];
+                for (int c = 0; c < _plug.length; c += 1) {
+                    _plug[c] = mach.plugboard().permute(c);
+                }
+                start = System.nanoTime();
+            }
+            convertTables(mach, _table, Integer.MAX_VALUE, _plug, text,
+                          text, n);
+            break;
+        default:
+            throw new IllegalStateException();
+        }
+        measure(start, n);
+        for (int i = 0; i < n; i += 1) {
+            _letters[i] = alpha.toChar(text[i]);
+        }
+        return new String(_letters, 0, n);
+    }
+
+    /** Note the conversion of N more characters of the segment by the
+     *  current strategy, begun at time START, refining its estimated
+     *  cost if N is large enough for a reliable measurement and the
+     *  strategy has converted enough of the segment to be warmed up. */
+    private void measure(long start, int n) {
+        if (n >= MEASURED_LINE && _warm >= WARM_CHARS) {
+            int k = _current.ordinal();
+            double measured = (double) (System.nanoTime() - start) / n;
+            _perChar[k] += (measured - _perChar[k]) * SMOOTHING;
+            if (_fixed == null) {
+                _breakEven = breakEven();
+            }
+        }
+        _seen += n;
+        _warm += n;
+    }
+
+    /** Return the strategy in use. */
+    Strategy current() {
+        return _current;
+    }
+
+    /** Choose the strategy for the rest of the current segment of MACH,
+     *  whose next message line has N characters. */
+    private void reconsider(Machine mach, int n) {
+        double expected = Math.max(n, _seen + n);
+        Strategy best = _current;
+        double bestCost = cost(_current, expected);
+        for (Strategy s : Strategy.values()) {
+            double c = cost(s, expected);
+            if (c < bestCost * SWITCH_MARGIN) {
+                best = s;
+                bestCost = c;
+            }
+        }
+        if (best != _current) {
+            log("segment %d (%s): %s at character %d (expecting %.0f "
+                + "more): direct %s, compiled %s, tables %s", _segment,
+                _orderName, best.label(), _seen, expected,
+                describe(Strategy.DIRECT, expected),
+                describe(Strategy.COMPILED, expected),
+                describe(Strategy.TABLES, expected));
+            _current = best;
+            _warm = 0;
+            _compiled = null;
+            _setup[best.ordinal()] = 0;
+        }
+        _breakEven = breakEven();
+    }
+
+    /** Return the estimated cost, in nanoseconds, of converting EXPECTED
+     *  more characters of the current segment with S, including any
+     *  setup, or infinity if S cannot be used. */
+    private double cost(Strategy s, double expected) {
+        double perChar = _perChar[s.ordinal()] * expected;
+        if (s == _current) {
+            return perChar;
+        }
+        return perChar + _setup[s.ordinal()];
+    }
+
+    /** Return a description of the estimated cost of S for EXPECTED more
+     *  characters of the current segment, for the log. */
+    private String describe(Strategy s, double expected) {
+        double c = cost(s, expected);
+        if (Double.isInfinite(c)) {
+            return "unavailable";
+        }
+        return String.format("%.1f ms", c / 1e6);
+    }
+
+    /** Return a CompiledMachine loaded from MACH, noting the time taken
+     *  if its shape had to be compiled, and logging if it could not be
+     *  specialized. */
+    private CompiledMachine compile(Machine mach) {
+        boolean cached = CompiledMachine.cached(mach);
+        long start = System.nanoTime();
+        CompiledMachine result = CompiledMachine.compile(mach);
+        if (!result.specialized()) {
+            log("segment %d: compiled runs an ordinary Machine (%s)",
+                _segment, mach.numPawls() == 0 ? "no pawls"
+                : "no compiler available");
+        } else if (!cached) {
+            _compileNanos = System.nanoTime() - start;
+        }
+        return result;
+    }
+
+    /** Return the rotor tables of MACH's rotor order, building them if
+     *  they are not kept. */
+    private char[] table(Machine mach) {
+        long key = _fingerprint;
+        char[] result = _tables.get(key);
+        if (result == null) {
+            int positions = (int) Cracker.numPositions(mach);
+            result = new char[positions * mach.alphabet().size()];
+            Machine copy = mach.copy();
+            long start = System.nanoTime();
+            fill(copy, result, positions);
+            _buildNanosPerEntry = (double) (System.nanoTime() - start)
+                / result.length;
+            _tables.put(key, result);
+            _tableBytes += (long) result.length * Character.BYTES;
+            Iterator<Map.Entry<Long, char[]>> oldest =
+                _tables.entrySet().iterator();
+            while (_tableBytes > memoryBudget() && _tables.size() > 1) {
+                _tableBytes -= (long) oldest.next().getValue().length
+                    * Character.BYTES;
+                oldest.remove();
+            }
+        }
+        return result;
+    }
+
+    /** Fill TABLE with the rotor conversions of MACH, whose rotors are
+     *  inserted, at its first POSITIONS positions in odometer order. */
+    static void fill(Machine mach, char[] table, int positions) {
+        int size = mach.alphabet().size();
+        int[] posn = new int[mach.numRotors() - 1];
+        int[] row = new int[size];
+        for (int p = 0; p < positions; p += 1) {
+            mach.setRotors(posn);
+            mach.rotorComposite(row);
+            for (int c = 0; c < size; c += 1) {
+                table[p * size + c] = (char) row[c];
+            }
+            for (int i = posn.length - 1; i >= 0; i -= 1) {
+                posn[i] += 1;
+                if (posn[i] < size) {
+                    break;
+                }
+                posn[i] = 0;
+            }
+        }
+    }
+
+    /** Convert the first N indices of MSG into RESULT by stepping MACH and
+     *  looking up its rotor conversions in TABLE, with plugboard PLUG,
+     *  stopping early if it reaches a position numbered LIMIT or more.
+     *  Return the number converted. */
+    static int convertTables(Machine mach, char[] table, int limit,
+                             int[] plug, int[] msg, int[] result, int n) {
+        int size = mach.alphabet().size();
+        int slots = mach.numRotors();
+        for (int i = 0; i < n; i += 1) {
+            mach.advance();
+            int p = 0;
+            for (int k = 1; k < slots; k += 1) {
+                p = p * size + mach.getRotor(k).setting();
+            }
+            if (p >= limit) {
+                return i;
+            }
+            result[i] = plug[table[p * size + plug[msg[i]]]];
+        }
+        return n;
+    }
+
+    /** Return the bytes the rotor tables of MACH's rotor order need, or
+     *  Long.MAX_VALUE if they cannot be indexed. */
+    private static long tableBytes(Machine mach) {
+        long entries = Cracker.numPositions(mach) * mach.alphabet().size();
+        if (entries > Integer.MAX_VALUE - 8
+            || mach.alphabet().size() > Character.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return entries * Character.BYTES;
+    }
+
+    /** Return the most memory that tables may take. */
+    private static long memoryBudget() {
+        return Runtime.getRuntime().maxMemory() / MEMORY_FRACTION;
+    }
+
+    /** Return the fingerprint of MACH's rotor order. */
+    private static long fingerprint(Machine mach) {
+        String[] order = new String[mach.numRotors()];
+        for (int k = 0; k < order.length; k += 1) {
+            order[k] = mach.getRotor(k).name();
+        }
+        return Catalog.fingerprint(mach, order);
+    }
+
+    /** Return the rotor names of MACH, separated by spaces. */
+    private static String orderName(Machine mach) {
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < mach.numRotors(); k += 1) {
+            if (k > 0) {
+                result.append(' ');
+            }
+            result.append(mach.getRotor(k).name());
+        }
+        return result.toString();
+    }
+
+    /** Log FORMAT with ARGS, if logging. */
+    private void log(String format, Object... args) {
+        if (_log != null) {
+            _log.printf("engine: " + format + "%n", args);
+        }
+    }
+
+    /** Default nanoseconds per character of DIRECT, before
+     *  calibration. */
+    private static final double DEFAULT_DIRECT_NANOS = 150;
+
+    /** Default nanoseconds per character of COMPILED, until measured. */
+    private static final double DEFAULT_COMPILED_NANOS = 25;
+
+    /** Default nanoseconds per character of TABLES, until measured. */
+    private static final double DEFAULT_TABLES_NANOS = 40;
+
+    /** Default nanoseconds per table entry built, before calibration. */
+    private static final double DEFAULT_BUILD_NANOS = 100;
+
+    /** Default nanoseconds to compile a shape, until measured. */
+    private static final long DEFAULT_COMPILE_NANOS = 600_000_000L;
+
+    /** Characters converted in each round of calibration. */
+    private static final int CALIBRATION_CHARS = 1 << 10;
+
+    /** Largest number of table entries built in each round of
+     *  calibration. */
+    private static final long CALIBRATION_ENTRIES = 1 << 13;
+
+    /** Rounds of calibration, the fastest of which is kept. */
+    private static final int CALIBRATION_ROUNDS = 4;
+
+    /** Characters of a segment a strategy converts before its times
+     *  refine the estimates. */
+    private static final int WARM_CHARS = 1 << 16;
+
+    /** Shortest message line whose conversion time refines the
+     *  estimates. */
+    private static final int MEASURED_LINE = 1024;
+
+    /** Weight of each new measurement in the estimates. */
+    private static final double SMOOTHING = 0.2;
+
+    /** Factor by which another strategy must beat the current one. */
+    private static final double SWITCH_MARGIN = 0.8;
+
+    /** Tables may take at most 1 / MEMORY_FRACTION of the heap. */
+    private static final int MEMORY_FRACTION = 4;
+
+    /** The strategy always used, or null if adaptive. */
+    private final Strategy _fixed;
+
+    /** Destination of the log, or null. */
+    private final PrintStream _log;
+
+    /** Estimated nanoseconds per character, by strategy. */
+    private final double[] _perChar = new double[Strategy.values().length];
+
+    /** Estimated nanoseconds per table entry built. */
+    private double _buildNanosPerEntry = DEFAULT_BUILD_NANOS;
+
+    /** Estimated nanoseconds to compile a new shape. */
+    private long _compileNanos = DEFAULT_COMPILE_NANOS;
+
+    /** Rotor tables kept, by rotor order fingerprint, oldest first. */
+    private final LinkedHashMap<Long, char[]> _tables =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Bytes in _tables. */
+    private long _tableBytes;
+
+    /** Number of the current segment, from 1. */
+    private int _segment;
+
+    /** Characters converted in the current segment. */
+    private long _seen;
+
+    /** Strategy for the current segment. */
+    private Strategy _current = Strategy.DIRECT;
+
+    /** Compiled machine of the current segment, or null. */
+    private CompiledMachine _compiled;
+
+    /** Rotor tables of the current segment, or null. */
+    private char[] _table;
+
+    /** Plugboard of the current segment, as a table, when using
+     *  _table. */
+    private int[] _plug;
+
+    /** True iff CompiledMachines can be compiled here. */
+    private final boolean _compilable;
+
+    /** Estimated nanoseconds to set up each strategy for the rest of the
+     *  current segment (infinite if it cannot be used), when adaptive. */
+    private final double[] _setup = new double[Strategy.values().length];
+
+    /** Length of the current segment below which it is not worth
+     *  reconsidering its strategy. */
+    private double _breakEven = Double.POSITIVE_INFINITY;
+
+    /** Bytes the rotor tables of the current segment would need. */
+    private long _tableBytesNeeded;
+
+    /** Fingerprint of the current segment's rotor order, if its tables
+     *  fit in memory. */
+    private long _fingerprint;
+
+    /** Characters of the current segment converted by the current
+     *  strategy. */
+    private long _warm;
+
+    /** Rotor names of the current segment, for the log. */
+    private String _orderName;
+
+    /** Segments counted in _segments so far. */
+    private int _counted;
+
+    /** Number of segments that ended with each strategy. */
+    private final long[] _segments = new long[Strategy.values().length];
+
+    /** Number of characters converted with each strategy. */
+    private final long[] _chars = new long[Strategy.values().length];
+
+    /** Buffer for the indices of a message line. */
+    private int[] _text = new int[0];
+
+    /** Buffer for the characters of a converted line. */
+    private char[] _letters = new char[0];
+
+    /** Buffer for the rotor settings of a compiled machine. */
+    private int[] _posn = new int[0];
+}
@@ -0,0 +1,170 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EngineSelector class.
+ *  @author Sharona Yang
+ */
+public class EngineSelectorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A machine with reflector B and moving rotors I, II and III, of
+     *  which it uses two. */
+    private Machine machine() {
+        HashMap<String, String> nav = NAVALA;
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), UPPER)));
+        rotors.add(new MovingRotor("I",
+                                   new Permutation(nav.get("I"), UPPER),
+                                   "Q"));
+        rotors.add(new MovingRotor("II",
+                                   new Permutation(nav.get("II"), UPPER),
+                                   "E"));
+        rotors.add(new MovingRotor("III",
+                                   new Permutation(nav.get("III"), UPPER),
+                                   "V"));
+        return new Machine(UPPER, 3, 2, rotors);
+    }
+
+    /** A naval machine: reflector B, fixed rotor Beta and moving rotors
+     *  I, II and III, in five slots.  Its rotor tables would take too
+     *  long to build for any but a very long segment. */
+    private Machine naval() {
+        HashMap<String, String> nav = NAVALA;
+        Machine mach = machine();
+        ArrayList<Rotor> rotors = new ArrayList<>(mach.allRotors());
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(nav.get("Beta"), UPPER)));
+        return new Machine(UPPER, 5, 3, rotors);
+    }
+
+    /** Return MACH set to rotors ORDER at POSITIONS with plugboard
+     *  CYCLES. */
+    private Machine setUp(Machine mach, String[] order, String positions,
+                          String cycles) {
+        mach.insertRotors(order);
+        mach.setRotors(positions);
+        mach.setPlugboard(new Permutation(cycles, UPPER));
+        return mach;
+    }
+
+    /** Return a message of N letters. */
+    private String message(int n) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            result.append((char) ('A' + (i * 7 + i / 13) % 26));
+        }
+        return result.toString();
+    }
+
+    /** Check that SELECTOR converts lines of the given LENGTHS under two
+     *  settings lines as Machine does. */
+    private void checkAgainstMachine(EngineSelector selector,
+                                     int... lengths) {
+        String[][] orders = { { "B", "III", "I" }, { "B", "I", "II" } };
+        String[] positions = { "KD", "AP" };
+        for (int s = 0; s < orders.length; s += 1) {
+            Machine mach = setUp(machine(), orders[s], positions[s],
+                                 "(AQ) (TZ)");
+            Machine check = setUp(machine(), orders[s], positions[s],
+                                  "(AQ) (TZ)");
+            selector.startSegment(mach);
+            for (int n : lengths) {
+                String msg = message(n);
+                assertEquals(check.convert(msg), selector.convert(mach, msg));
+                for (int k = 1; k < 3; k += 1) {
+                    assertEquals(check.getRotor(k).setting(),
+                                 mach.getRotor(k).setting());
+                }
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testParse() {
+        assertNull(EngineSelector.parse("auto"));
+        assertEquals(EngineSelector.Strategy.TABLES,
+                     EngineSelector.parse("tables"));
+        assertEquals(EngineSelector.Strategy.COMPILED,
+                     EngineSelector.parse("compiled"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadName() {
+        EngineSelector.parse("turbo");
+    }
+
+    @Test
+    public void testFixed() {
+        for (EngineSelector.Strategy s : EngineSelector.Strategy.values()) {
+            EngineSelector selector = new EngineSelector(s, null);
+            checkAgainstMachine(selector, 5, 700, 1, 3000);
+            assertEquals(s, selector.current());
+        }
+    }
+
+    @Test
+    public void testAdaptive() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream log = new PrintStream(bytes, true);
+        EngineSelector selector = new EngineSelector(null, log);
+        selector.calibrate(machine());
+        Machine mach = setUp(machine(), new String[] { "B", "III", "I" },
+                             "KD", "");
+        selector.startSegment(mach);
+        assertEquals(EngineSelector.Strategy.DIRECT, selector.current());
+        selector.convert(mach, "HELLO");
+        if (!CompiledMachine.cached(mach)) {
+            assertEquals(EngineSelector.Strategy.DIRECT, selector.current());
+        }
+        checkAgainstMachine(selector, 10, 20000, 50000, 100000, 7);
+        selector.finish();
+        String text = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(text, text.startsWith("engine: calibrated"));
+        assertTrue(text, text.contains("engine: 3 segments by final "
+                                       + "strategy, direct "));
+    }
+
+    @Test
+    public void testPicksCompiled() {
+        if (!CompiledMachine.available()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream log = new PrintStream(bytes, true);
+        EngineSelector selector = new EngineSelector(null, log);
+        selector.calibrate(naval());
+        Machine mach = setUp(naval(), new String[] { "B", "Beta", "I", "II",
+                                                     "III" },
+                             "AXLE", "(AQ) (TZ)");
+        Machine check = mach.copy();
+        CompiledMachine.compile(mach);
+        selector.startSegment(mach);
+        String msg = message(10000);
+        for (int i = 0; i < 40; i += 1) {
+            assertEquals(check.convert(msg), selector.convert(mach, msg));
+        }
+        selector.finish();
+        String text = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(text, text.contains("segment 1 (B Beta I II III): "
+                                       + "compiled at character 0"));
+    }
+}
@@ -0,0 +1,85 @@
+package enigma;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** An InputStream that converts the bytes it reads from another stream
+ *  through an Enigma machine, in place in the caller's buffer.  Each
+ *  byte stands for the character with the same code (ISO-8859-1).  Uses
+ *  constant memory however much is read.
+ *  @author Sharona Yang
+ */
+class EnigmaInputStream extends FilterInputStream {
+
+    /** A stream converting the bytes of IN through MACH, which must be set
+     *  up (and is advanced as bytes are read), treating bytes outside its
+     *  alphabet according to POLICY. */
+    EnigmaInputStream(InputStream in, Machine mach,
+                      UnknownCharPolicy policy) {
+        super(in);
+        _converter = new CharConverter(mach, policy);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(_one, 0, 1) < 0 ? -1 : _one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                return -1;
+            }
+            n = _converter.convert(b, off, n);
+            if (n > 0) {
+                return n;
+            }
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        byte[] buf = new byte[(int) Math.min(n, SKIP_BUFFER)];
+        long skipped = 0;
+        while (skipped < n) {
+            int k = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+            if (k < 0) {
+                break;
+            }
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("reset not supported");
+    }
+
+    /** Size of the buffer used to skip bytes. */
+    private static final int SKIP_BUFFER = 8192;
+
+    /** Buffer for single bytes. */
+    private final byte[] _one = new byte[1];
+
+    /** Conversion of what is read. */
+    private final CharConverter _converter;
+}
@@ -0,0 +1,50 @@
+package enigma;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** An OutputStream that converts the bytes written to it through an
+ *  Enigma machine before passing them to another stream.  Each byte
+ *  stands for the character with the same code (ISO-8859-1).  The
+ *  caller's buffers are not modified; conversion is done a block at a
+ *  time in a buffer of constant size.
+ *  @author Sharona Yang
+ */
+class EnigmaOutputStream extends FilterOutputStream {
+
+    /** A stream converting bytes through MACH, which must be set up (and
+     *  is advanced as bytes are written), before writing them to OUT,
+     *  treating bytes outside its alphabet according to POLICY. */
+    EnigmaOutputStream(OutputStream out, Machine mach,
+                       UnknownCharPolicy policy) {
+        super(out);
+        _converter = new CharConverter(mach, policy);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        _buffer[0] = (byte) b;
+        out.write(_buffer, 0, _converter.convert(_buffer, 0, 1));
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, _buffer.length);
+            System.arraycopy(b, off, _buffer, 0, n);
+            out.write(_buffer, 0, _converter.convert(_buffer, 0, n));
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Size of _buffer. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Bytes being converted. */
+    private final byte[] _buffer = new byte[BUFFER_SIZE];
+
+    /** Conversion of what is written. */
+    private final CharConverter _converter;
+}
@@ -0,0 +1,412 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static enigma.EnigmaException.*;
+
+/** A Flow.Processor that runs an Enigma machine over a stream of chunks.
+ *  A chunk either carries characters, which are converted in place and
+ *  passed on (characters outside the alphabet, such as spaces and line
+ *  breaks, are passed on unchanged and do not advance the rotors), or is
+ *  a control chunk carrying a settings line, which is applied to the
+ *  machine and not passed on.  Each data chunk requested downstream is
+ *  requested upstream, so demand is honored end to end.
+ *
+ *  Chunks come from a Pool.  Publishers acquire them from pool(), fill
+ *  them and publish them; subscribers release them back once done.  The
+ *  processor releases control chunks itself.  A steady stream therefore
+ *  reuses the same few buffers and, after the first settings line,
+ *  allocates nothing.  Only one subscriber is supported.
+ *  @author Sharona Yang
+ */
+class EnigmaProcessor implements Flow.Processor<EnigmaProcessor.Chunk,
+                                                EnigmaProcessor.Chunk> {
+
+    /** A processor for the configuration in the file CONFIG, whose chunks
+     *  hold up to CHUNKSIZE characters. */
+    EnigmaProcessor(String config, int chunkSize) {
+        Main parsed = new Main(List.of(config));
+        Machine mach = parsed.readConfig();
+        parsed.close();
+        _parsed = parsed;
+        _mach = mach;
+        _pool = new Pool(chunkSize);
+    }
+
+    /** Return the pool from which my chunks come. */
+    Pool pool() {
+        return _pool;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Chunk> subscriber) {
+        synchronized (this) {
+            if (_downstream == null) {
+                _downstream = subscriber;
+            } else {
+                subscriber.onSubscribe(CANCELLED);
+                subscriber.onError(
+                    new IllegalStateException("already subscribed"));
+                return;
+            }
+        }
+        subscriber.onSubscribe(new Downstream());
+        synchronized (this) {
+            _subscribed = true;
+            if (!_finished) {
+                return;
+            }
+        }
+        finish();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        long demand;
+        synchronized (this) {
+            if (_upstream != null || _cancelled) {
+                subscription.cancel();
+                return;
+            }
+            _upstream = subscription;
+            demand = _demand;
+            _demand = 0;
+            if (demand > 0) {
+                subscription.request(demand);
+            }
+        }
+    }
+
+    @Override
+    public void onNext(Chunk chunk) {
+        if (_cancelled) {
+            chunk.release();
+            return;
+        }
+        try {
+            if (chunk.settings() != null) {
+                _parsed.setUp(_mach, chunk.settings());
+                _keyed = true;
+                chunk.release();
+                request(1);
+                return;
+            }
+            if (!_keyed) {
+                throw error("no settings line before first message");
+            }
+            convert(chunk);
+        } catch (RuntimeException excp) {
+            chunk.release();
+            cancel();
+            end(excp);
+            return;
+        }
+        _downstream.onNext(chunk);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        end(error);
+    }
+
+    @Override
+    public void onComplete() {
+        end(null);
+    }
+
+    /** End the stream with ERROR, or normally if ERROR is null, passing
+     *  this on as soon as there is a subscriber. */
+    private void end(Throwable error) {
+        synchronized (this) {
+            if (_finished) {
+                return;
+            }
+            _finished = true;
+            _error = error;
+            if (!_subscribed) {
+                return;
+            }
+        }
+        finish();
+    }
+
+    /** Convert the characters of CHUNK in place. */
+    private void convert(Chunk chunk) {
+        char[] chars = chunk._chars;
+        Alphabet alpha = _mach.alphabet();
+        for (int i = 0; i < chunk._length; i += 1) {
+            int k = alpha.indexOf(chars[i]);
+            if (k >= 0) {
+                chars[i] = alpha.toChar(_mach.convert(k));
+            }
+        }
+    }
+
+    /** Request N more chunks from upstream, or remember the demand until
+     *  there is an upstream. */
+    private synchronized void request(long n) {
+        if (_cancelled) {
+            return;
+        }
+        if (_upstream == null) {
+            _demand = Math.min(Long.MAX_VALUE - n, _demand) + n;
+        } else {
+            _upstream.request(n);
+        }
+    }
+
+    /** Stop receiving from upstream. */
+    private synchronized void cancel() {
+        _cancelled = true;
+        if (_upstream != null) {
+            _upstream.cancel();
+        }
+    }
+
+    /** Pass the end of the stream downstream, once. */
+    private void finish() {
+        Throwable error;
+        synchronized (this) {
+            if (_delivered) {
+                return;
+            }
+            _delivered = true;
+            error = _error;
+        }
+        if (error == null) {
+            _downstream.onComplete();
+        } else {
+            _downstream.onError(error);
+        }
+    }
+
+    /** My subscriber's subscription. */
+    private class Downstream implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                end(new IllegalArgumentException(
+                            "non-positive request: " + n));
+            } else {
+                EnigmaProcessor.this.request(n);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            EnigmaProcessor.this.cancel();
+        }
+    }
+
+    /** A buffer of characters, or a settings line. */
+    static final class Chunk {
+
+        /** A chunk holding up to CAPACITY characters, from POOL. */
+        private Chunk(int capacity, Pool pool) {
+            _chars = new char[capacity];
+            _pool = pool;
+        }
+
+        /** Return my characters; the first length() are valid. */
+        char[] chars() {
+            return _chars;
+        }
+
+        /** Return the number of characters I hold. */
+        int length() {
+            return _length;
+        }
+
+        /** Return the number of characters I can hold. */
+        int capacity() {
+            return _chars.length;
+        }
+
+        /** Return my settings line, or null if I carry characters. */
+        String settings() {
+            return _settings;
+        }
+
+        /** Make me a control chunk carrying the settings line SETTINGS,
+         *  returning me. */
+        Chunk settings(String settings) {
+            clear();
+            _settings = settings;
+            return this;
+        }
+
+        /** Append the characters of TEXT, returning me. */
+        Chunk put(CharSequence text) {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i += 1) {
+                _chars[_length++] = text.charAt(i);
+            }
+            return this;
+        }
+
+        /** Append CHARS[OFFSET .. OFFSET+N-1], returning me. */
+        Chunk put(char[] chars, int offset, int n) {
+            ensure(n);
+            System.arraycopy(chars, offset, _chars, _length, n);
+            _length += n;
+            return this;
+        }
+
+        /** Append BYTES[OFFSET .. OFFSET+N-1], one character per byte
+         *  (ISO-8859-1), returning me. */
+        Chunk put(byte[] bytes, int offset, int n) {
+            ensure(n);
+            for (int i = 0; i < n; i += 1) {
+                _chars[_length++] = (char) (bytes[offset + i] & 0xff);
+            }
+            return this;
+        }
+
+        /** Store my characters in BYTES starting at OFFSET, one byte per
+         *  character (ISO-8859-1), returning the number stored. */
+        int get(byte[] bytes, int offset) {
+            for (int i = 0; i < _length; i += 1) {
+                bytes[offset + i] = (byte) _chars[i];
+            }
+            return _length;
+        }
+
+        /** Empty me. */
+        void clear() {
+            _length = 0;
+            _settings = null;
+        }
+
+        /** Return me to my pool. */
+        void release() {
+            _pool.release(this);
+        }
+
+        @Override
+        public String toString() {
+            return _settings != null ? _settings
+                : new String(_chars, 0, _length);
+        }
+
+        /** Check that N more characters fit and that I am not a control
+         *  chunk. */
+        private void ensure(int n) {
+            if (_settings != null) {
+                throw error("control chunk cannot hold characters");
+            }
+            if (_length + n > _chars.length) {
+                throw error("chunk overflow: %d characters", _length + n);
+            }
+        }
+
+        /** Character buffer. */
+        private final char[] _chars;
+
+        /** Pool I belong to. */
+        private final Pool _pool;
+
+        /** Number of valid characters. */
+        private int _length;
+
+        /** Settings line, or null. */
+        private String _settings;
+    }
+
+    /** A pool of chunks of one capacity.  Safe for use by several
+     *  threads. */
+    static final class Pool {
+
+        /** A pool of chunks holding up to CAPACITY characters. */
+        Pool(int capacity) {
+            _capacity = capacity;
+        }
+
+        /** Return an empty chunk, reusing a released one if possible. */
+        synchronized Chunk acquire() {
+            if (_size == 0) {
+                _allocated += 1;
+                return new Chunk(_capacity, this);
+            }
+            Chunk result = _free[--_size];
+            _free[_size] = null;
+            return result;
+        }
+
+        /** Return CHUNK, which is no longer in use, to me. */
+        synchronized void release(Chunk chunk) {
+            chunk.clear();
+            if (_size == _free.length) {
+                _free = Arrays.copyOf(_free, 2 * _free.length);
+            }
+            _free[_size++] = chunk;
+        }
+
+        /** Return the number of chunks I have created. */
+        synchronized int allocated() {
+            return _allocated;
+        }
+
+        /** Capacity of my chunks. */
+        private final int _capacity;
+
+        /** Released chunks. */
+        private Chunk[] _free = new Chunk[16];
+
+        /** Number of chunks in _free. */
+        private int _size;
+
+        /** Number of chunks created. */
+        private int _allocated;
+    }
+
+    /** A subscription that does nothing. */
+    private static final Flow.Subscription CANCELLED =
+        new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+
+    /** Holder of the configuration, which applies settings lines. */
+    private final Main _parsed;
+
+    /** Machine doing the conversions. */
+    private final Machine _mach;
+
+    /** Source of chunks. */
+    private final Pool _pool;
+
+    /** True once a settings line has been applied. */
+    private boolean _keyed;
+
+    /** Upstream subscription, or null if not yet subscribed. */
+    private Flow.Subscription _upstream;
+
+    /** Downstream subscriber, or null. */
+    private Flow.Subscriber<? super Chunk> _downstream;
+
+    /** True once _downstream has been given its subscription. */
+    private boolean _subscribed;
+
+    /** Demand from downstream not yet passed upstream. */
+    private long _demand;
+
+    /** True once cancelled or failed. */
+    private volatile boolean _cancelled;
+
+    /** True once the stream has ended upstream (or failed). */
+    private boolean _finished;
+
+    /** True once the end has been passed downstream. */
+    private boolean _delivered;
+
+    /** Error ending the stream, or null if it completed. */
+    private Throwable _error;
+}
@@ -0,0 +1,165 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the EnigmaProcessor class.
+ *  @author Sharona Yang
+ */
+public class EnigmaProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval configuration used by the acceptance tests. */
+    private static final String CONFIG = "../testing/correct/default.conf";
+
+    /** A subscriber that requests one chunk at a time, checking that it
+     *  never receives more than it asked for. */
+    private static class Collector implements Flow.Subscriber<
+        EnigmaProcessor.Chunk> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            _requested = 1;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(EnigmaProcessor.Chunk chunk) {
+            if (_requested == 0) {
+                _overrun = true;
+            }
+            _requested -= 1;
+            _text.append(chunk);
+            chunk.release();
+            _requested += 1;
+            _subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            _error = error;
+            _done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            _done.countDown();
+        }
+
+        /** Subscription from the processor. */
+        private Flow.Subscription _subscription;
+
+        /** Outstanding demand. */
+        private long _requested;
+
+        /** True if more was received than requested. */
+        private boolean _overrun;
+
+        /** Text received. */
+        private final StringBuilder _text = new StringBuilder();
+
+        /** Error received, if any. */
+        private Throwable _error;
+
+        /** Released at the end of the stream. */
+        private final CountDownLatch _done = new CountDownLatch(1);
+    }
+
+    /** Return the conversion of the letters of TEXT, after setting up
+     *  with each of SETTINGS in turn before the corresponding element of
+     *  TEXT, leaving other characters alone. */
+    private String expected(List<String> settings, List<String> text) {
+        Main parsed = new Main(List.of(CONFIG));
+        Machine mach = parsed.readConfig();
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < text.size(); i += 1) {
+            if (settings.get(i) != null) {
+                parsed.setUp(mach, settings.get(i));
+            }
+            for (char c : text.get(i).toCharArray()) {
+                if (mach.alphabet().contains(c)) {
+                    int k = mach.convert(mach.alphabet().toInt(c));
+                    result.append(mach.alphabet().toChar(k));
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testStream() throws InterruptedException {
+        EnigmaProcessor proc = new EnigmaProcessor(CONFIG, 64);
+        SubmissionPublisher<EnigmaProcessor.Chunk> source =
+            new SubmissionPublisher<>(ForkJoinPool.commonPool(), 4);
+        source.subscribe(proc);
+        Collector sink = new Collector();
+        proc.subscribe(sink);
+
+        ArrayList<String> settings = new ArrayList<>(),
+            text = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 1) {
+            settings.add(i % 100 == 0
+                         ? "* B Beta III IV I A" + (char) ('A' + i / 100)
+                         + "LE (HQ) (EX)" : null);
+            text.add("HELLO WORLD " + i + "\n");
+        }
+        for (int i = 0; i < text.size(); i += 1) {
+            if (settings.get(i) != null) {
+                source.submit(proc.pool().acquire()
+                              .settings(settings.get(i)));
+            }
+            source.submit(proc.pool().acquire().put(text.get(i)));
+        }
+        source.close();
+        assertTrue(sink._done.await(60, TimeUnit.SECONDS));
+        assertNull(sink._error);
+        assertFalse(sink._overrun);
+        assertEquals(expected(settings, text), sink._text.toString());
+        assertTrue(proc.pool().allocated() <= 16);
+    }
+
+    @Test
+    public void testBytes() {
+        EnigmaProcessor.Chunk chunk =
+            new EnigmaProcessor.Pool(8).acquire();
+        chunk.put(new byte[] { 'A', 'B', (byte) 0xe9 }, 0, 3);
+        assertEquals("AB\u00e9", chunk.toString());
+        byte[] out = new byte[3];
+        assertEquals(3, chunk.get(out, 0));
+        assertEquals((byte) 0xe9, out[2]);
+    }
+
+    @Test
+    public void testNoSettings() throws InterruptedException {
+        EnigmaProcessor proc = new EnigmaProcessor(CONFIG, 64);
+        SubmissionPublisher<EnigmaProcessor.Chunk> source =
+            new SubmissionPublisher<>();
+        source.subscribe(proc);
+        Collector sink = new Collector();
+        proc.subscribe(sink);
+        source.submit(proc.pool().acquire().put("HELLO"));
+        assertTrue(sink._done.await(60, TimeUnit.SECONDS));
+        assertTrue(sink._error instanceof EnigmaException);
+        source.close();
+    }
+}
@@ -0,0 +1,86 @@
+package enigma;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/** A Reader that converts the characters it reads from another Reader
+ *  through an Enigma machine, in place in the caller's buffer.  Uses
+ *  constant memory however much is read.
+ *  @author Sharona Yang
+ */
+class EnigmaReader extends FilterReader {
+
+    /** A reader converting the characters of IN through MACH, which must
+     *  be set up (and is advanced as characters are read), treating
+     *  characters outside its alphabet according to POLICY. */
+    EnigmaReader(Reader in, Machine mach, UnknownCharPolicy policy) {
+        super(in);
+        _converter = new CharConverter(mach, policy);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(_one, 0, 1) < 0 ? -1 : _one[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            int n = in.read(cbuf, off, len);
+            if (n < 0) {
+                return -1;
+            }
+            n = _converter.convert(cbuf, off, n);
+            if (n > 0) {
+                return n;
+            }
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n < 0) {
+            throw new IllegalArgumentException("skip value is negative");
+        } else if (n == 0) {
+            return 0;
+        }
+        char[] buf = new char[(int) Math.min(n, SKIP_BUFFER)];
+        long skipped = 0;
+        while (skipped < n) {
+            int k = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+            if (k < 0) {
+                break;
+            }
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset not supported");
+    }
+
+    /** Size of the buffer used to skip characters. */
+    private static final int SKIP_BUFFER = 8192;
+
+    /** Buffer for single characters. */
+    private final char[] _one = new char[1];
+
+    /** Conversion of what is read. */
+    private final CharConverter _converter;
+}
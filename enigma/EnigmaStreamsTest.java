@@ -0,0 +1,201 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EnigmaReader, EnigmaWriter,
+ *  EnigmaInputStream and EnigmaOutputStream classes.
+ *  @author Sharona Yang
+ */
+public class EnigmaStreamsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A message, with spaces, line breaks and punctuation. */
+    private static final String TEXT =
+        "FROM HIS SHOULDER HIAWATHA\nTOOK THE CAMERA OF ROSEWOOD,\n";
+
+    /** Its conversion by naval(), with other characters unchanged. */
+    private static final String CONVERTED =
+        "QVPQ SOK OILPUBKJ ZPISFXDW\nBHCN SCX NUOAAT ZX SRCFYDGU,\n";
+
+    /** A keyed machine with the naval rotors B Beta III IV I at AXLE. */
+    private Machine naval() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"),
+                                                          UPPER)));
+        rotors.add(new MovingRotor("III", new Permutation(NAVALA.get("III"),
+                                                          UPPER), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(NAVALA.get("IV"),
+                                                         UPPER), "J"));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                        UPPER), "Q"));
+        Machine mach = new Machine(UPPER, 5, 3, rotors);
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        return mach;
+    }
+
+    /** Return all of IN, read a few characters at a time. */
+    private String readAll(Reader in) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buf = new char[7];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) >= 0) {
+            result.append(buf, 0, n);
+        }
+        return result.toString();
+    }
+
+    /** Return all of IN, read a few bytes at a time. */
+    private String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buf = new byte[7];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) >= 0) {
+            result.write(buf, 0, n);
+        }
+        return result.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return TEXT without the characters that are not upper-case
+     *  letters. */
+    private String lettersOnly(String text) {
+        return text.replaceAll("[^A-Z]", "");
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testReader() throws IOException {
+        assertEquals(CONVERTED,
+                     readAll(new EnigmaReader(new StringReader(TEXT),
+                                              naval(),
+                                              UnknownCharPolicy.PASS)));
+        assertEquals(lettersOnly(CONVERTED),
+                     readAll(new EnigmaReader(new StringReader(TEXT),
+                                              naval(),
+                                              UnknownCharPolicy.DROP)));
+        Reader in = new EnigmaReader(new StringReader(TEXT), naval(),
+                                     UnknownCharPolicy.PASS);
+        assertEquals('Q', in.read());
+        assertEquals(3, in.skip(3));
+        assertEquals(' ', in.read());
+        assertEquals('S', in.read());
+    }
+
+    @Test
+    public void testSkipNothing() throws IOException {
+        Reader reader = new EnigmaReader(new StringReader(TEXT), naval(),
+                                         UnknownCharPolicy.PASS);
+        assertEquals(0, reader.skip(0));
+        try {
+            reader.skip(-1);
+            fail("negative skip accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+        assertEquals('Q', reader.read());
+        InputStream in = new EnigmaInputStream(
+            new ByteArrayInputStream(TEXT.getBytes(StandardCharsets
+                                                   .ISO_8859_1)),
+            naval(), UnknownCharPolicy.PASS);
+        assertEquals(0, in.skip(0));
+        assertEquals(0, in.skip(-5));
+        assertEquals('Q', in.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReaderFail() throws IOException {
+        readAll(new EnigmaReader(new StringReader(TEXT), naval(),
+                                 UnknownCharPolicy.FAIL));
+    }
+
+    @Test
+    public void testWriter() throws IOException {
+        StringWriter result = new StringWriter();
+        Writer out = new EnigmaWriter(result, naval(),
+                                      UnknownCharPolicy.PASS);
+        char[] text = TEXT.toCharArray();
+        out.write(text, 0, 10);
+        out.write(TEXT, 10, 20);
+        out.write(text[30]);
+        out.write(text, 31, text.length - 31);
+        out.close();
+        assertEquals(CONVERTED, result.toString());
+        assertEquals(TEXT, new String(text));
+
+        result = new StringWriter();
+        out = new EnigmaWriter(result, naval(), UnknownCharPolicy.DROP);
+        out.write(TEXT);
+        out.close();
+        assertEquals(lettersOnly(CONVERTED), result.toString());
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        byte[] bytes = TEXT.getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals(CONVERTED,
+                     readAll(new EnigmaInputStream(
+                                 new ByteArrayInputStream(bytes), naval(),
+                                 UnknownCharPolicy.PASS)));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        OutputStream out = new EnigmaOutputStream(result, naval(),
+                                                  UnknownCharPolicy.DROP);
+        out.write(bytes[0]);
+        out.write(bytes, 1, bytes.length - 1);
+        out.close();
+        assertEquals(lettersOnly(CONVERTED),
+                     result.toString(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i += 1) {
+            text.append(i % 9 == 0 ? ' ' : (char) ('A' + (i * 11) % 26));
+        }
+        StringWriter encrypted = new StringWriter();
+        Writer out = new EnigmaWriter(encrypted, naval(),
+                                      UnknownCharPolicy.PASS);
+        out.write(text.toString());
+        out.close();
+        assertEquals(text.toString(),
+                     readAll(new EnigmaReader(
+                                 new StringReader(encrypted.toString()),
+                                 naval(), UnknownCharPolicy.PASS)));
+    }
+
+    @Test
+    public void testAlphabetIndex() {
+        Alphabet alpha = new Alphabet("AB\u4e2dC");
+        assertEquals(2, alpha.indexOf('\u4e2d'));
+        assertEquals(-1, alpha.indexOf('Z'));
+        assertEquals(-1, alpha.indexOf('\uffff'));
+        assertEquals(0, alpha.toInt('Z'));
+        assertEquals(3, alpha.toInt('C'));
+    }
+}
@@ -0,0 +1,65 @@
+package enigma;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/** A Writer that converts the characters written to it through an Enigma
+ *  machine before passing them to another Writer.  The caller's buffers
+ *  are not modified; conversion is done a block at a time in a buffer of
+ *  constant size.
+ *  @author Sharona Yang
+ */
+class EnigmaWriter extends FilterWriter {
+
+    /** A writer converting characters through MACH, which must be set up
+     *  (and is advanced as characters are written), before writing them
+     *  to OUT, treating characters outside its alphabet according to
+     *  POLICY. */
+    EnigmaWriter(Writer out, Machine mach, UnknownCharPolicy policy) {
+        super(out);
+        _converter = new CharConverter(mach, policy);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        _buffer[0] = (char) c;
+        flushBuffer(1);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, _buffer.length);
+            System.arraycopy(cbuf, off, _buffer, 0, n);
+            flushBuffer(n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, _buffer.length);
+            str.getChars(off, off + n, _buffer, 0);
+            flushBuffer(n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Convert the first N characters of _buffer and write them out. */
+    private void flushBuffer(int n) throws IOException {
+        out.write(_buffer, 0, _converter.convert(_buffer, 0, n));
+    }
+
+    /** Size of _buffer. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Characters being converted. */
+    private final char[] _buffer = new char[BUFFER_SIZE];
+
+    /** Conversion of what is written. */
+    private final CharConverter _converter;
+}
@@ -0,0 +1,954 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A differential fuzzer for the engines that convert messages faster
+ *  than Machine: each random case (alphabet, configuration, settings and
+ *  message) is converted by a Machine, the reference, and by every other
+ *  engine, which must agree with it exactly.  Cases are drawn to include
+ *  tiny and large alphabets, zero to many pawls, notches at no, some,
+ *  adjacent or all positions, and start positions at or just before a
+ *  notch, so that rotors double-step often.  Besides the optimized
+ *  engines, an independent textbook model of the machine is checked too,
+ *  which guards the reference's own fast paths.
+ *
+ *  A failing case is minimized, by cutting the message after the first
+ *  difference, removing plugboard pairs and replacing message letters by
+ *  the first of the alphabet while it still fails, and is reported as a
+ *  configuration file and input that reproduce it with Main.
+ *  @author Sharona Yang
+ */
+public final class Fuzz {
+
+    /** Fuzz as specified by ARGS.  Options: --seconds (default 10),
+     *  --cases (default: unlimited), --seed (default: the time),
+     *  --length, the largest message length (default 50000), and
+     *  --threads.  Exits normally if no engine disagrees with the
+     *  reference; otherwise with code 1. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--seconds=(\\d+){0,1} --cases=(\\d+){0,1} "
+                                + "--seed=(-?\\d+){0,1} --length=(\\d+){0,1} "
+                                + "--threads=(\\d+){0,1}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Fuzz [--seconds=N] "
+                            + "[--cases=N] [--seed=N] [--length=N] "
+                            + "[--threads=N]");
+            }
+            long seconds = Main.longOption(options, "--seconds", 10);
+            long cases = Main.longOption(options, "--cases", Long.MAX_VALUE);
+            long seed = Main.longOption(options, "--seed", System.nanoTime());
+            int length = Main.intOption(options, "--length", DEFAULT_LENGTH);
+            int threads =
+                Main.intOption(options, "--threads",
+                               Runtime.getRuntime().availableProcessors());
+            Fuzz fuzz = new Fuzz(engines(), length);
+            long start = System.nanoTime();
+            List<Failure> failures =
+                fuzz.run(seed, cases, seconds * 1_000_000_000L, threads);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("seed %d: %d cases, %d characters compared "
+                              + "(%.1f M/s)%n", seed, fuzz.cases(),
+                              fuzz.compared(),
+                              fuzz.compared() / elapsed / 1e6);
+            for (Failure failure : failures) {
+                System.out.println(failure);
+            }
+            if (failures.isEmpty()) {
+                return;
+            }
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A fuzzer checking ENGINES against the reference, with messages of
+     *  up to MAXLENGTH characters. */
+    Fuzz(List<Engine> engines, int maxLength) {
+        _engines = engines;
+        _maxLength = Math.max(1, maxLength);
+    }
+
+    /** Check random cases drawn using SEED on THREADS threads until
+     *  MAXCASES have been checked or NANOS nanoseconds have passed,
+     *  returning the minimized failures found. */
+    List<Failure> run(long seed, long maxCases, long nanos, int threads) {
+        long deadline = System.nanoTime() + nanos;
+        SplittableRandom root = new SplittableRandom(seed);
+        AtomicLong remaining = new AtomicLong(maxCases);
+        List<Failure> failures =
+            Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.max(1, threads));
+        ArrayList<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < Math.max(1, threads); t += 1) {
+            SplittableRandom random = root.split();
+            workers.add(pool.submit(() -> {
+                while (System.nanoTime() < deadline
+                       && remaining.getAndDecrement() > 0
+                       && failures.size() < MAX_FAILURES) {
+                    Case c = randomCase(random, _maxLength);
+                    for (int k = 0; k < CASES_PER_CONFIG
+                             && System.nanoTime() < deadline
+                             && (k == 0 || remaining.getAndDecrement() > 0);
+                         k += 1) {
+                        if (k > 0) {
+                            c = c.redraw(random, _maxLength);
+                        }
+                        Failure failure = check(c);
+                        if (failure != null) {
+                            failures.add(minimize(failure));
+                            break;
+                        }
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return failures;
+    }
+
+    /** Return the number of cases checked. */
+    long cases() {
+        return _cases.sum();
+    }
+
+    /** Return the number of characters compared, counting each engine's
+     *  conversion of each message character. */
+    long compared() {
+        return _compared.sum();
+    }
+
+    /** Return the first disagreement of one of my engines with the
+     *  reference on C, or null if there is none. */
+    Failure check(Case c) {
+        Machine reference = c.machine();
+        int n = c._message.length;
+        int[] expected = new int[n], actual = new int[n];
+        reference.copy().convert(c._message, expected, n);
+        _cases.increment();
+        for (Engine engine : _engines) {
+            if (!engine.accepts(c)) {
+                continue;
+            }
+            Arrays.fill(actual, -1);
+            engine.convert(c, reference.copy(), actual);
+            _compared.add(n);
+            for (int i = 0; i < n; i += 1) {
+                if (actual[i] != expected[i]) {
+                    return new Failure(engine, c, i, expected[i], actual[i]);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return true iff ENGINE disagrees with the reference on C. */
+    private boolean fails(Engine engine, Case c) {
+        return check(c, engine) != null;
+    }
+
+    /** Return FAILURE with its case made as small and plain as possible
+     *  while its engine still fails on it. */
+    Failure minimize(Failure failure) {
+        Engine engine = failure._engine;
+        Case c = failure._case.withMessage(
+            Arrays.copyOf(failure._case._message, failure._index + 1));
+        List<String> pairs = new ArrayList<>(c._plugboard);
+        for (int i = pairs.size() - 1; i >= 0; i -= 1) {
+            ArrayList<String> fewer = new ArrayList<>(pairs);
+            fewer.remove(i);
+            if (fails(engine, c.withPlugboard(fewer))) {
+                pairs = fewer;
+            }
+        }
+        c = c.withPlugboard(pairs);
+        int attempts = 0;
+        for (int block = Integer.highestOneBit(c._message.length);
+             block >= 1 && attempts < MAX_ATTEMPTS; block /= 2) {
+            for (int i = 0; i + block <= c._message.length
+                     && attempts < MAX_ATTEMPTS; i += block) {
+                int[] plainer = c._message.clone();
+                boolean changed = false;
+                for (int j = i; j < i + block; j += 1) {
+                    changed |= plainer[j] != 0;
+                    plainer[j] = 0;
+                }
+                if (changed) {
+                    attempts += 1;
+                    Case trial = c.withMessage(plainer);
+                    if (fails(engine, trial)) {
+                        c = trial;
+                    }
+                }
+            }
+        }
+        Failure result = check(c, engine);
+        return result == null ? failure : result;
+    }
+
+    /** Return the first disagreement of ENGINE with the reference on C,
+     *  or null. */
+    private Failure check(Case c, Engine engine) {
+        Machine reference = c.machine();
+        int n = c._message.length;
+        int[] expected = new int[n], actual = new int[n];
+        reference.copy().convert(c._message, expected, n);
+        engine.convert(c, reference.copy(), actual);
+        for (int i = 0; i < n; i += 1) {
+            if (actual[i] != expected[i]) {
+                return new Failure(engine, c, i, expected[i], actual[i]);
+            }
+        }
+        return null;
+    }
+
+    /** Return a random case drawn from RANDOM, with a message of at most
+     *  MAXLENGTH characters. */
+    static Case randomCase(SplittableRandom random, int maxLength) {
+        int size;
+        switch (random.nextInt(4)) {
+        case 0:
+            size = 2 + random.nextInt(7);
+            break;
+        case 1:
+            size = 26;
+            break;
+        default:
+            size = 2 + random.nextInt(CHARS.length() - 1);
+            break;
+        }
+        char[] pool = CHARS.toCharArray();
+        for (int i = 0; i < size; i += 1) {
+            int j = i + random.nextInt(pool.length - i);
+            char t = pool[i];
+            pool[i] = pool[j];
+            pool[j] = t;
+        }
+        String alphabet = new String(pool, 0, size);
+        int numRotors = 2 + random.nextInt(6);
+        int pawls = random.nextInt(8) == 0 ? 0
+            : 1 + random.nextInt(numRotors - 1);
+        ArrayList<RotorSpec> rotors = new ArrayList<>();
+        int fixed = numRotors - 1 - pawls;
+        for (int k = 0; k < 1 + random.nextInt(2); k += 1) {
+            rotors.add(new RotorSpec("R" + k, 'R', "",
+                                     reflection(random, alphabet)));
+        }
+        for (int k = 0; k < fixed + random.nextInt(2); k += 1) {
+            rotors.add(new RotorSpec("N" + k, 'N', "",
+                                     wiring(random, alphabet)));
+        }
+        for (int k = 0; k < pawls + random.nextInt(2); k += 1) {
+            rotors.add(new RotorSpec("M" + k, 'M',
+                                     notches(random, alphabet),
+                                     wiring(random, alphabet)));
+        }
+
+        String[] order = new String[numRotors];
+        order[0] = "R" + random.nextInt(rotors.stream()
+                                        .filter(r -> r._type == 'R')
+                                        .mapToInt(r -> 1).sum());
+        List<RotorSpec> moving = new ArrayList<>(), still = new ArrayList<>();
+        for (RotorSpec r : rotors) {
+            if (r._type == 'M') {
+                moving.add(r);
+            } else if (r._type == 'N') {
+                still.add(r);
+            }
+        }
+        shuffle(random, moving);
+        shuffle(random, still);
+        for (int k = 1; k < numRotors; k += 1) {
+            order[k] = (k <= fixed ? still.get(k - 1)
+                        : moving.get(k - fixed - 1))._name;
+        }
+        return new Case(alphabet, numRotors, pawls, rotors, order, "",
+                        List.of(), new int[0]).redraw(random, maxLength);
+    }
+
+    /** Return random notches over ALPHABET using RANDOM: none, one, all,
+     *  adjacent pairs or a random subset. */
+    private static String notches(SplittableRandom random, String alphabet) {
+        int size = alphabet.length();
+        StringBuilder result = new StringBuilder();
+        switch (random.nextInt(5)) {
+        case 0:
+            break;
+        case 1:
+            result.append(alphabet.charAt(random.nextInt(size)));
+            break;
+        case 2:
+            result.append(alphabet);
+            break;
+        case 3:
+            for (int i = random.nextInt(size); i < size; i += 3) {
+                result.append(alphabet.charAt(i));
+                if (i + 1 < size) {
+                    result.append(alphabet.charAt(i + 1));
+                }
+            }
+            break;
+        default:
+            for (int i = 0; i < size; i += 1) {
+                if (random.nextInt(4) == 0) {
+                    result.append(alphabet.charAt(i));
+                }
+            }
+            break;
+        }
+        return result.toString();
+    }
+
+    /** Return a random permutation of ALPHABET in cycle notation, drawn
+     *  using RANDOM. */
+    private static String wiring(SplittableRandom random, String alphabet) {
+        char[] chars = alphabet.toCharArray();
+        for (int i = chars.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            char t = chars[i];
+            chars[i] = chars[j];
+            chars[j] = t;
+        }
+        StringBuilder result = new StringBuilder();
+        int start = 0;
+        while (start < chars.length) {
+            int end = start + 1 + random.nextInt(chars.length - start);
+            result.append('(').append(chars, start, end - start)
+                .append(") ");
+            start = end;
+        }
+        return result.toString().trim();
+    }
+
+    /** Return a random reflection (pairs, plus one fixed character if
+     *  ALPHABET has odd length) in cycle notation, drawn using RANDOM. */
+    private static String reflection(SplittableRandom random,
+                                     String alphabet) {
+        char[] chars = alphabet.toCharArray();
+        for (int i = chars.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            char t = chars[i];
+            chars[i] = chars[j];
+            chars[j] = t;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < chars.length; i += 2) {
+            result.append('(').append(chars, i,
+                                      Math.min(2, chars.length - i))
+                .append(") ");
+        }
+        return result.toString().trim();
+    }
+
+    /** Shuffle LIST using RANDOM. */
+    private static <T> void shuffle(SplittableRandom random, List<T> list) {
+        for (int i = list.size() - 1; i > 0; i -= 1) {
+            Collections.swap(list, i, random.nextInt(i + 1));
+        }
+    }
+
+    /** Return all engines available here, other than the reference. */
+    static List<Engine> engines() {
+        ArrayList<Engine> result = new ArrayList<>();
+        result.add(new Engine("model") {
+            @Override
+            void convert(Case c, Machine mach, int[] result) {
+                new Model(c).convert(c._message, result);
+            }
+        });
+        result.add(new Engine("compiled") {
+            @Override
+            boolean accepts(Case c) {
+                return CompiledMachine.available() && c._pawls > 0;
+            }
+
+            @Override
+            void convert(Case c, Machine mach, int[] result) {
+                CompiledMachine compiled = CompiledMachine.compile(mach);
+                if (!compiled.specialized()) {
+                    throw new IllegalStateException("not specialized");
+                }
+                compiled.convert(c._message, result, c._message.length);
+            }
+        });
+        result.add(new Engine("vector") {
+            @Override
+            boolean accepts(Case c) {
+                return c._message.length <= VECTOR_LENGTH;
+            }
+
+            @Override
+            void convert(Case c, Machine mach, int[] result) {
+                int[][] lanes = { result };
+                new VectorMachine(new Machine[] { mach })
+                    .convert(c._message, lanes, c._message.length);
+            }
+        });
+        result.add(new Engine("keystream") {
+            @Override
+            boolean accepts(Case c) {
+                return small(c);
+            }
+
+            @Override
+            void convert(Case c, Machine mach, int[] result) {
+                new Keystream(mach, c._message.length)
+                    .convert(0, c._message, result, c._message.length);
+            }
+        });
+        result.add(new Engine("rotor-core") {
+            @Override
+            boolean accepts(Case c) {
+                return small(c);
+            }
+
+            @Override
+            void convert(Case c, Machine mach, int[] result) {
+                Plugboard plug = new Plugboard(mach.plugboard());
+                new RotorCore(mach, c._message.length)
+                    .convert(c._message, result, c._message.length, plug);
+            }
+        });
+        result.add(new Engine("tables") {
+            @Override
+            boolean accepts(Case c) {
+                return fewPositions(c);
+            }
+
+            @Override
+            void convert(Case c, Machine mach, int[] result) {
+                int size = mach.alphabet().size();
+                int positions = (int) Cracker.numPositions(mach);
+                char[] table = new char[positions * size];
+                EngineSelector.fill(mach.copy(), table, positions);
+                int[] plug = new Plugboard(mach.plugboard()).table();
+                EngineSelector.convertTables(mach, table, Integer.MAX_VALUE,
+                                             plug, c._message, result,
+                                             c._message.length);
+            }
+        });
+        result.add(new Engine("composite-store") {
+            @Override
+            boolean accepts(Case c) {
+                return fewPositions(c);
+            }
+
+            @Override
+            void convert(Case c, Machine mach, int[] result) {
+                Path dir = null;
+                try {
+                    dir = Files.createTempDirectory("enigma-fuzz");
+                    CompositeStore store =
+                        CompositeStore.open(mach, c._order, dir.toString(),
+                                            1);
+                    store.convert(mach, c._message, result,
+                                  c._message.length,
+                                  new Plugboard(mach.plugboard()));
+                    store.close();
+                } catch (IOException excp) {
+                    throw new IllegalStateException(excp);
+                } finally {
+                    delete(dir);
+                }
+            }
+        });
+        result.add(new Engine("char-converter") {
+            @Override
+            void convert(Case c, Machine mach, int[] result) {
+                Alphabet alpha = mach.alphabet();
+                char[] chars = new char[c._message.length];
+                for (int i = 0; i < chars.length; i += 1) {
+                    chars[i] = alpha.toChar(c._message[i]);
+                }
+                try {
+                    new CharConverter(mach, UnknownCharPolicy.FAIL)
+                        .convert(chars, 0, chars.length);
+                } catch (IOException excp) {
+                    throw new IllegalStateException(excp);
+                }
+                for (int i = 0; i < chars.length; i += 1) {
+                    result[i] = alpha.indexOf(chars[i]);
+                }
+            }
+        });
+        return result;
+    }
+
+    /** Return true iff tables of one entry per character of C's message
+     *  and alphabet are small enough to build for each case. */
+    private static boolean small(Case c) {
+        return (long) c._message.length * c._alphabet.length()
+            <= SMALL_TABLE;
+    }
+
+    /** Return true iff tables of one entry per rotor position and
+     *  character of C's alphabet are small enough to build for each
+     *  case. */
+    private static boolean fewPositions(Case c) {
+        long entries = c._alphabet.length();
+        for (int k = 1; k < c._numRotors; k += 1) {
+            entries *= c._alphabet.length();
+            if (entries > SMALL_TABLE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Delete DIR, if it is not null, and the files in it, ignoring
+     *  failures. */
+    private static void delete(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.toFile().delete();
+    }
+
+    /** A way of converting messages that must agree with Machine. */
+    abstract static class Engine {
+
+        /** An engine called NAME. */
+        Engine(String name) {
+            _name = name;
+        }
+
+        /** Return true iff I can convert C. */
+        boolean accepts(Case c) {
+            return true;
+        }
+
+        /** Store in RESULT the conversion of C's message, where MACH is a
+         *  fresh reference machine set up for C, which I may use. */
+        abstract void convert(Case c, Machine mach, int[] result);
+
+        @Override
+        public String toString() {
+            return _name;
+        }
+
+        /** My name. */
+        private final String _name;
+    }
+
+    /** The description of one rotor of a case. */
+    static final class RotorSpec {
+
+        /** A rotor named NAME of TYPE 'M', 'N' or 'R', as in a
+         *  configuration file, with NOTCHES and wiring CYCLES. */
+        RotorSpec(String name, char type, String notches, String cycles) {
+            _name = name;
+            _type = type;
+            _notches = notches;
+            _cycles = cycles;
+        }
+
+        /** Name. */
+        private final String _name;
+
+        /** Type. */
+        private final char _type;
+
+        /** Notches. */
+        private final String _notches;
+
+        /** Wiring in cycle notation. */
+        private final String _cycles;
+    }
+
+    /** A fuzzing case: a configuration, a settings line and a message. */
+    static final class Case {
+
+        /** A case with characters ALPHABET, NUMROTORS slots, PAWLS pawls,
+         *  available ROTORS, the rotors named ORDER inserted at
+         *  POSITIONS, plugboard pairs PLUGBOARD (each "(ab)"), and
+         *  MESSAGE, as alphabet indices. */
+        Case(String alphabet, int numRotors, int pawls,
+             List<RotorSpec> rotors, String[] order, String positions,
+             List<String> plugboard, int[] message) {
+            _alphabet = alphabet;
+            _numRotors = numRotors;
+            _pawls = pawls;
+            _rotors = rotors;
+            _order = order;
+            _positions = positions;
+            _plugboard = plugboard;
+            _message = message;
+        }
+
+        /** Return a reference machine set up for me. */
+        Machine machine() {
+            Alphabet alpha = new Alphabet(_alphabet);
+            ArrayList<Rotor> all = new ArrayList<>();
+            for (RotorSpec r : _rotors) {
+                Permutation perm = new Permutation(r._cycles, alpha);
+                if (r._type == 'M') {
+                    all.add(new MovingRotor(r._name, perm, r._notches));
+                } else if (r._type == 'N') {
+                    all.add(new FixedRotor(r._name, perm));
+                } else {
+                    all.add(new Reflector(r._name, perm));
+                }
+            }
+            Machine mach = new Machine(alpha, _numRotors, _pawls, all);
+            mach.insertRotors(_order);
+            mach.setRotors(_positions);
+            mach.setPlugboard(new Permutation(String.join(" ", _plugboard),
+                                              alpha));
+            return mach;
+        }
+
+        /** Return me with message MESSAGE. */
+        Case withMessage(int[] message) {
+            return new Case(_alphabet, _numRotors, _pawls, _rotors, _order,
+                            _positions, _plugboard, message);
+        }
+
+        /** Return me with plugboard pairs PLUGBOARD. */
+        Case withPlugboard(List<String> plugboard) {
+            return new Case(_alphabet, _numRotors, _pawls, _rotors, _order,
+                            _positions, plugboard, _message);
+        }
+
+        /** Return a case with my configuration and rotors but random start
+         *  positions (often at or just before a notch), plugboard and
+         *  message of at most MAXLENGTH characters, drawn from RANDOM. */
+        Case redraw(SplittableRandom random, int maxLength) {
+            int size = _alphabet.length();
+            char[] positions = new char[_numRotors - 1];
+            for (int k = 1; k < _numRotors; k += 1) {
+                String notches = "";
+                for (RotorSpec r : _rotors) {
+                    if (r._name.equals(_order[k])) {
+                        notches = r._notches;
+                    }
+                }
+                int posn = random.nextInt(size);
+                if (!notches.isEmpty() && random.nextBoolean()) {
+                    char notch =
+                        notches.charAt(random.nextInt(notches.length()));
+                    posn = (_alphabet.indexOf(notch) + size
+                            - random.nextInt(2)) % size;
+                }
+                positions[k - 1] = _alphabet.charAt(posn);
+            }
+
+            ArrayList<String> plugboard = new ArrayList<>();
+            int numPairs = random.nextInt(size / 2 + 1);
+            char[] letters = _alphabet.toCharArray();
+            for (int i = 0; i < 2 * numPairs; i += 1) {
+                int j = i + random.nextInt(letters.length - i);
+                char t = letters[i];
+                letters[i] = letters[j];
+                letters[j] = t;
+                if (i % 2 == 1) {
+                    plugboard.add("(" + letters[i - 1] + letters[i] + ")");
+                }
+            }
+
+            int length = (int) Math.min(maxLength,
+                                        Math.exp(random.nextDouble()
+                                                 * Math.log(maxLength + 1)));
+            int[] message = new int[Math.max(1, length)];
+            for (int i = 0; i < message.length; i += 1) {
+                message[i] = random.nextInt(size);
+            }
+            return new Case(_alphabet, _numRotors, _pawls, _rotors, _order,
+                            new String(positions), plugboard, message);
+        }
+
+        /** Return my message, as alphabet indices. */
+        int[] message() {
+            return _message;
+        }
+
+        /** Return my plugboard pairs. */
+        List<String> plugboard() {
+            return _plugboard;
+        }
+
+        /** Return my configuration file. */
+        String config() {
+            StringBuilder result = new StringBuilder(_alphabet);
+            result.append(String.format("%n %d %d%n", _numRotors, _pawls));
+            for (RotorSpec r : _rotors) {
+                result.append(String.format(" %s %c%s %s%n", r._name,
+                                            r._type, r._notches,
+                                            r._cycles));
+            }
+            return result.toString();
+        }
+
+        /** Return my input file: the settings line and the message. */
+        String input() {
+            StringBuilder result = new StringBuilder("* ");
+            result.append(String.join(" ", _order)).append(' ')
+                .append(_positions);
+            for (String pair : _plugboard) {
+                result.append(' ').append(pair);
+            }
+            result.append(String.format("%n"));
+            for (int c : _message) {
+                result.append(_alphabet.charAt(c));
+            }
+            return result.append(String.format("%n")).toString();
+        }
+
+        /** Characters. */
+        private final String _alphabet;
+
+        /** Slots. */
+        private final int _numRotors;
+
+        /** Pawls. */
+        private final int _pawls;
+
+        /** Available rotors. */
+        private final List<RotorSpec> _rotors;
+
+        /** Rotors inserted. */
+        private final String[] _order;
+
+        /** Start positions. */
+        private final String _positions;
+
+        /** Plugboard pairs. */
+        private final List<String> _plugboard;
+
+        /** Message, as alphabet indices. */
+        private final int[] _message;
+    }
+
+    /** A disagreement of an engine with the reference. */
+    static final class Failure {
+
+        /** ENGINE converted character INDEX of C's message to ACTUAL where
+         *  the reference gave EXPECTED. */
+        Failure(Engine engine, Case c, int index, int expected, int actual) {
+            _engine = engine;
+            _case = c;
+            _index = index;
+            _expected = expected;
+            _actual = actual;
+        }
+
+        /** Return the case. */
+        Case failingCase() {
+            return _case;
+        }
+
+        /** Return the index of the first wrong character. */
+        int index() {
+            return _index;
+        }
+
+        @Override
+        public String toString() {
+            String alphabet = _case._alphabet;
+            return String.format("engine %s differs at character %d: "
+                                 + "expected '%c', got %s%n"
+                                 + "--- configuration ---%n%s"
+                                 + "--- input ---%n%s",
+                                 _engine, _index, alphabet.charAt(_expected),
+                                 _actual < 0 || _actual >= alphabet.length()
+                                 ? String.valueOf(_actual)
+                                 : "'" + alphabet.charAt(_actual) + "'",
+                                 _case.config(), _case.input());
+        }
+
+        /** Engine that failed. */
+        private final Engine _engine;
+
+        /** Case it failed on. */
+        private final Case _case;
+
+        /** Index of the first wrong character. */
+        private final int _index;
+
+        /** Reference conversion there. */
+        private final int _expected;
+
+        /** The engine's conversion there. */
+        private final int _actual;
+    }
+
+    /** An independent, deliberately plain model of the machine, built
+     *  straight from a case's cycle strings and following the stepping
+     *  rules as stated: the fast rotor always moves; a pawled rotor also
+     *  moves if the rotor to its right is at a notch, or if it is itself
+     *  at a notch and the rotor to its left is pawled. */
+    private static final class Model {
+
+        /** A model of the machine of C in its start state. */
+        Model(Case c) {
+            _size = c._alphabet.length();
+            _n = c._numRotors;
+            _pawls = c._pawls;
+            _forward = new int[_n][];
+            _backward = new int[_n][];
+            _notch = new boolean[_n][_size];
+            _posn = new int[_n];
+            for (int k = 0; k < _n; k += 1) {
+                for (RotorSpec r : c._rotors) {
+                    if (r._name.equals(c._order[k])) {
+                        _forward[k] = table(c._alphabet, r._cycles);
+                        for (char ch : r._notches.toCharArray()) {
+                            _notch[k][c._alphabet.indexOf(ch)] = true;
+                        }
+                    }
+                }
+                _backward[k] = new int[_size];
+                for (int i = 0; i < _size; i += 1) {
+                    _backward[k][_forward[k][i]] = i;
+                }
+                if (k > 0) {
+                    _posn[k] = c._alphabet.indexOf(c._positions.charAt(k - 1));
+                }
+            }
+            _plug = table(c._alphabet, String.join("", c._plugboard));
+        }
+
+        /** Return the table of the permutation of ALPHABET given by
+         *  CYCLES. */
+        private static int[] table(String alphabet, String cycles) {
+            int[] result = new int[alphabet.length()];
+            for (int i = 0; i < result.length; i += 1) {
+                result[i] = i;
+            }
+            for (String cycle : cycles.split("[()\\s]+")) {
+                for (int i = 0; i < cycle.length(); i += 1) {
+                    result[alphabet.indexOf(cycle.charAt(i))] =
+                        alphabet.indexOf(
+                            cycle.charAt((i + 1) % cycle.length()));
+                }
+            }
+            return result;
+        }
+
+        /** Store in RESULT the conversion of MSG. */
+        void convert(int[] msg, int[] result) {
+            boolean[] moves = new boolean[_n];
+            int first = _n - _pawls;
+            for (int i = 0; i < msg.length; i += 1) {
+                for (int k = first; k < _n; k += 1) {
+                    boolean atNotch = _notch[k][_posn[k]];
+                    moves[k] = k == _n - 1
+                        || _notch[k + 1][_posn[k + 1]]
+                        || (atNotch && k > first);
+                }
+                for (int k = first; k < _n; k += 1) {
+                    if (moves[k]) {
+                        _posn[k] = (_posn[k] + 1) % _size;
+                    }
+                }
+                int c = _plug[msg[i]];
+                for (int k = _n - 1; k >= 0; k -= 1) {
+                    c = shift(_forward[k][shift(c, _posn[k])], -_posn[k]);
+                }
+                for (int k = 1; k < _n; k += 1) {
+                    c = shift(_backward[k][shift(c, _posn[k])], -_posn[k]);
+                }
+                result[i] = _plug[c];
+            }
+        }
+
+        /** Return C + D modulo the alphabet size. */
+        private int shift(int c, int d) {
+            return ((c + d) % _size + _size) % _size;
+        }
+
+        /** Alphabet size. */
+        private final int _size;
+
+        /** Slots. */
+        private final int _n;
+
+        /** Pawls. */
+        private final int _pawls;
+
+        /** Wiring of the rotor in each slot, and its inverse. */
+        private final int[][] _forward, _backward;
+
+        /** Notches of the rotor in each slot. */
+        private final boolean[][] _notch;
+
+        /** Position of the rotor in each slot. */
+        private final int[] _posn;
+
+        /** Plugboard. */
+        private final int[] _plug;
+    }
+
+    /** Characters from which alphabets are drawn. */
+    private static final String CHARS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789"
+        + "!\"#$%&+,-./:;<=>?@[\\]^_`{|}~'";
+
+    /** Default largest message length. */
+    static final int DEFAULT_LENGTH = 50000;
+
+    /** Largest table (characters x alphabet) built per case. */
+    private static final long SMALL_TABLE = 1 << 16;
+
+    /** Number of cases drawn for each random configuration and rotor
+     *  order, so that each shape is compiled only once. */
+    private static final int CASES_PER_CONFIG = 64;
+
+    /** Longest message checked with a one-lane VectorMachine, whose
+     *  gathers make it much slower per character than the others. */
+    private static final int VECTOR_LENGTH = 1 << 13;
+
+    /** Number of failures after which fuzzing stops. */
+    private static final int MAX_FAILURES = 10;
+
+    /** Largest number of trial cases while minimizing a message. */
+    private static final int MAX_ATTEMPTS = 2000;
+
+    /** The engines checked. */
+    private final List<Engine> _engines;
+
+    /** Largest message length. */
+    private final int _maxLength;
+
+    /** Number of cases checked. */
+    private final LongAdder _cases = new LongAdder();
+
+    /** Number of characters compared. */
+    private final LongAdder _compared = new LongAdder();
+}
@@ -0,0 +1,78 @@
+package enigma;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Fuzz class.
+ *  @author Sharona Yang
+ */
+public class FuzzTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** An engine that is right except at character 100 of a message. */
+    private static final Fuzz.Engine BROKEN = new Fuzz.Engine("broken") {
+        @Override
+        void convert(Fuzz.Case c, Machine mach, int[] result) {
+            int[] msg = c.message();
+            mach.convert(msg, result, msg.length);
+            if (msg.length > 100) {
+                result[100] = (result[100] + 1) % mach.alphabet().size();
+            }
+        }
+    };
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testEnginesAgree() {
+        Fuzz fuzz = new Fuzz(Fuzz.engines(), 5000);
+        List<Fuzz.Failure> failures =
+            fuzz.run(42, 150, 60_000_000_000L, 2);
+        assertEquals(failures.toString(), 0, failures.size());
+        assertEquals(150, fuzz.cases());
+        assertTrue(fuzz.compared() > 150);
+    }
+
+    @Test
+    public void testRandomCases() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int k = 0; k < 200; k += 1) {
+            Fuzz.Case c = Fuzz.randomCase(random, 1000);
+            assertTrue(c.message().length >= 1);
+            assertTrue(c.message().length <= 1000);
+            Machine mach = c.machine();
+            String[] settings = c.input().split("\\R")[0].split(" ");
+            assertEquals("*", settings[0]);
+            assertEquals(mach.numRotors() - 1,
+                         settings[mach.numRotors() + 1].length());
+        }
+    }
+
+    @Test
+    public void testMinimize() {
+        Fuzz fuzz = new Fuzz(List.of(BROKEN), 3000);
+        List<Fuzz.Failure> failures =
+            fuzz.run(3, 40, 60_000_000_000L, 1);
+        assertFalse(failures.isEmpty());
+        for (Fuzz.Failure failure : failures) {
+            Fuzz.Case c = failure.failingCase();
+            assertEquals(100, failure.index());
+            assertEquals(101, c.message().length);
+            assertTrue(c.plugboard().isEmpty());
+            for (int x : c.message()) {
+                assertEquals(0, x);
+            }
+            assertTrue(failure.toString().contains("broken"));
+        }
+    }
+}
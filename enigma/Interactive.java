@@ -0,0 +1,290 @@
+package enigma;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** An interactive session: input is converted and echoed character by
+ *  character as it is typed, rather than line by line as by Main.process.
+ *  Each read of the input returns whatever bytes have arrived, and each
+ *  letter is converted and written at once, in groups of five separated
+ *  by spaces as Main prints them; the output is flushed after each group
+ *  and after each read, and is not otherwise buffered.  Settings lines
+ *  (starting with '*') take effect when their line ends and print
+ *  nothing.  Errors, such as characters outside the alphabet, are
+ *  reported on the standard error and the offending character or
+ *  settings line skipped, so the session goes on.  Bytes are taken as
+ *  characters with the same codes (ISO-8859-1); a Control-D ends the
+ *  session.
+ *
+ *  So that the first keystroke is converted as fast as the rest, a
+ *  session is first exercised on a copy of the machine with output
+ *  discarded, which loads its classes and lets the JIT compile them.
+ *  @author Sharona Yang
+ */
+final class Interactive {
+
+    /** A session converting with MACH, set up by PARSED (which holds its
+     *  configuration), writing to OUT. */
+    Interactive(Main parsed, Machine mach, OutputStream out) {
+        _parsed = parsed;
+        _mach = mach;
+        _out = out;
+    }
+
+    /** Run the session for MACH, configured by PARSED, on the standard
+     *  input and output, after warming up.  If the standard input is a
+     *  terminal, it is switched to character-at-a-time mode without echo
+     *  for the session. */
+    static void run(Main parsed, Machine mach) {
+        warmUp(parsed, mach);
+        String saved = null;
+        if (System.console() != null) {
+            saved = stty("-g");
+            if (saved != null) {
+                String restore = saved;
+                Runtime.getRuntime().addShutdownHook(
+                    new Thread(() -> stty(restore)));
+                stty("-icanon", "-echo", "min", "1", "time", "0");
+            }
+        }
+        try {
+            new Interactive(parsed, mach,
+                            new FileOutputStream(FileDescriptor.out))
+                .run(new FileInputStream(FileDescriptor.in));
+        } catch (IOException excp) {
+            throw error("interactive session failed: %s",
+                        excp.getMessage());
+        } finally {
+            if (saved != null) {
+                stty(saved);
+            }
+        }
+    }
+
+    /** Read IN until its end or a Control-D, converting as input
+     *  arrives. */
+    void run(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while (!_done && (n = in.read(buffer)) >= 0) {
+            feed(buffer, n);
+        }
+        flush();
+    }
+
+    /** Process the first N bytes of INPUT, then flush my output. */
+    void feed(byte[] input, int n) throws IOException {
+        Alphabet alpha = _mach.alphabet();
+        for (int i = 0; i < n && !_done; i += 1) {
+            char c = (char) (input[i] & 0xff);
+            if (c == END) {
+                _done = true;
+            } else if (c == '\n') {
+                endLine();
+            } else if (_settings != null) {
+                _settings.append(c);
+            } else if (_lineStart && c == '*') {
+                _settings = new StringBuilder("*");
+            } else if (!Character.isWhitespace(c)) {
+                _lineStart = false;
+                int k = alpha.indexOf(c);
+                if (k < 0) {
+                    report(String.format("'%c' is not in the alphabet", c));
+                } else if (!_keyed) {
+                    report("no settings line before first message");
+                } else {
+                    letter(alpha.toChar(_mach.convert(k)));
+                }
+            }
+        }
+        flush();
+    }
+
+    /** Write the converted letter C, starting a new group first if the
+     *  current one is full. */
+    private void letter(char c) throws IOException {
+        if (_inGroup == GROUP) {
+            put(' ');
+            _inGroup = 0;
+        }
+        put(c);
+        _inGroup += 1;
+        if (_inGroup == GROUP) {
+            flush();
+        }
+    }
+
+    /** Finish the current line: apply it if it is a settings line, and
+     *  otherwise end the output line. */
+    private void endLine() throws IOException {
+        if (_settings != null) {
+            String line = _settings.toString().trim();
+            _settings = null;
+            try {
+                _parsed.setUp(_mach, line);
+                _keyed = true;
+            } catch (EnigmaException excp) {
+                _keyed = false;
+                report(excp.getMessage());
+            }
+        } else {
+            put('\n');
+        }
+        _inGroup = 0;
+        _lineStart = true;
+    }
+
+    /** Append C to my pending output. */
+    private void put(char c) throws IOException {
+        if (_numPending == _pending.length) {
+            flush();
+        }
+        _pending[_numPending++] = (byte) c;
+    }
+
+    /** Write my pending output. */
+    private void flush() throws IOException {
+        if (_numPending > 0) {
+            _out.write(_pending, 0, _numPending);
+            _numPending = 0;
+        }
+        _out.flush();
+    }
+
+    /** Report MSG as an error, after any pending output. */
+    private void report(String msg) throws IOException {
+        if (_quiet) {
+            return;
+        }
+        flush();
+        System.err.printf("Error: %s%n", msg);
+    }
+
+    /** Exercise a session on a copy of TEMPLATE, configured by PARSED,
+     *  discarding the output, so that the code of a real session is
+     *  loaded and compiled before it starts.  Does nothing if TEMPLATE's
+     *  configuration has no valid rotor order. */
+    static void warmUp(Main parsed, Machine template) {
+        List<String[]> orders;
+        try {
+            orders = Cracker.rotorOrders(template);
+        } catch (EnigmaException excp) {
+            /* No settings line fits; the session will say so. */
+            return;
+        }
+        String[] order = orders.get(0);
+        StringBuilder text = new StringBuilder("*");
+        for (String name : order) {
+            text.append(' ').append(name);
+        }
+        text.append(' ');
+        Alphabet alpha = template.alphabet();
+        for (int i = 1; i < order.length; i += 1) {
+            text.append(alpha.toChar(0));
+        }
+        text.append('\n');
+        for (int i = 0; i < WARM_UP_CHARS; i += 1) {
+            text.append(alpha.toChar(i % alpha.size()));
+            if (i % 61 == 60) {
+                text.append('\n');
+            }
+        }
+        byte[] input = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+        Interactive session = new Interactive(parsed, template.copy(),
+                                              OutputStream.nullOutputStream());
+        session._quiet = true;
+        try {
+            for (int k = 0; k < WARM_UP_ROUNDS; k += 1) {
+                session._lineStart = true;
+                for (int i = 0; i < input.length; i += WARM_UP_CHUNK) {
+                    byte[] chunk = Arrays.copyOfRange(input, i,
+                                                      i + WARM_UP_CHUNK);
+                    session.feed(chunk,
+                                 Math.min(WARM_UP_CHUNK, input.length - i));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Run stty with ARGS on the terminal, returning its output, or null
+     *  if it fails. */
+    private static String stty(String... args) {
+        ArrayList<String> command = new ArrayList<>();
+        command.add("stty");
+        command.addAll(List.of(args));
+        try {
+            Process proc = new ProcessBuilder(command)
+                .redirectInput(new File("/dev/tty"))
+                .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            String output = new String(proc.getInputStream().readAllBytes(),
+                                       StandardCharsets.ISO_8859_1).trim();
+            return proc.waitFor() == 0 ? output : null;
+        } catch (IOException | InterruptedException excp) {
+            return null;
+        }
+    }
+
+    /** Size of the input buffer. */
+    private static final int BUFFER_SIZE = 4096;
+
+    /** Number of letters in an output group. */
+    private static final int GROUP = 5;
+
+    /** Character that ends a session (Control-D). */
+    private static final char END = 4;
+
+    /** Number of letters converted in each round of warming up. */
+    private static final int WARM_UP_CHARS = 20000;
+
+    /** Number of rounds of warming up. */
+    private static final int WARM_UP_ROUNDS = 10;
+
+    /** Size of the reads simulated while warming up. */
+    private static final int WARM_UP_CHUNK = 7;
+
+    /** Holder of the configuration, which applies settings lines. */
+    private final Main _parsed;
+
+    /** Machine doing the conversions. */
+    private final Machine _mach;
+
+    /** Destination of the output. */
+    private final OutputStream _out;
+
+    /** Output not yet written. */
+    private final byte[] _pending = new byte[BUFFER_SIZE];
+
+    /** Number of bytes in _pending. */
+    private int _numPending;
+
+    /** Number of letters in the current output group. */
+    private int _inGroup;
+
+    /** True at the start of an input line. */
+    private boolean _lineStart = true;
+
+    /** The settings line being read, or null. */
+    private StringBuilder _settings;
+
+    /** True once a settings line has been applied. */
+    private boolean _keyed;
+
+    /** True once the session has ended. */
+    private boolean _done;
+
+    /** True if errors are not to be reported. */
+    private boolean _quiet;
+}
@@ -0,0 +1,116 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Interactive class.
+ *  @author Sharona Yang
+ */
+public class InteractiveTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval configuration used by the acceptance tests. */
+    private static final String CONFIG = "../testing/correct/default.conf";
+
+    /** An input stream that returns at most CHUNK bytes per read, as a
+     *  terminal would return a few keystrokes at a time. */
+    private static class Trickle extends ByteArrayInputStream {
+        /** A stream of TEXT returning at most CHUNK bytes per read. */
+        Trickle(String text, int chunk) {
+            super(text.getBytes(StandardCharsets.ISO_8859_1));
+            _chunk = chunk;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, _chunk));
+        }
+
+        /** Largest number of bytes per read. */
+        private final int _chunk;
+    }
+
+    /** Return the output of an interactive session on IN. */
+    private String session(InputStream in) throws IOException {
+        Main parsed = new Main(List.of(CONFIG));
+        Machine mach = parsed.readConfig();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Interactive(parsed, mach, out).run(in);
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return the output of Main on the file INPUT. */
+    private String batch(String input) throws IOException {
+        Path output = Files.createTempFile("enigma-interactive", ".out");
+        Main main = new Main(List.of(CONFIG, input, output.toString()));
+        main.process();
+        main.close();
+        return new String(Files.readAllBytes(output),
+                          StandardCharsets.ISO_8859_1);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testLikeMain() throws IOException {
+        for (String name : new String[] { "01-multi", "01-carroll" }) {
+            String input = "../testing/correct/" + name + ".in";
+            String text = new String(Files.readAllBytes(Paths.get(input)),
+                                     StandardCharsets.ISO_8859_1);
+            if (!text.endsWith("\n")) {
+                text += "\n";
+            }
+            String expected = batch(input);
+            for (int chunk : new int[] { 1, 3, 4096 }) {
+                assertEquals(name + " by " + chunk, expected,
+                             session(new Trickle(text, chunk)));
+            }
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        String text = "HELLO\n* B Beta III IV X AAAA\n"
+            + "* B Beta III IV I AXLE (HQ) (EX)\nHEL%LO WORLD\n\u0004IGNORED\n";
+        assertEquals("\nUIVGJ ZUKSG\n", session(new Trickle(text, 2)));
+    }
+
+    @Test
+    public void testWarmUp() throws IOException {
+        Main parsed = new Main(List.of(CONFIG));
+        Machine mach = parsed.readConfig();
+        Interactive.warmUp(parsed, mach);
+        assertNull(mach.getRotor(0));
+    }
+
+    @Test
+    public void testWarmUpNoOrder() throws IOException {
+        Path config = Files.createTempFile("enigma-interactive", ".conf");
+        try {
+            Files.write(config, ("ABCD\n 2 1\n I MA (ABCD)\n"
+                                 + " II MB (AB) (CD)\n")
+                        .getBytes(StandardCharsets.ISO_8859_1));
+            Main parsed = new Main(List.of(config.toString()));
+            Interactive.warmUp(parsed, parsed.readConfig());
+        } finally {
+            Files.delete(config);
+        }
+    }
+}
@@ -0,0 +1,689 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** The first phase of Cracker's attack, ranking every rotor order and
+ *  start position by the index of coincidence of its decryption, spread
+ *  over worker processes on any number of hosts.  A coordinator divides
+ *  the rotor orders' positions into leases, runs of consecutive
+ *  positions of one order, and hands them to the workers that connect to
+ *  it; a worker ranks a lease's positions with a Machine, as Cracker
+ *  does, and reports its best candidates (its hits), then gets another
+ *  lease.  Leases held by workers that disconnect, or that take longer
+ *  than a timeout, go back to be leased again.  The coordinator may
+ *  record each finished lease and its hits in a progress file, from
+ *  which a restarted search carries on.
+ *
+ *  The protocol is lines of text over TCP.  A worker first sends
+ *  "HELLO job", where job is the fingerprint of the configuration,
+ *  ciphertext, lease size and candidate count it was given, which must
+ *  be the coordinator's; the coordinator answers each HELLO or result
+ *  with "LEASE id order from to" or, once every lease is done, "DONE".
+ *  A result is "RESULT id n" followed by n lines "order position
+ *  score".  Orders are numbered as Cracker.rotorOrders lists them, and
+ *  positions in odometer order.
+ *  @author Sharona Yang
+ */
+public final class KeySearch {
+
+    /** Search as specified by ARGS: ARGS[0] names a configuration file
+     *  and ARGS[1] a ciphertext file.  With --worker=HOST:PORT, work for
+     *  the coordinator there, on --threads connections (default: one per
+     *  processor).  Otherwise, coordinate a search, listening on --port
+     *  (default 7401) of --host (default: the loopback address, so that
+     *  only workers on this host may connect) and printing the best
+     *  --candidates candidates, each as its score and settings line.
+     *  Options: --lease, the number of positions per lease; --timeout,
+     *  seconds allowed per lease; --progress, a progress file; and
+     *  --local=N, to start N worker processes on this host.  Exits
+     *  normally if there are no errors; otherwise with code 1. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--worker=(.+){0,1} --threads=(\\d+){0,1} "
+                                + "--host=(.+){0,1} "
+                                + "--port=(\\d+){0,1} --lease=(\\d+){0,1} "
+                                + "--candidates=(\\d+){0,1} "
+                                + "--timeout=(\\d+){0,1} "
+                                + "--progress=(.+){0,1} --local=(\\d+){0,1} "
+                                + "--=(.*){2,2}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.KeySearch [--host=HOST] "
+                            + "[--port=N] [--lease=N] [--candidates=N] "
+                            + "[--timeout=N] "
+                            + "[--progress=FILE] [--local=N] CONFIG "
+                            + "CIPHERTEXT%n"
+                            + "       java enigma.KeySearch "
+                            + "--worker=HOST:PORT [--threads=N] "
+                            + "[--lease=N] [--candidates=N] CONFIG "
+                            + "CIPHERTEXT");
+            }
+            List<String> files = options.get("--");
+            Main parsed = new Main(files.subList(0, 1));
+            Machine template = parsed.readConfig();
+            parsed.close();
+            KeySearch job =
+                new KeySearch(template,
+                              Cracker.readCiphertext(template.alphabet(),
+                                                     files.get(1)),
+                              intOption(options, "--lease", DEFAULT_LEASE),
+                              intOption(options, "--candidates",
+                                        DEFAULT_CANDIDATES));
+            if (options.contains("--worker")) {
+                String address = options.get("--worker").get(0);
+                int colon = address.lastIndexOf(':');
+                if (colon < 0) {
+                    throw error("bad coordinator address: %s", address);
+                }
+                int port;
+                try {
+                    port = Integer.parseInt(address.substring(colon + 1));
+                } catch (NumberFormatException excp) {
+                    throw error("bad coordinator address: %s", address);
+                }
+                job.work(address.substring(0, colon), port,
+                         intOption(options, "--threads",
+                                   Runtime.getRuntime()
+                                   .availableProcessors()));
+                return;
+            }
+            String host = options.contains("--host")
+                ? options.get("--host").get(0) : null;
+            Coordinator coordinator;
+            try {
+                coordinator = job.new Coordinator(
+                    new ServerSocket(intOption(options, "--port",
+                                               DEFAULT_PORT), 0,
+                                     host == null
+                                     ? InetAddress.getLoopbackAddress()
+                                     : InetAddress.getByName(host)),
+                    options.contains("--progress")
+                    ? options.get("--progress").get(0) : null,
+                    intOption(options, "--timeout", DEFAULT_TIMEOUT)
+                    * 1000L);
+            } catch (IOException excp) {
+                throw error("could not listen: %s", excp.getMessage());
+            }
+            List<Process> local =
+                startWorkers(intOption(options, "--local", 0),
+                             host == null ? "localhost" : host,
+                             coordinator.port(), options, files);
+            List<Cracker.Key> best;
+            try {
+                best = coordinator.run();
+            } finally {
+                for (Process proc : local) {
+                    proc.destroy();
+                }
+            }
+            for (Cracker.Key key : best) {
+                System.out.printf("%.6f %s%n", key.score(),
+                                  key.settings(template.alphabet()));
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the value of the numeric option KEY in OPTIONS, or DFLT if
+     *  it is absent. */
+    private static int intOption(CommandArgs options, String key,
+                                 int dflt) {
+        if (!options.contains(key)) {
+            return dflt;
+        }
+        try {
+            return Integer.parseInt(options.get(key).get(0));
+        } catch (NumberFormatException excp) {
+            throw error("bad value for %s", key);
+        }
+    }
+
+    /** Start N single-threaded worker processes for the coordinator at
+     *  HOST:PORT, given the lease and candidates OPTIONS and the
+     *  configuration and ciphertext FILES, returning them. */
+    private static List<Process> startWorkers(int n, String host,
+                                              int port,
+                                              CommandArgs options,
+                                              List<String> files) {
+        ArrayList<Process> result = new ArrayList<>();
+        String java = Paths.get(System.getProperty("java.home"), "bin",
+                                "java").toString();
+        for (int i = 0; i < n; i += 1) {
+            ArrayList<String> command = new ArrayList<>(List.of(
+                java, "-cp", System.getProperty("java.class.path"),
+                KeySearch.class.getName(), "--worker=" + host + ":" + port,
+                "--threads=1"));
+            for (String key : new String[] { "--lease", "--candidates" }) {
+                if (options.contains(key)) {
+                    command.add(key + "=" + options.get(key).get(0));
+                }
+            }
+            command.addAll(files);
+            try {
+                result.add(new ProcessBuilder(command).inheritIO().start());
+            } catch (IOException excp) {
+                throw error("could not start worker: %s",
+                            excp.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /** A search of every rotor order and position of TEMPLATE's
+     *  configuration for the decryptions of CIPHER, as alphabet indices,
+     *  with the highest index of coincidence, keeping the best
+     *  CANDIDATES of them and leasing LEASESIZE positions at a time. */
+    KeySearch(Machine template, int[] cipher, int leaseSize,
+              int candidates) {
+        if (leaseSize < 1 || candidates < 1) {
+            throw error("lease size and candidates must be positive");
+        }
+        _template = template;
+        _cipher = cipher;
+        _orders = Cracker.rotorOrders(template);
+        _candidates = candidates;
+        long positions = Cracker.numPositions(template);
+        long fingerprint = Catalog.mix(leaseSize * 31L + candidates);
+        for (int k = 0; k < _orders.size(); k += 1) {
+            fingerprint = Catalog.mix(
+                fingerprint + Catalog.fingerprint(template, _orders.get(k)));
+            for (long from = 0; from < positions; from += leaseSize) {
+                _leases.add(new long[] {
+                        k, from, Math.min(positions, from + leaseSize) });
+            }
+        }
+        for (int c : cipher) {
+            fingerprint = Catalog.mix(fingerprint + c);
+        }
+        _fingerprint = fingerprint;
+    }
+
+    /** Return the number of leases. */
+    int numLeases() {
+        return _leases.size();
+    }
+
+    /** Return the fingerprint identifying my search. */
+    long fingerprint() {
+        return _fingerprint;
+    }
+
+    /** Return the best candidates among the positions of lease ID. */
+    List<Cracker.Key> rank(int id) {
+        long[] lease = _leases.get(id);
+        Cracker cracker = new Cracker(_template, _cipher, null);
+        cracker.setCandidates(_candidates);
+        return cracker.rankPositions(_orders.get((int) lease[0]),
+                                     lease[1], lease[2]);
+    }
+
+    /** Work for the coordinator at HOST:PORT on THREADS connections
+     *  until it has no more leases. */
+    void work(String host, int port, int threads) {
+        ArrayList<Thread> workers = new ArrayList<>();
+        EnigmaException[] failure = new EnigmaException[1];
+        for (int t = 0; t < Math.max(1, threads); t += 1) {
+            Thread worker = new Thread(() -> {
+                try {
+                    work(host, port);
+                } catch (EnigmaException excp) {
+                    failure[0] = excp;
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException excp) {
+                throw error("interrupted");
+            }
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /** Work on one connection to the coordinator at HOST:PORT until it has
+     *  no more leases. */
+    void work(String host, int port) {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = reader(socket);
+            PrintWriter out = writer(socket);
+            out.printf("HELLO %016x%n", _fingerprint);
+            out.flush();
+            while (true) {
+                String line = in.readLine();
+                if (line == null) {
+                    throw error("coordinator went away");
+                }
+                String[] words = line.split(" ");
+                if (words[0].equals("DONE")) {
+                    return;
+                } else if (!words[0].equals("LEASE") || words.length != 5) {
+                    throw error("coordinator: %s", line);
+                }
+                int id = Integer.parseInt(words[1]);
+                if (id < 0 || id >= _leases.size()) {
+                    throw error("coordinator's lease %d does not exist", id);
+                }
+                long[] lease = _leases.get(id);
+                if (lease[0] != Long.parseLong(words[2])
+                    || lease[1] != Long.parseLong(words[3])
+                    || lease[2] != Long.parseLong(words[4])) {
+                    throw error("coordinator's lease %d differs", id);
+                }
+                List<Cracker.Key> hits = rank(id);
+                out.printf("RESULT %d %d%n", id, hits.size());
+                for (Cracker.Key key : hits) {
+                    out.println(formatHit(lease[0], key));
+                }
+                out.flush();
+            }
+        } catch (IOException excp) {
+            throw error("lost coordinator: %s", excp.getMessage());
+        } catch (NumberFormatException excp) {
+            throw error("garbled lease from coordinator");
+        }
+    }
+
+    /** Return a reader of the lines SOCKET receives. */
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+            socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /** Return a writer of lines to SOCKET. */
+    private static PrintWriter writer(Socket socket) throws IOException {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+            socket.getOutputStream(), StandardCharsets.UTF_8)));
+    }
+
+    /** Return the key for the hit "order position score" HIT. */
+    private Cracker.Key parseHit(String hit) {
+        String[] words = hit.split(" ");
+        if (words.length != 3) {
+            throw error("bad hit: %s", hit);
+        }
+        try {
+            int order = Integer.parseInt(words[0]);
+            if (order < 0 || order >= _orders.size()) {
+                throw error("bad hit: %s", hit);
+            }
+            return new Cracker.Key(
+                _orders.get(order),
+                Cracker.position(Long.parseLong(words[1]),
+                                 _template.numRotors() - 1,
+                                 _template.alphabet().size()),
+                null, Double.parseDouble(words[2]));
+        } catch (NumberFormatException excp) {
+            throw error("bad hit: %s", hit);
+        }
+    }
+
+    /** Return the hit line for KEY, of rotor order number ORDER. */
+    private String formatHit(long order, Cracker.Key key) {
+        return String.format("%d %d %s", order,
+                             Cracker.positionNumber(
+                                 key.positions(),
+                                 _template.alphabet().size()),
+                             Double.toString(key.score()));
+    }
+
+    /** The coordinator of a search: hands out my leases to workers,
+     *  collects their hits, and records progress. */
+    final class Coordinator {
+
+        /** A coordinator accepting workers on SERVER, recording progress
+         *  in the file PROGRESS (or not, if null), from which it first
+         *  resumes if it exists, and reclaiming leases not finished in
+         *  TIMEOUT milliseconds. */
+        Coordinator(ServerSocket server, String progress, long timeout) {
+            _server = server;
+            _timeout = timeout;
+            _done = new boolean[_leases.size()];
+            for (int i = 0; i < _leases.size(); i += 1) {
+                _pending.add(i);
+            }
+            if (progress != null) {
+                resume(Paths.get(progress));
+            }
+        }
+
+        /** Return the port on which I accept workers. */
+        int port() {
+            return _server.getLocalPort();
+        }
+
+        /** Return the number of leases done. */
+        synchronized int leasesDone() {
+            return _numDone;
+        }
+
+        /** Return the number of leases handed out again after their
+         *  workers disconnected or timed out. */
+        synchronized int leasesReclaimed() {
+            return _reclaimed;
+        }
+
+        /** Serve workers until every lease is done, then return the best
+         *  candidates, best first. */
+        List<Cracker.Key> run() {
+            Thread acceptor = new Thread(this::accept);
+            acceptor.setDaemon(true);
+            acceptor.start();
+            synchronized (this) {
+                while (_numDone < _done.length) {
+                    try {
+                        wait();
+                    } catch (InterruptedException excp) {
+                        throw error("interrupted");
+                    }
+                }
+            }
+            try {
+                _server.close();
+                if (_log != null) {
+                    _log.close();
+                }
+            } catch (IOException excp) {
+                throw error("could not close progress file");
+            }
+            ArrayList<Cracker.Key> result = new ArrayList<>(_best);
+            Collections.sort(result, Collections.reverseOrder());
+            return result;
+        }
+
+        /** Accept workers, serving each on its own thread, until my
+         *  server socket is closed. */
+        private void accept() {
+            while (!_server.isClosed()) {
+                try {
+                    Socket socket = _server.accept();
+                    Thread handler = new Thread(() -> serve(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException excp) {
+                    /* Closed, or a failed connection: carry on. */
+                }
+            }
+        }
+
+        /** Serve the worker on SOCKET until it disconnects or there is no
+         *  more work, reclaiming its lease if it does not finish it. */
+        private void serve(Socket socket) {
+            int held = -1;
+            try (socket) {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE,
+                                                   _timeout));
+                BufferedReader in = reader(socket);
+                PrintWriter out = writer(socket);
+                String hello = in.readLine();
+                if (hello == null || !hello.equals(
+                        String.format("HELLO %016x", _fingerprint))) {
+                    out.println("ERROR not this search");
+                    out.flush();
+                    return;
+                }
+                while (true) {
+                    held = acquire();
+                    if (held < 0) {
+                        out.println("DONE");
+                        out.flush();
+                        return;
+                    }
+                    long[] lease = _leases.get(held);
+                    out.printf("LEASE %d %d %d %d%n", held, lease[0],
+                               lease[1], lease[2]);
+                    out.flush();
+                    String[] result = readLine(in).split(" ");
+                    if (result.length != 3 || !result[0].equals("RESULT")
+                        || Integer.parseInt(result[1]) != held) {
+                        return;
+                    }
+                    ArrayList<String> hits = new ArrayList<>();
+                    for (int n = Integer.parseInt(result[2]); n > 0;
+                         n -= 1) {
+                        hits.add(readLine(in));
+                    }
+                    complete(held, hits);
+                    held = -1;
+                }
+            } catch (SocketTimeoutException excp) {
+                /* Too slow: treated as dead. */
+            } catch (IOException | NumberFormatException
+                     | EnigmaException excp) {
+                /* Dead or confused worker. */
+            } finally {
+                if (held >= 0) {
+                    release(held);
+                }
+            }
+        }
+
+        /** Return the next line of IN, which must exist. */
+        private String readLine(BufferedReader in) throws IOException {
+            String line = in.readLine();
+            if (line == null) {
+                throw new IOException("worker went away");
+            }
+            return line;
+        }
+
+        /** Return the number of a lease to hand out, waiting while all
+         *  those not done are out, or -1 if all are done. */
+        private synchronized int acquire() {
+            while (_pending.isEmpty() && _numDone < _done.length) {
+                try {
+                    wait();
+                } catch (InterruptedException excp) {
+                    throw error("interrupted");
+                }
+            }
+            return _pending.isEmpty() ? -1 : _pending.poll();
+        }
+
+        /** Put lease ID back to be handed out again, unless it is done. */
+        private synchronized void release(int id) {
+            if (!_done[id]) {
+                _pending.addFirst(id);
+                _reclaimed += 1;
+                notifyAll();
+            }
+        }
+
+        /** Record lease ID as done, with the hits HITS ("order position
+         *  score" lines). */
+        private synchronized void complete(int id, List<String> hits) {
+            if (_done[id]) {
+                return;
+            }
+            ArrayList<Cracker.Key> keys = new ArrayList<>();
+            StringBuilder line = new StringBuilder("lease ").append(id);
+            for (String hit : hits) {
+                keys.add(parseHit(hit));
+                line.append(' ').append(hit.replace(' ', ':'));
+            }
+            if (_log != null) {
+                try {
+                    _log.write(line.append('\n').toString());
+                    _log.flush();
+                } catch (IOException excp) {
+                    throw error("could not record progress");
+                }
+            }
+            for (Cracker.Key key : keys) {
+                keep(key);
+            }
+            _done[id] = true;
+            _numDone += 1;
+            notifyAll();
+        }
+
+        /** Add KEY to my best candidates, dropping the worst if there are
+         *  too many. */
+        private void keep(Cracker.Key key) {
+            _best.add(key);
+            if (_best.size() > _candidates) {
+                _best.poll();
+            }
+        }
+
+        /** Take the leases done and their hits from the progress file
+         *  FILE, if it exists, and open it to record more. */
+        private void resume(Path file) {
+            String header = String.format("%s %016x", PROGRESS_MAGIC,
+                                          _fingerprint);
+            try {
+                if (Files.exists(file)) {
+                    truncateToLastLine(file);
+                    List<String> lines =
+                        Files.readAllLines(file, StandardCharsets.UTF_8);
+                    if (lines.isEmpty() || !lines.get(0).equals(header)) {
+                        throw error("%s is not progress of this search",
+                                    file);
+                    }
+                    for (String line : lines.subList(1, lines.size())) {
+                        resumeLease(line);
+                    }
+                } else {
+                    Files.write(file, (header + "\n")
+                                .getBytes(StandardCharsets.UTF_8));
+                }
+                _log = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                                               StandardOpenOption.APPEND);
+            } catch (IOException excp) {
+                throw error("could not use progress file %s", file);
+            }
+        }
+
+        /** Record the lease done and hits in LINE of a progress file. */
+        private void resumeLease(String line) {
+            String[] words = line.split(" ");
+            int id;
+            try {
+                id = Integer.parseInt(words[1]);
+            } catch (NumberFormatException
+                     | ArrayIndexOutOfBoundsException excp) {
+                throw error("bad progress line: %s", line);
+            }
+            if (!words[0].equals("lease") || id < 0 || id >= _done.length
+                || _done[id]) {
+                throw error("bad progress line: %s", line);
+            }
+            for (int i = 2; i < words.length; i += 1) {
+                keep(parseHit(words[i].replace(':', ' ')));
+            }
+            _done[id] = true;
+            _numDone += 1;
+            _pending.remove(id);
+        }
+
+        /** Cut FILE after its last line break, dropping a line only partly
+         *  written when a coordinator stopped. */
+        private void truncateToLastLine(Path file) throws IOException {
+            try (RandomAccessFile raf =
+                 new RandomAccessFile(file.toFile(), "rw")) {
+                long end = raf.length();
+                while (end > 0) {
+                    raf.seek(end - 1);
+                    if (raf.read() == '\n') {
+                        break;
+                    }
+                    end -= 1;
+                }
+                raf.setLength(end);
+            }
+        }
+
+        /** Socket on which workers connect. */
+        private final ServerSocket _server;
+
+        /** Milliseconds allowed per lease. */
+        private final long _timeout;
+
+        /** True for each lease done. */
+        private final boolean[] _done;
+
+        /** Number of leases done. */
+        private int _numDone;
+
+        /** Number of leases reclaimed. */
+        private int _reclaimed;
+
+        /** Leases not done and not out, next first. */
+        private final ArrayDeque<Integer> _pending = new ArrayDeque<>();
+
+        /** Best candidates so far, worst first. */
+        private final PriorityQueue<Cracker.Key> _best =
+            new PriorityQueue<>();
+
+        /** Progress file, open for appending, or null. */
+        private Writer _log;
+    }
+
+    /** First word of a progress file. */
+    private static final String PROGRESS_MAGIC = "enigma search 1";
+
+    /** Default port of a coordinator. */
+    static final int DEFAULT_PORT = 7401;
+
+    /** Default number of positions in a lease. */
+    static final int DEFAULT_LEASE = 1 << 14;
+
+    /** Default number of candidates kept. */
+    static final int DEFAULT_CANDIDATES = 16;
+
+    /** Default seconds allowed per lease. */
+    static final int DEFAULT_TIMEOUT = 600;
+
+    /** Configuration searched. */
+    private final Machine _template;
+
+    /** Ciphertext, as alphabet indices. */
+    private final int[] _cipher;
+
+    /** Rotor orders, numbered. */
+    private final List<String[]> _orders;
+
+    /** Number of candidates kept. */
+    private final int _candidates;
+
+    /** Leases, each its rotor order number and the first position and
+     *  the position after the last. */
+    private final ArrayList<long[]> _leases = new ArrayList<>();
+
+    /** Fingerprint of the search. */
+    private final long _fingerprint;
+}
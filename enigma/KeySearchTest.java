@@ -0,0 +1,249 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author Sharona Yang
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String PLAIN =
+        "SHOULDYOUASKMEWHENCETHESESTORIESWHENCETHESELEGENDSANDTRADITIONS"
+        + "WITHTHEODORSOFTHEFORESTWITHTHEDEWANDDAMPOFMEADOWSWITHTHECURLING";
+
+    /** Number of candidates kept. */
+    private static final int CANDIDATES = 5;
+
+    /** A machine with reflector B and moving rotors I, II and III, of
+     *  which it uses two. */
+    private Machine machine() {
+        HashMap<String, String> nav = NAVALA;
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), UPPER)));
+        rotors.add(new MovingRotor("I",
+                                   new Permutation(nav.get("I"), UPPER),
+                                   "Q"));
+        rotors.add(new MovingRotor("II",
+                                   new Permutation(nav.get("II"), UPPER),
+                                   "E"));
+        rotors.add(new MovingRotor("III",
+                                   new Permutation(nav.get("III"), UPPER),
+                                   "V"));
+        return new Machine(UPPER, 3, 2, rotors);
+    }
+
+    /** Return PLAIN enciphered at B III I KD. */
+    private int[] cipher() {
+        Machine mach = machine();
+        mach.insertRotors(new String[] { "B", "III", "I" });
+        mach.setRotors("KD");
+        mach.setPlugboard(new Permutation("", UPPER));
+        int[] msg = new int[PLAIN.length()], result = new int[msg.length];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = UPPER.toInt(PLAIN.charAt(i));
+        }
+        mach.convert(msg, result, msg.length);
+        return result;
+    }
+
+    /** Return the scores of KEYS. */
+    private List<Double> scores(List<Cracker.Key> keys) {
+        ArrayList<Double> result = new ArrayList<>();
+        for (Cracker.Key key : keys) {
+            result.add(key.score());
+        }
+        return result;
+    }
+
+    /** Return the scores of the best candidates ranked by Cracker. */
+    private List<Double> expected() {
+        Cracker cracker = new Cracker(machine(), cipher(), null);
+        cracker.setCandidates(CANDIDATES);
+        return scores(cracker.rankPositions());
+    }
+
+    /** Start a thread in which JOB works for the coordinator on PORT with
+     *  THREADS connections. */
+    private Thread startWorker(KeySearch job, int port, int threads) {
+        Thread worker = new Thread(() -> job.work("localhost", port,
+                                                  threads));
+        worker.setDaemon(true);
+        worker.start();
+        return worker;
+    }
+
+    /** Complete N leases of JOB for the coordinator on PORT and then
+     *  disconnect, holding a lease if HOLD. */
+    private void partialWorker(KeySearch job, int port, int n, boolean hold)
+        throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(),
+                                              true);
+            out.printf("HELLO %016x%n", job.fingerprint());
+            for (int k = 0; k < n; k += 1) {
+                String[] lease = in.readLine().split(" ");
+                assertEquals("LEASE", lease[0]);
+                int id = Integer.parseInt(lease[1]);
+                List<Cracker.Key> hits = job.rank(id);
+                out.printf("RESULT %d %d%n", id, hits.size());
+                for (Cracker.Key key : hits) {
+                    out.printf("%s %d %s%n", lease[2],
+                               Cracker.positionNumber(key.positions(), 26),
+                               Double.toString(key.score()));
+                }
+            }
+            if (hold) {
+                assertTrue(in.readLine().startsWith("LEASE"));
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesCracker() throws IOException {
+        KeySearch job = new KeySearch(machine(), cipher(), 100, CANDIDATES);
+        assertEquals(6 * 7, job.numLeases());
+        KeySearch.Coordinator coordinator =
+            job.new Coordinator(new ServerSocket(0), null, 60000);
+        startWorker(job, coordinator.port(), 3);
+        startWorker(job, coordinator.port(), 1);
+        List<Cracker.Key> best = coordinator.run();
+        assertEquals(expected(), scores(best));
+        assertEquals("* B III I KD", best.get(0).settings(UPPER));
+        assertEquals(job.numLeases(), coordinator.leasesDone());
+    }
+
+    @Test
+    public void testDeadWorker() throws IOException {
+        KeySearch job = new KeySearch(machine(), cipher(), 100, CANDIDATES);
+        KeySearch.Coordinator coordinator =
+            job.new Coordinator(new ServerSocket(0), null, 60000);
+        Thread crasher = new Thread(() -> {
+            try {
+                partialWorker(job, coordinator.port(), 2, true);
+                startWorker(job, coordinator.port(), 2);
+            } catch (IOException excp) {
+                throw new IllegalStateException(excp);
+            }
+        });
+        crasher.start();
+        assertEquals(expected(), scores(coordinator.run()));
+        assertEquals(1, coordinator.leasesReclaimed());
+    }
+
+    @Test
+    public void testResume() throws IOException, InterruptedException {
+        KeySearch job = new KeySearch(machine(), cipher(), 100, CANDIDATES);
+        Path progress = Files.createTempFile("enigma-search", ".progress");
+        Files.delete(progress);
+        KeySearch.Coordinator first =
+            job.new Coordinator(new ServerSocket(0), progress.toString(),
+                                60000);
+        Thread stopped = new Thread(first::run);
+        stopped.setDaemon(true);
+        stopped.start();
+        partialWorker(job, first.port(), 5, false);
+        while (first.leasesDone() < 5) {
+            Thread.sleep(10);
+        }
+        Files.write(progress, "lease 4".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+        KeySearch.Coordinator second =
+            job.new Coordinator(new ServerSocket(0), progress.toString(),
+                                60000);
+        assertEquals(5, second.leasesDone());
+        startWorker(job, second.port(), 2);
+        assertEquals(expected(), scores(second.run()));
+        assertEquals(job.numLeases(),
+                     Files.readAllLines(progress).size() - 1);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testOtherSearch() throws IOException {
+        KeySearch job = new KeySearch(machine(), cipher(), 100, CANDIDATES);
+        KeySearch other = new KeySearch(machine(), cipher(), 50, CANDIDATES);
+        KeySearch.Coordinator coordinator =
+            job.new Coordinator(new ServerSocket(0), null, 60000);
+        Thread server = new Thread(coordinator::run);
+        server.setDaemon(true);
+        server.start();
+        other.work("localhost", coordinator.port());
+    }
+
+    @Test
+    public void testGarbledHits() throws IOException {
+        KeySearch job = new KeySearch(machine(), cipher(), 100, CANDIDATES);
+        KeySearch.Coordinator coordinator =
+            job.new Coordinator(new ServerSocket(0), null, 60000);
+        Thread garbler = new Thread(() -> {
+            try (Socket socket = new Socket("localhost",
+                                            coordinator.port())) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out =
+                    new PrintWriter(socket.getOutputStream(), true);
+                out.printf("HELLO %016x%n", job.fingerprint());
+                String[] lease = in.readLine().split(" ");
+                out.printf("RESULT %s 2%n0 0 1000.0%ngarbage%n", lease[1]);
+                assertNull(in.readLine());
+            } catch (IOException excp) {
+                throw new IllegalStateException(excp);
+            }
+            startWorker(job, coordinator.port(), 1);
+        });
+        garbler.start();
+        assertEquals(expected(), scores(coordinator.run()));
+        assertEquals(1, coordinator.leasesReclaimed());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingLease() throws IOException {
+        KeySearch job = new KeySearch(machine(), cipher(), 100, CANDIDATES);
+        ServerSocket server = new ServerSocket(0);
+        Thread coordinator = new Thread(() -> {
+            try (server; Socket socket = server.accept()) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(),
+                                                  true);
+                in.readLine();
+                out.printf("LEASE %d 0 0 100%n", job.numLeases());
+                in.readLine();
+            } catch (IOException excp) {
+                /* The worker gave up. */
+            }
+        });
+        coordinator.setDaemon(true);
+        coordinator.start();
+        job.work("localhost", server.getLocalPort(), 1);
+    }
+}
@@ -0,0 +1,350 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A generator of key sheets: distinct random settings lines (reflector,
+ *  rotor order, start positions and plugboard) for a configuration, in
+ *  the format Main reads.  Every rotor order drawn from is first checked
+ *  by Main.setUp, so every line is one Main accepts.  Lines are generated
+ *  on several threads, each from its own split of one SplittableRandom,
+ *  kept unique by a shared lock-free set of 64-bit fingerprints, and
+ *  written by each thread from its own buffer at positions it reserves
+ *  in the output file.  The machine has no ring settings, so none are
+ *  generated.
+ *  @author Sharona Yang
+ */
+public final class KeySheets {
+
+    /** Write ARGS[1] distinct settings lines for the configuration ARGS[0]
+     *  to the file ARGS[2].  Options: --pairs, the number of plugboard
+     *  pairs (default 10), --seed, the random seed (default: the time),
+     *  and --threads.  Exits normally if there are no errors; otherwise
+     *  with code 1. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--pairs=(\\d+){0,1} --seed=(-?\\d+){0,1} "
+                                + "--threads=(\\d+){0,1} --=(.*){3,3}",
+                                args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.KeySheets [--pairs=N] "
+                            + "[--seed=N] [--threads=N] CONFIG COUNT "
+                            + "OUTPUT");
+            }
+            List<String> files = options.get("--");
+            int pairs = Main.intOption(options, "--pairs", DEFAULT_PAIRS);
+            long seed = Main.longOption(options, "--seed", System.nanoTime());
+            int threads =
+                Main.intOption(options, "--threads",
+                               Runtime.getRuntime().availableProcessors());
+            long count;
+            try {
+                count = Long.parseLong(files.get(1));
+            } catch (NumberFormatException excp) {
+                throw error("bad count: %s", files.get(1));
+            }
+            Main parsed = new Main(files.subList(0, 1));
+            Machine template = parsed.readConfig();
+            parsed.close();
+            new KeySheets(parsed, template, pairs)
+                .generate(count, seed, threads, files.get(2));
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A generator for the configuration of TEMPLATE, read by PARSED,
+     *  with PAIRS plugboard pairs per line. */
+    KeySheets(Main parsed, Machine template, int pairs) {
+        _alphabet = template.alphabet();
+        int size = _alphabet.size();
+        if (pairs < 0 || 2 * pairs > size) {
+            throw error("cannot make %d plugboard pairs of %d characters",
+                        pairs, size);
+        }
+        _pairs = pairs;
+        _slots = template.numRotors() - 1;
+        _chars = new byte[size][];
+        for (int i = 0; i < size; i += 1) {
+            _chars[i] = String.valueOf(_alphabet.toChar(i))
+                .getBytes(StandardCharsets.UTF_8);
+        }
+        Machine check = template.copy();
+        for (String[] order : Cracker.rotorOrders(template)) {
+            StringBuilder line = new StringBuilder("*");
+            for (String name : order) {
+                line.append(' ').append(name);
+            }
+            line.append(' ');
+            String prefix = line.toString();
+            for (int i = 0; i < _slots; i += 1) {
+                line.append(_alphabet.toChar(0));
+            }
+            parsed.setUp(check, line.toString());
+            _orders.add(prefix.getBytes(StandardCharsets.UTF_8));
+        }
+        int longest = 0;
+        for (byte[] prefix : _orders) {
+            longest = Math.max(longest, prefix.length);
+        }
+        int widest = 0;
+        for (byte[] c : _chars) {
+            widest = Math.max(widest, c.length);
+        }
+        _maxLine = longest + widest * (_slots + 2 * pairs) + 4 * pairs + 1;
+    }
+
+    /** Write COUNT distinct settings lines, drawn using SEED, to the file
+     *  OUTPUT, using THREADS threads. */
+    void generate(long count, long seed, int threads, String output) {
+        threads = (int) Math.max(1, Math.min(threads, count));
+        LongSet seen = new LongSet(count);
+        SplittableRandom root = new SplittableRandom(seed);
+        AtomicLong offset = new AtomicLong();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(Paths.get(output),
+                                       StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException excp) {
+            throw error("could not open %s", output);
+        }
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t += 1) {
+            long quota = count / threads + (t < count % threads ? 1 : 0);
+            SplittableRandom random = root.split();
+            tasks.add(() -> {
+                generate(quota, random, seen, channel, offset);
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("could not write %s: %s", output, excp.getCause());
+        } finally {
+            pool.shutdown();
+            try {
+                channel.close();
+            } catch (IOException excp) {
+                /* Ignore. */
+            }
+        }
+    }
+
+    /** Write QUOTA settings lines drawn from RANDOM and not in SEEN
+     *  (adding them to it) to CHANNEL, at positions reserved from
+     *  OFFSET. */
+    private void generate(long quota, SplittableRandom random, LongSet seen,
+                          FileChannel channel, AtomicLong offset)
+        throws IOException {
+        int size = _alphabet.size();
+        ByteBuffer buffer = ByteBuffer.allocate(
+            Math.max(BUFFER_SIZE, 2 * _maxLine));
+        int[] posn = new int[_slots];
+        int[] letters = new int[size];
+        int[] plug = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            letters[i] = i;
+        }
+        int misses = 0;
+        while (quota > 0) {
+            int order = random.nextInt(_orders.size());
+            for (int i = 0; i < _slots; i += 1) {
+                posn[i] = random.nextInt(size);
+            }
+            for (int i = 0; i < size; i += 1) {
+                plug[i] = i;
+            }
+            for (int i = 0; i < 2 * _pairs; i += 2) {
+                swap(letters, i, i + random.nextInt(size - i));
+                swap(letters, i + 1, i + 1 + random.nextInt(size - i - 1));
+                plug[letters[i]] = letters[i + 1];
+                plug[letters[i + 1]] = letters[i];
+            }
+            if (!seen.add(fingerprint(order, posn, plug))) {
+                misses += 1;
+                if (misses > MAX_MISSES) {
+                    throw error("too few distinct settings for %d lines",
+                                seen.size() + quota);
+                }
+                continue;
+            }
+            misses = 0;
+            quota -= 1;
+            if (buffer.remaining() < _maxLine) {
+                write(buffer, channel, offset);
+            }
+            buffer.put(_orders.get(order));
+            for (int p : posn) {
+                buffer.put(_chars[p]);
+            }
+            for (int c = 0; c < size; c += 1) {
+                if (plug[c] > c) {
+                    buffer.put((byte) ' ').put((byte) '(').put(_chars[c])
+                        .put(_chars[plug[c]]).put((byte) ')');
+                }
+            }
+            buffer.put((byte) '\n');
+        }
+        write(buffer, channel, offset);
+    }
+
+    /** Write the contents of BUFFER to CHANNEL at a position reserved from
+     *  OFFSET, and clear it. */
+    private static void write(ByteBuffer buffer, FileChannel channel,
+                              AtomicLong offset) throws IOException {
+        buffer.flip();
+        long posn = offset.getAndAdd(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            posn += channel.write(buffer, posn);
+        }
+        buffer.clear();
+    }
+
+    /** Exchange A[I] and A[J]. */
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    /** Return a 64-bit fingerprint of rotor order number ORDER with start
+     *  position POSN and plugboard PLUG. */
+    private static long fingerprint(int order, int[] posn, int[] plug) {
+        long hash = Catalog.mix(order + 1);
+        for (int p : posn) {
+            hash = Catalog.mix(hash * 31 + p);
+        }
+        for (int p : plug) {
+            hash = Catalog.mix(hash * 31 + p);
+        }
+        return hash;
+    }
+
+    /** A set of longs safe for use by several threads without locking:
+     *  open addressing with linear probing in an AtomicLongArray, sized
+     *  for an expected number of elements.  It cannot grow. */
+    static final class LongSet {
+
+        /** A set with room for EXPECTED elements. */
+        LongSet(long expected) {
+            long capacity = Long.highestOneBit(Math.max(2, expected) * 2 - 1)
+                * 2;
+            if (capacity > MAX_CAPACITY) {
+                throw error("too many elements: %d", expected);
+            }
+            _slots = new AtomicLongArray((int) capacity);
+            _mask = (int) capacity - 1;
+            _limit = expected;
+        }
+
+        /** Add KEY, returning true iff it was not already present. */
+        boolean add(long key) {
+            if (key == EMPTY) {
+                key = ZERO;
+            }
+            for (int i = (int) Catalog.mix(key) & _mask; ;
+                 i = (i + 1) & _mask) {
+                long current = _slots.get(i);
+                if (current == key) {
+                    return false;
+                }
+                if (current == EMPTY) {
+                    if (_size.get() >= _limit) {
+                        throw error("set is full");
+                    }
+                    if (_slots.compareAndSet(i, EMPTY, key)) {
+                        _size.incrementAndGet();
+                        return true;
+                    }
+                    i = (i - 1) & _mask;
+                }
+            }
+        }
+
+        /** Return the number of elements. */
+        long size() {
+            return _size.get();
+        }
+
+        /** Value of an empty slot. */
+        private static final long EMPTY = 0;
+
+        /** Stored in place of EMPTY when that is added. */
+        private static final long ZERO = 0x8000000000000000L;
+
+        /** Largest number of slots. */
+        private static final long MAX_CAPACITY = 1 << 30;
+
+        /** Elements, or EMPTY. */
+        private final AtomicLongArray _slots;
+
+        /** Number of slots - 1. */
+        private final int _mask;
+
+        /** Largest number of elements. */
+        private final long _limit;
+
+        /** Number of elements. */
+        private final AtomicLong _size = new AtomicLong();
+    }
+
+    /** Default number of plugboard pairs. */
+    static final int DEFAULT_PAIRS = 10;
+
+    /** Size of each thread's output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Number of duplicate lines in a row after which generation fails. */
+    private static final int MAX_MISSES = 10000;
+
+    /** Alphabet of the configuration. */
+    private final Alphabet _alphabet;
+
+    /** Number of plugboard pairs per line. */
+    private final int _pairs;
+
+    /** Number of rotors with start positions. */
+    private final int _slots;
+
+    /** Encoding of each character of the alphabet. */
+    private final byte[][] _chars;
+
+    /** Encoded start of the settings lines of each rotor order: the '*',
+     *  the rotor names and a space. */
+    private final ArrayList<byte[]> _orders = new ArrayList<>();
+
+    /** Longest encoded settings line, with its line break. */
+    private final int _maxLine;
+}
@@ -0,0 +1,97 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the KeySheets class.
+ *  @author Sharona Yang
+ */
+public class KeySheetsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval configuration used by the acceptance tests. */
+    private static final String CONFIG = "../testing/correct/default.conf";
+
+    /** Return the lines generated with PAIRS pairs, SEED and THREADS
+     *  threads, COUNT of them. */
+    private List<String> generate(long count, int pairs, long seed,
+                                  int threads) throws IOException {
+        Main parsed = new Main(List.of(CONFIG));
+        Machine template = parsed.readConfig();
+        Path output = Files.createTempFile("enigma-keys", ".txt");
+        new KeySheets(parsed, template, pairs)
+            .generate(count, seed, threads, output.toString());
+        return Files.readAllLines(output);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testGenerate() throws IOException {
+        List<String> lines = generate(20000, 10, 41, 3);
+        assertEquals(20000, lines.size());
+        assertEquals(lines.size(), new HashSet<>(lines).size());
+        Main parsed = new Main(List.of(CONFIG));
+        Machine mach = parsed.readConfig();
+        for (String line : lines.subList(0, 500)) {
+            String[] words = line.split(" ");
+            assertEquals(line, 7 + 10, words.length);
+            assertEquals(line, 4, words[6].length());
+            parsed.setUp(mach, line);
+            assertEquals(line, 10, mach.plugboard().cycleLengths().length
+                         - (26 - 20));
+        }
+        assertEquals(generate(100, 10, 7, 1), generate(100, 10, 7, 1));
+    }
+
+    @Test
+    public void testNoPlugboard() throws IOException {
+        for (String line : generate(1000, 0, 3, 2)) {
+            assertEquals(line, 7, line.split(" ").length);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTooManyPairs() throws IOException {
+        generate(1, 14, 0, 1);
+    }
+
+    @Test
+    public void testLongSet() throws InterruptedException {
+        KeySheets.LongSet set = new KeySheets.LongSet(40000);
+        Thread[] threads = new Thread[4];
+        int[] added = new int[threads.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (long k = 0; k < 10000; k += 1) {
+                    if (set.add(k * 0x9e3779b97f4a7c15L)) {
+                        added[id] += 1;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads.length; t += 1) {
+            threads[t].join();
+            total += added[t];
+        }
+        assertEquals(10000, total);
+        assertEquals(10000, set.size());
+        assertFalse(set.add(0));
+    }
+}
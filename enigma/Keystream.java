@@ -0,0 +1,97 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The conversions performed by a keyed machine for its first few
+ *  characters.  For a fixed rotor order, start position and plugboard,
+ *  the permutation applied to the K-th character of a message does not
+ *  depend on the message, so it can be computed once and reused: each
+ *  character then costs one table lookup, with no stepping.  Tables are
+ *  stored one after another in a single byte array (alphabets of at most
+ *  256 characters) or short array (larger ones).  A Keystream is never
+ *  modified after construction, so it may be shared among threads.
+ *  @author Sharona Yang
+ */
+class Keystream {
+
+    /** The conversions of the next LENGTH characters by MACH, which is
+     *  not itself advanced. */
+    Keystream(Machine mach, int length) {
+        _size = mach.alphabet().size();
+        _length = length;
+        long entries = (long) _size * length;
+        if (entries > Integer.MAX_VALUE) {
+            throw error("keystream of %d characters is too long", length);
+        }
+        if (_size <= 1 << Byte.SIZE) {
+            _bytes = new byte[(int) entries];
+            _shorts = null;
+        } else {
+            _bytes = null;
+            _shorts = new short[(int) entries];
+        }
+        Machine copy = mach.copy();
+        int[] table = new int[_size];
+        for (int i = 0; i < length; i += 1) {
+            copy.advance();
+            copy.composite(table);
+            int base = i * _size;
+            for (int c = 0; c < _size; c += 1) {
+                if (_bytes != null) {
+                    _bytes[base + c] = (byte) table[c];
+                } else {
+                    _shorts[base + c] = (short) table[c];
+                }
+            }
+        }
+    }
+
+    /** Return the number of characters I cover. */
+    int length() {
+        return _length;
+    }
+
+    /** Return the number of bytes my tables occupy. */
+    long bytes() {
+        return _bytes != null ? _bytes.length : 2L * _shorts.length;
+    }
+
+    /** Return the conversion of C (an index in the range 0..alphabet
+     *  size - 1) as character number I (0 <= I < length()) of the
+     *  message. */
+    int convert(int i, int c) {
+        int index = i * _size + c;
+        if (_bytes != null) {
+            return _bytes[index] & 0xff;
+        }
+        return _shorts[index] & 0xffff;
+    }
+
+    /** Convert the first N indices of MSG as characters START..START+N-1
+     *  of the message, storing the results in RESULT (which may be MSG).
+     *  Requires START + N <= length(). */
+    void convert(int start, int[] msg, int[] result, int n) {
+        int base = start * _size;
+        if (_bytes != null) {
+            for (int i = 0; i < n; i += 1, base += _size) {
+                result[i] = _bytes[base + msg[i]] & 0xff;
+            }
+        } else {
+            for (int i = 0; i < n; i += 1, base += _size) {
+                result[i] = _shorts[base + msg[i]] & 0xffff;
+            }
+        }
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of characters covered. */
+    private final int _length;
+
+    /** Tables for small alphabets, or null. */
+    private final byte[] _bytes;
+
+    /** Tables for large alphabets, or null. */
+    private final short[] _shorts;
+}
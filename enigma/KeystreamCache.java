@@ -0,0 +1,105 @@
+package enigma;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A cache of Keystreams by key, bounded by the total size of their
+ *  tables.  When adding a keystream would exceed the bound, the least
+ *  recently used ones are evicted.  Safe for use by several threads.
+ *  @author Sharona Yang
+ */
+class KeystreamCache {
+
+    /** Default bound on the size of the shared cache, in bytes. */
+    static final long DEFAULT_CAPACITY = 64L << 20;
+
+    /** A cache holding keystreams of at most CAPACITY bytes in all. */
+    KeystreamCache(long capacity) {
+        _capacity = capacity;
+    }
+
+    /** Return the cache shared by all users in this JVM. */
+    static KeystreamCache shared() {
+        return Shared.INSTANCE;
+    }
+
+    /** Return the keystream of LENGTH characters for MACH, whose key is
+     *  described by KEY (which must determine MACH's configuration,
+     *  rotors, start position and plugboard), computing and caching it
+     *  if needed.  MACH is not advanced. */
+    Keystream get(String key, Machine mach, int length) {
+        String fullKey = length + " " + key;
+        synchronized (this) {
+            Keystream result = _entries.get(fullKey);
+            if (result != null) {
+                _hits += 1;
+                return result;
+            }
+        }
+        Keystream result = new Keystream(mach, length);
+        synchronized (this) {
+            _misses += 1;
+            if (result.bytes() <= _capacity
+                && !_entries.containsKey(fullKey)) {
+                _entries.put(fullKey, result);
+                _bytes += result.bytes();
+                evict();
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of keystreams I hold. */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /** Return the total size of my keystreams in bytes. */
+    synchronized long bytes() {
+        return _bytes;
+    }
+
+    /** Return the number of requests found in the cache. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of requests that had to be computed. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Remove least-recently used entries until I am within capacity. */
+    private void evict() {
+        Iterator<Map.Entry<String, Keystream>> entries =
+            _entries.entrySet().iterator();
+        while (_bytes > _capacity && entries.hasNext()) {
+            _bytes -= entries.next().getValue().bytes();
+            entries.remove();
+        }
+    }
+
+    /** Holder of the shared cache, created on first use. */
+    private static class Shared {
+        /** The shared cache. */
+        static final KeystreamCache INSTANCE =
+            new KeystreamCache(DEFAULT_CAPACITY);
+    }
+
+    /** Bound on _bytes. */
+    private final long _capacity;
+
+    /** Keystreams by key, in order of last use. */
+    private final LinkedHashMap<String, Keystream> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Total size of the keystreams in _entries. */
+    private long _bytes;
+
+    /** Number of requests found in the cache. */
+    private long _hits;
+
+    /** Number of requests that had to be computed. */
+    private long _misses;
+}
@@ -0,0 +1,146 @@
+package enigma;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Keystream and KeystreamCache
+ *  classes.
+ *  @author Sharona Yang
+ */
+public class KeystreamTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A keyed machine with the naval rotors B Beta III IV I at AXLE. */
+    private Machine naval() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"),
+                                                          UPPER)));
+        rotors.add(new MovingRotor("III", new Permutation(NAVALA.get("III"),
+                                                          UPPER), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(NAVALA.get("IV"),
+                                                         UPPER), "J"));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                        UPPER), "Q"));
+        Machine mach = new Machine(UPPER, 5, 3, rotors);
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        return mach;
+    }
+
+    /** A keyed machine with three rotors over an alphabet of SIZE
+     *  characters, whose rotors shift by different amounts. */
+    private Machine wide(int size) {
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < size; i += 1) {
+            chars.append((char) ('A' + i));
+        }
+        Alphabet alpha = new Alphabet(chars.toString());
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation(pairs(chars, 1),
+                                                      alpha)));
+        rotors.add(new MovingRotor("M", new Permutation(shift(chars, 3),
+                                                        alpha), "A"));
+        rotors.add(new MovingRotor("F", new Permutation(shift(chars, 7),
+                                                        alpha), "AB"));
+        Machine mach = new Machine(alpha, 3, 2, rotors);
+        mach.insertRotors(new String[] { "R", "M", "F" });
+        mach.setRotors(new int[] { 5, size - 3 });
+        mach.setPlugboard(new Permutation(pairs(chars, 11), alpha));
+        return mach;
+    }
+
+    /** Return the single cycle over CHARS taking each to the one K
+     *  places later (K must be prime to the length of CHARS). */
+    private String shift(CharSequence chars, int k) {
+        StringBuilder result = new StringBuilder("(");
+        for (int i = 0, j = 0; i < chars.length(); i += 1, j += k) {
+            result.append(chars.charAt(j % chars.length()));
+        }
+        return result.append(")").toString();
+    }
+
+    /** Return the pairs of CHARS K places apart. */
+    private String pairs(CharSequence chars, int k) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i + k < chars.length(); i += 2 * k) {
+            for (int j = i; j < i + k && j + k < chars.length(); j += 1) {
+                result.append('(').append(chars.charAt(j))
+                    .append(chars.charAt(j + k)).append(") ");
+            }
+        }
+        return result.toString();
+    }
+
+    /** Check that KS converts MSG as MACH does. */
+    private void checkKeystream(Keystream ks, Machine mach, int[] msg) {
+        Machine reference = mach.copy();
+        int[] expected = new int[msg.length];
+        int[] got = new int[msg.length];
+        reference.convert(msg, expected, msg.length);
+        ks.convert(0, msg, got, msg.length);
+        assertArrayEquals(expected, got);
+        for (int i = 0; i < msg.length; i += 1) {
+            assertEquals(expected[i], ks.convert(i, msg[i]));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testNaval() {
+        Machine mach = naval();
+        int[] msg = new int[1000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (i * 7 + i / 13) % 26;
+        }
+        Keystream ks = new Keystream(mach, msg.length);
+        assertEquals(msg.length, ks.length());
+        assertEquals(26 * msg.length, ks.bytes());
+        checkKeystream(ks, mach, msg);
+        assertEquals(4, mach.getRotor(4).setting());
+    }
+
+    @Test
+    public void testWideAlphabet() {
+        Machine mach = wide(299);
+        int[] msg = new int[2000];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (i * 31) % 299;
+        }
+        Keystream ks = new Keystream(mach, msg.length);
+        assertEquals(2L * 299 * msg.length, ks.bytes());
+        checkKeystream(ks, mach, msg);
+    }
+
+    @Test
+    public void testCacheEviction() {
+        Machine mach = naval();
+        KeystreamCache cache = new KeystreamCache(3 * 26 * 100);
+        Keystream a = cache.get("a", mach, 100);
+        assertSame(a, cache.get("a", mach, 100));
+        cache.get("b", mach, 100);
+        cache.get("c", mach, 100);
+        assertEquals(3, cache.size());
+        cache.get("a", mach, 100);
+        cache.get("d", mach, 100);
+        assertEquals(3, cache.size());
+        assertEquals(3 * 26 * 100, cache.bytes());
+        assertSame(a, cache.get("a", mach, 100));
+        assertEquals(3, cache.hits());
+        assertNotSame(cache.get("b", mach, 100), cache.get("b", mach, 50));
+    }
+}
@@ -0,0 +1,149 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A reader of the lines of a file that keeps track of its byte offset
+ *  in the file, so that reading can later resume at the start of any
+ *  line.  Lines end with "\n" or "\r\n" and are decoded in the default
+ *  character set, as Scanner does.
+ *  @author Sharona Yang
+ */
+class LineReader {
+
+    /** A reader of the file named NAME, starting OFFSET bytes in. */
+    LineReader(String name, long offset) {
+        try {
+            FileChannel channel =
+                FileChannel.open(Paths.get(name), StandardOpenOption.READ);
+            channel.position(offset);
+            _in = Channels.newInputStream(channel);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        _name = name;
+        _offset = offset;
+    }
+
+    /** Return true iff there is another line. */
+    boolean hasNextLine() {
+        fill();
+        return _start < _end;
+    }
+
+    /** Return the next line, without its terminator. */
+    String nextLine() {
+        if (!hasNextLine()) {
+            throw error("unexpected end of %s", _name);
+        }
+        int scanned = 0;
+        while (true) {
+            for (int i = _start + scanned; i < _end; i += 1) {
+                if (_buffer[i] == '\n') {
+                    String line = take(i);
+                    _start += 1;
+                    _offset += 1;
+                    return line;
+                }
+            }
+            scanned = _end - _start;
+            if (_end == _buffer.length) {
+                compact();
+            }
+            if (!read()) {
+                return take(_end);
+            }
+        }
+    }
+
+    /** Return the offset in the file of the start of the next line. */
+    long offset() {
+        return _offset;
+    }
+
+    /** Close the file. */
+    void close() {
+        try {
+            _in.close();
+        } catch (IOException excp) {
+            throw error("could not close %s", _name);
+        }
+    }
+
+    /** Consume and return the text from _start up to END, stripping a
+     *  final '\r'. */
+    private String take(int end) {
+        int last = end;
+        if (last > _start && _buffer[last - 1] == '\r') {
+            last -= 1;
+        }
+        String line = new String(_buffer, _start, last - _start, CHARSET);
+        _offset += end - _start;
+        _start = end;
+        return line;
+    }
+
+    /** Make sure the buffer holds at least one byte, if any remain. */
+    private void fill() {
+        if (_start == _end) {
+            _start = _end = 0;
+            read();
+        }
+    }
+
+    /** Move unconsumed bytes to the front of the buffer, growing it if
+     *  it is full. */
+    private void compact() {
+        if (_start == 0) {
+            _buffer = Arrays.copyOf(_buffer, 2 * _buffer.length);
+        } else {
+            System.arraycopy(_buffer, _start, _buffer, 0, _end - _start);
+            _end -= _start;
+            _start = 0;
+        }
+    }
+
+    /** Read more bytes after _end, returning false at end of file. */
+    private boolean read() {
+        try {
+            int n = _in.read(_buffer, _end, _buffer.length - _end);
+            if (n <= 0) {
+                return false;
+            }
+            _end += n;
+            return true;
+        } catch (IOException excp) {
+            throw error("could not read %s", _name);
+        }
+    }
+
+    /** Character set of the file. */
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /** Name of the file. */
+    private final String _name;
+
+    /** The file. */
+    private final InputStream _in;
+
+    /** Bytes read from the file; those in _start.._end-1 are not yet
+     *  consumed. */
+    private byte[] _buffer = new byte[1 << 16];
+
+    /** Index of the first unconsumed byte in _buffer. */
+    private int _start;
+
+    /** Index past the last byte read into _buffer. */
+    private int _end;
+
+    /** Offset in the file of _buffer[_start]. */
+    private long _offset;
+}
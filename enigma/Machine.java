@@ -1,5 +1,6 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 /** Class that represents a complete enigma machine.
@@ -19,6 +20,9 @@ class Machine {
         _rotors = new Rotor[_numRotors];
         _hasTurned = new boolean[_numRotors];
         _willTurnArr = new boolean[_numRotors];
+        _slowEnd = _numRotors - 1
+            - Math.min(_numRotors - 1, Math.max(1, Math.min(FAST_ROTORS,
+                                                            _pawls)));
     }
 
     /** Return the number of rotor slots I have. */
@@ -42,6 +46,36 @@ class Machine {
         return _alphabet;
     }
 
+    /** Return the collection of all rotors available to me. */
+    Collection<Rotor> allRotors() {
+        return _allRotors;
+    }
+
+    /** Return a new machine with my alphabet, rotor slots and pawls, whose
+     *  available rotors are fresh copies of mine.  Its slots hold the
+     *  copies of my inserted rotors (if any) at my current settings, and
+     *  it shares my plugboard.  The two machines may then be stepped
+     *  independently (e.g., from different threads). */
+    Machine copy() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (Rotor r : _allRotors) {
+            rotors.add(r.copy());
+        }
+        Machine result = new Machine(_alphabet, _numRotors, _pawls, rotors);
+        if (_rotors[_numRotors - 1] != null) {
+            String[] names = new String[_numRotors];
+            for (int i = 0; i < _numRotors; i++) {
+                names[i] = _rotors[i].name();
+            }
+            result.insertRotors(names);
+            for (int i = 1; i < _numRotors; i++) {
+                result._rotors[i].set(_rotors[i].setting());
+            }
+        }
+        result.setPlugboard(_plugboard);
+        return result;
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
@@ -56,6 +90,8 @@ class Machine {
                 }
             }
         }
+        _quietSteps = 0;
+        _slowStale = true;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -65,6 +101,19 @@ class Machine {
         for (int i = 1; i < _rotors.length; i++) {
             _rotors[i].set(setting.charAt(i - 1));
         }
+        _quietSteps = 0;
+        _slowStale = true;
+    }
+
+    /** Set my rotors according to SETTING, which must contain
+     *  numRotors()-1 indices into my alphabet, SETTING[0] being that of
+     *  the leftmost rotor (not counting the reflector). */
+    void setRotors(int[] setting) {
+        for (int i = 1; i < _rotors.length; i++) {
+            _rotors[i].set(setting[i - 1]);
+        }
+        _quietSteps = 0;
+        _slowStale = true;
     }
 
     /** Return the current plugboard's permutation. */
@@ -102,8 +151,82 @@ class Machine {
         return c;
     }
 
-    /** Advance all rotors to their next position. */
+    /** Advance my rotors as for one character, without converting
+     *  anything. */
+    void advance() {
+        advanceRotors();
+    }
+
+    /** Advance my rotors as for N characters, without converting
+     *  anything.  Runs of steps that move only the fast rotor are taken
+     *  at once, so the time taken grows with the number of steps that
+     *  move other rotors rather than with N. */
+    void advance(long n) {
+        Rotor fast = _rotors[_numRotors - 1];
+        while (n > 0) {
+            if (_quietSteps > 0 && fast.rotates()) {
+                int k = (int) Math.min(n, _quietSteps);
+                fast.set((int) ((fast.setting() + (long) k) % fast.size()));
+                _quietSteps -= k;
+                n -= k;
+            } else {
+                advanceRotors();
+                n -= 1;
+            }
+        }
+    }
+
+    /** Fill TABLE, whose length is my alphabet size, with the conversion
+     *  of every index by my plugboard and rotors in their current
+     *  positions, without advancing them. */
+    void composite(int[] table) {
+        for (int c = 0; c < table.length; c += 1) {
+            table[c] = _plugboard.permute(applyRotors(_plugboard.permute(c)));
+        }
+    }
+
+    /** Fill TABLE, whose length is my alphabet size, with the conversion
+     *  of every index by my rotors alone, without the plugboard, in their
+     *  current positions, without advancing them. */
+    void rotorComposite(int[] table) {
+        for (int c = 0; c < table.length; c += 1) {
+            table[c] = applyRotors(c);
+        }
+    }
+
+    /** Advance all rotors to their next position.  While no pawled rotor
+     *  is at a notch, only the fast rotor moves, so for the next
+     *  _quietSteps steps that is all that is done. */
     private void advanceRotors() {
+        if (_quietSteps > 0) {
+            _quietSteps -= 1;
+            _rotors[_numRotors - 1].advance();
+            return;
+        }
+        stepRotors();
+        _quietSteps = quietSteps();
+    }
+
+    /** Return the number of steps, starting with the next, that will
+     *  advance only the fast rotor.  The pawled rotors other than the
+     *  fast one move only when some pawled rotor is at a notch, so if
+     *  none is now, the first step that can do more is the one that
+     *  starts with the fast rotor at its notch. */
+    private int quietSteps() {
+        if (_pawls == 0) {
+            return 0;
+        }
+        for (int i = _numRotors - 2; i >= _numRotors - _pawls; i--) {
+            if (_rotors[i].atNotch()) {
+                return 0;
+            }
+        }
+        return _rotors[_numRotors - 1].stepsToNotch();
+    }
+
+    /** Advance all rotors to their next position, checking every
+     *  pawled rotor for a notch. */
+    private void stepRotors() {
         for (int i = _numRotors - 1; i >= _numRotors - _pawls; i--) {
             if (_rotors[i].atNotch()) {
                 _willTurnArr[i] = true;
@@ -118,6 +241,9 @@ class Machine {
                 if (_rotors[i - 1].rotates() && !_hasTurned[i - 1]) {
                     _rotors[i - 1].advance();
                     _hasTurned[i - 1] = true;
+                    if (i - 1 <= _slowEnd) {
+                        _slowStale = true;
+                    }
                     if ((i != (_numRotors - 1)) && !_hasTurned[i]) {
                         _rotors[i].advance();
                         _hasTurned[i] = true;
@@ -136,15 +262,54 @@ class Machine {
      *  index in the range 0..alphabet size - 1). */
     private int applyRotors(int c) {
         int temp = c;
-        for (int i = _numRotors - 1; i >= 0; i--) {
+        for (int i = _numRotors - 1; i > _slowEnd; i--) {
             temp = _rotors[i].convertForward(temp);
         }
-        for (int i = 1; i < _numRotors; i++) {
+        temp = slowTable()[temp];
+        for (int i = _slowEnd + 1; i < _numRotors; i++) {
             temp = _rotors[i].convertBackward(temp);
         }
         return temp;
     }
 
+    /** Return the composite of my slow rotors (the reflector and those in
+     *  slots up to _slowEnd) in their current positions: element C is
+     *  the result of passing C through them to the reflector and back.
+     *  It is rebuilt only when one of those rotors has been stepped,
+     *  set or inserted since it was last built, which happens only once
+     *  in many characters, since all but the rightmost rotors step
+     *  rarely, and it takes only space proportional to the alphabet
+     *  size. */
+    private int[] slowTable() {
+        if (_slowStale) {
+            if (_slowTable == null) {
+                _slowTable = new int[_alphabet.size()];
+            }
+            _slowStale = false;
+            for (int c = 0; c < _slowTable.length; c += 1) {
+                int temp = c;
+                for (int i = _slowEnd; i >= 0; i--) {
+                    temp = _rotors[i].convertForward(temp);
+                }
+                for (int i = 1; i <= _slowEnd; i++) {
+                    temp = _rotors[i].convertBackward(temp);
+                }
+                _slowTable[c] = temp;
+            }
+        }
+        return _slowTable;
+    }
+
+    /** Convert the first N indices of MSG, storing the results in the
+     *  first N elements of RESULT (which may be MSG itself) and updating
+     *  the state of the rotors accordingly.  Allocates nothing, so it
+     *  is suitable for repeated trial decryptions. */
+    void convert(int[] msg, int[] result, int n) {
+        for (int i = 0; i < n; i += 1) {
+            result[i] = convert(msg[i]);
+        }
+    }
+
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
@@ -180,4 +345,25 @@ class Machine {
 
     /** Checks if the rotor will turn. */
     private boolean[] _willTurnArr;
+
+    /** Number of coming steps that advance only the fast rotor; 0 if
+     *  unknown. Reset whenever rotors are inserted or set. */
+    private int _quietSteps;
+
+    /** Number of rightmost rotors whose hops are not cached, when there
+     *  are that many pawls: the rotor next to them steps only once in
+     *  alphabet-size-squared characters, so rebuilding the composite of
+     *  the rotors to its left costs little per character. */
+    private static final int FAST_ROTORS = 2;
+
+    /** Slot of the rightmost rotor in the cached slow composite. */
+    private final int _slowEnd;
+
+    /** Cached composite of the slow rotors (see slowTable), or null if
+     *  not yet built. */
+    private int[] _slowTable;
+
+    /** True iff _slowTable must be rebuilt before use: set whenever a
+     *  rotor in a slot up to _slowEnd is stepped, set or inserted. */
+    private boolean _slowStale = true;
 }
@@ -83,4 +83,72 @@ public class MachineTest {
               mach.convert("FROMHISSHOULDERHIAWATHA"));
         mach.setPlugboard(new Permutation("", AZ));
     }
+
+    @Test
+    public void testConvertBuffer() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        int[] buf = new int[msg.length()];
+        for (int i = 0; i < buf.length; i += 1) {
+            buf[i] = AZ.toInt(msg.charAt(i));
+        }
+        mach.convert(buf, buf, buf.length);
+        String expected = "QVPQSOKOILPUBKJZPISFXDW";
+        for (int i = 0; i < buf.length; i += 1) {
+            assertEquals(expected.charAt(i), AZ.toChar(buf[i]));
+        }
+    }
+
+    @Test
+    public void testCopy() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        Machine copy = mach.copy();
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     copy.convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     mach.convert("FROMHISSHOULDERHIAWATHA"));
+        for (int i = 0; i < mach.numRotors(); i += 1) {
+            assertNotSame(mach.getRotor(i), copy.getRotor(i));
+            assertEquals(mach.getRotor(i).name(), copy.getRotor(i).name());
+        }
+    }
+
+    @Test
+    public void testAdvanceMany() {
+        for (long n : new long[] { 0, 1, 25, 26, 677, 17576, 123457 }) {
+            Machine bulk = mach1().copy(), single = mach1().copy();
+            bulk.setPlugboard(new Permutation("(HQ) (EX)", AZ));
+            single.setPlugboard(new Permutation("(HQ) (EX)", AZ));
+            bulk.advance(n);
+            for (long i = 0; i < n; i += 1) {
+                single.advance();
+            }
+            for (int k = 1; k < 5; k += 1) {
+                assertEquals(single.getRotor(k).setting(),
+                             bulk.getRotor(k).setting());
+            }
+            assertEquals(single.convert("FROMHISSHOULDERHIAWATHA"),
+                         bulk.convert("FROMHISSHOULDERHIAWATHA"));
+        }
+    }
+
+    @Test
+    public void testSlowRotorsChanged() {
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        Permutation plug = new Permutation("(HQ) (EX)", AZ);
+        Machine mach = mach1().copy();
+        mach.setPlugboard(plug);
+        mach.convert(msg);
+        mach.setRotors("FRMF");
+        Machine fresh = mach1().copy();
+        fresh.setRotors("FRMF");
+        fresh.setPlugboard(plug);
+        assertEquals(fresh.convert(msg), mach.convert(msg));
+
+        mach.insertRotors(new String[] { "B", "Beta", "I", "IV", "III" });
+        fresh = mach.copy();
+        assertEquals(fresh.convert(msg), mach.convert(msg));
+    }
 }
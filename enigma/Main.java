@@ -1,13 +1,22 @@
 package enigma;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
 
 import ucb.util.CommandArgs;
 
@@ -25,19 +34,92 @@ public final class Main {
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
-     *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  standard output.  An INPUT whose name ends in ".gz" is
+     *  decompressed as it is read, and an OUTPUT whose name ends in ".gz"
+     *  is compressed in blocks on several threads (see
+     *  ParallelGzipOutputStream).  With --keystream=N, the conversions of
+     *  the first N characters after each settings line are taken from a
+     *  keystream shared by all identical settings lines.  With
+     *  --checkpoint=FILE (which requires both INPUT and OUTPUT, neither
+     *  gzipped), the state of the run is saved in FILE after every
+     *  --every=BYTES bytes of input (default 64 MiB), and --resume
+     *  continues from the state in FILE, if it exists, rather than
+     *  starting afresh.  FILE is deleted when the run
+     *  completes.  With --interactive (and no INPUT or OUTPUT), the
+     *  standard input is converted character by character as it is
+     *  typed (see Interactive).  With --engine=STRATEGY, messages are
+     *  converted with that strategy (direct, compiled or tables; see
+     *  EngineSelector) or, with --engine=auto, a strategy chosen for each
+     *  settings line after calibrating at startup, logging the choices
+     *  on the standard error.  With --startup-time, the time from the
+     *  start of the JVM to the first output is reported on the standard
+     *  error.  With --create-startup-archive=ARCHIVE (and only CONFIG),
+     *  a class-data archive that speeds up the start of later runs is
+     *  written to ARCHIVE after a training run with CONFIG (see
+     *  StartupArchive).  Exits normally if there are no errors in the
+     *  input; otherwise with code 1. */
     public static void main(String... args) {
         try {
             CommandArgs options =
-                new CommandArgs("--verbose --=(.*){1,3}", args);
+                new CommandArgs("--verbose --keystream=(\\d+){0,1} "
+                                + "--checkpoint=(.+){0,1} --every=(\\d+){0,1} "
+                                + "--resume --interactive "
+                                + "--engine=(auto|direct|compiled|tables)"
+                                + "{0,1} --startup-time "
+                                + "--create-startup-archive=(.+){0,1} "
+                                + "--=(.*){1,3}", args);
             if (!options.ok()) {
                 throw error("Usage: java enigma.Main [--verbose] "
-                            + "[INPUT [OUTPUT]]");
+                            + "[--keystream=N] [--checkpoint=FILE "
+                            + "[--every=BYTES] [--resume]] [--engine=auto|"
+                            + "direct|compiled|tables] [--startup-time] "
+                            + "CONFIG [INPUT [OUTPUT]]%n"
+                            + "       java enigma.Main --interactive "
+                            + "CONFIG%n"
+                            + "       java enigma.Main "
+                            + "--create-startup-archive=ARCHIVE CONFIG");
+            }
+            if (options.contains("--create-startup-archive")) {
+                if (options.get("--").size() != 1) {
+                    throw error("a startup archive is trained with a "
+                                + "configuration alone");
+                }
+                StartupArchive.create(
+                    options.get("--create-startup-archive").get(0),
+                    options.get("--").get(0));
+                return;
             }
 
             _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            Main main;
+            if (options.contains("--interactive")) {
+                if (options.get("--").size() != 1) {
+                    throw error("interactive mode uses the standard input "
+                                + "and output");
+                }
+                main = new Main(options.get("--"));
+                Interactive.run(main, main.readConfig());
+                main.close();
+                return;
+            }
+            if (options.contains("--checkpoint")) {
+                long every = longOption(options, "--every",
+                                        DEFAULT_CHECKPOINT_BYTES);
+                main = new Main(options.get("--"),
+                                options.get("--checkpoint").get(0), every,
+                                options.contains("--resume"));
+            } else {
+                main = new Main(options.get("--"));
+            }
+            if (options.contains("--keystream")) {
+                main.useKeystreams(intOption(options, "--keystream", 0));
+            }
+            if (options.contains("--engine")) {
+                main.useEngine(options.get("--engine").get(0));
+            }
+            main._reportStartup = options.contains("--startup-time");
+            main.process();
+            main.close();
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -45,36 +127,149 @@ public final class Main {
         System.exit(1);
     }
 
+    /** Return the value of the numeric option KEY in OPTIONS, or DFLT if
+     *  it is absent. */
+    static int intOption(CommandArgs options, String key, int dflt) {
+        long value = longOption(options, key, dflt);
+        if (value != (int) value) {
+            throw error("bad value for %s", key);
+        }
+        return (int) value;
+    }
+
+    /** Return the value of the numeric option KEY in OPTIONS, or DFLT if
+     *  it is absent. */
+    static long longOption(CommandArgs options, String key, long dflt) {
+        if (!options.contains(key)) {
+            return dflt;
+        }
+        try {
+            return Long.parseLong(options.get(key).get(0));
+        } catch (NumberFormatException excp) {
+            throw error("bad value for %s", key);
+        }
+    }
+
     /** Open the necessary files for non-option arguments ARGS (see comment
       *  on main). */
     Main(List<String> args) {
         _config = getInput(args.get(0));
+        _configName = new File(args.get(0)).getAbsolutePath();
 
         if (args.size() > 1) {
             _input = getInput(args.get(1));
+            _inputName = new File(args.get(1)).getAbsolutePath();
+            _inputIsFile = true;
         } else {
             _input = new Scanner(System.in);
         }
 
         if (args.size() > 2) {
             _output = getOutput(args.get(2));
+            _outputName = new File(args.get(2)).getAbsolutePath();
         } else {
             _output = System.out;
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
+    /** Open the files named INPUT and OUTPUT for messages to be
+     *  converted with the configuration already read by PARSED (see
+     *  readConfig), so that one configuration may serve many inputs. */
+    Main(Main parsed, String input, String output) {
+        _configName = parsed._configName;
+        _alphabet = parsed._alphabet;
+        _rotorTypes = parsed._rotorTypes;
+        _rotorNames = parsed._rotorNames;
+        _allRotorTypes = parsed._allRotorTypes;
+        _pawls = parsed._pawls;
+        _keystreamLength = parsed._keystreamLength;
+        _engine = parsed._engine;
+        _input = getInput(input);
+        _inputName = new File(input).getAbsolutePath();
+        _inputIsFile = true;
+        _output = getOutput(output);
+        _outputName = new File(output).getAbsolutePath();
+    }
+
+    /** Open the files for the non-option arguments ARGS, which must name
+     *  a configuration, input and output, saving checkpoints in the file
+     *  CHECKPOINT after about every EVERY bytes of input.  If RESUME and
+     *  CHECKPOINT exists, continue from the state it records: the input
+     *  is read from its recorded offset, and the output is truncated to
+     *  its recorded length and appended to. */
+    Main(List<String> args, String checkpoint, long every, boolean resume) {
+        if (args.size() != 3) {
+            throw error("checkpoints need named input and output files");
+        }
+        if (compressed(args.get(1)) || compressed(args.get(2))) {
+            throw error("checkpoints need uncompressed input and output "
+                        + "files");
+        }
+        _config = getInput(args.get(0));
+        _configName = new File(args.get(0)).getAbsolutePath();
+        _inputName = new File(args.get(1)).getAbsolutePath();
+        _outputName = new File(args.get(2)).getAbsolutePath();
+        _checkpointName = checkpoint;
+        _checkpointEvery = Math.max(1, every);
+        long inputOffset = 0, outputOffset = 0;
+        if (resume && new File(checkpoint).exists()) {
+            _resumed = Checkpoint.read(checkpoint);
+            if (!_resumed.config().equals(_configName)
+                || !_resumed.input().equals(_inputName)
+                || !_resumed.output().equals(_outputName)) {
+                throw error("checkpoint %s is for a different run",
+                            checkpoint);
+            }
+            inputOffset = _resumed.inputOffset();
+            outputOffset = _resumed.outputOffset();
+        }
+        _lines = new LineReader(_inputName, inputOffset);
+        _inputIsFile = true;
+        _nextCheckpoint = inputOffset + _checkpointEvery;
+        try {
+            _outputChannel =
+                FileChannel.open(Paths.get(_outputName),
+                                 StandardOpenOption.CREATE,
+                                 StandardOpenOption.WRITE);
+            if (_outputChannel.size() < outputOffset) {
+                throw error("%s is shorter than its checkpoint", _outputName);
+            }
+            _outputChannel.truncate(outputOffset);
+            _outputChannel.position(outputOffset);
+        } catch (IOException excp) {
+            throw error("could not open %s", _outputName);
+        }
+        _output = new PrintStream(new BufferedOutputStream(
+            Channels.newOutputStream(_outputChannel), 1 << 16));
+    }
+
+    /** Return true iff the file named NAME is gzipped. */
+    private static boolean compressed(String name) {
+        return name.endsWith(".gz");
+    }
+
+    /** Return a Scanner reading from the file named NAME, decompressing
+     *  it as it goes if it is gzipped. */
     private Scanner getInput(String name) {
         try {
+            if (compressed(name)) {
+                return new Scanner(new GZIPInputStream(
+                    new FileInputStream(name), GZIP_BUFFER));
+            }
             return new Scanner(new File(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
+    /** Return a PrintStream writing to the file named NAME, compressing
+     *  what is written if NAME is that of a gzipped file. */
     private PrintStream getOutput(String name) {
         try {
+            if (compressed(name)) {
+                return new PrintStream(new ParallelGzipOutputStream(
+                    new FileOutputStream(name)));
+            }
             return new PrintStream(new File(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
@@ -84,32 +279,227 @@ public final class Main {
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
-    private void process() {
-        Machine mach = readConfig();
-        String nextLine = _input.nextLine();
-        if (!nextLine.contains("*")) {
-            throw error("wrong configuration");
-        }
-        if (nextLine.startsWith("*")) {
-            setUp(mach, nextLine);
+    void process() {
+        process(readConfig());
+    }
+
+    /** Apply MACH, a machine of my configuration, to the messages in
+     *  _input, sending the results to _output. */
+    void process(Machine mach) {
+        if (_engine != null && !verbose()) {
+            _selector = new EngineSelector(EngineSelector.parse(_engine),
+                                           System.err);
+            if (_engine.equals("auto")) {
+                _selector.calibrate(mach);
+            }
+        }
+        if (_resumed != null) {
+            restore(mach, _resumed);
         } else {
-            nextLine = nextLine.replaceAll("\\s", "");
-            printMessageLine(mach.convert(nextLine));
+            String nextLine = nextLine();
+            if (!nextLine.contains("*")) {
+                throw error("wrong configuration");
+            }
+            processLine(mach, nextLine);
         }
-        while (_input.hasNextLine()) {
-            nextLine = _input.nextLine();
-            if (nextLine.startsWith("*")) {
-                setUp(mach, nextLine);
-            } else {
-                nextLine = nextLine.replaceAll("\\s", "");
-                printMessageLine(mach.convert(nextLine));
+        while (hasNextLine()) {
+            processLine(mach, nextLine());
+            if (_lines != null && _lines.offset() >= _nextCheckpoint) {
+                checkpoint(mach);
+            }
+        }
+        if (_selector != null) {
+            _selector.finish();
+        }
+        if (_checkpointName != null) {
+            flushOutput();
+            try {
+                Files.deleteIfExists(Paths.get(_checkpointName));
+            } catch (IOException excp) {
+                throw error("could not delete %s", _checkpointName);
+            }
+        }
+    }
+
+    /** Apply MACH to LINE: set it up if LINE is a settings line, and
+     *  otherwise convert LINE and print the result. */
+    private void processLine(Machine mach, String line) {
+        if (line.startsWith("*")) {
+            setUp(mach, line);
+            startKeystream(mach, line);
+            startSegment(mach);
+            _settings = line;
+        } else {
+            line = line.replaceAll("\\s", "");
+            printMessageLine(convert(mach, line));
+        }
+    }
+
+    /** Return true iff there is another input line.  Reading errors,
+     *  which Scanner reports only as the end of the input (e.g., a
+     *  truncated gzipped file), are errors here. */
+    private boolean hasNextLine() {
+        if (_lines != null) {
+            return _lines.hasNextLine();
+        } else if (_input.hasNextLine()) {
+            return true;
+        } else if (_input.ioException() != null) {
+            throw error("could not read %s: %s",
+                        _inputName == null ? "the standard input"
+                        : _inputName, _input.ioException().getMessage());
+        }
+        return false;
+    }
+
+    /** Return the next input line. */
+    private String nextLine() {
+        if (_lines == null) {
+            hasNextLine();
+        }
+        return _lines != null ? _lines.nextLine() : _input.nextLine();
+    }
+
+    /** Save the state of the run, with MACH as the machine, in
+     *  _checkpointName, once all output so far is safely written. */
+    private void checkpoint(Machine mach) {
+        flushOutput();
+        int[] positions = new int[0];
+        if (!_settings.isEmpty()) {
+            Machine state = mach;
+            if (_keystream != null && _keystreamPosn > 0) {
+                state = mach.copy();
+                for (int i = 0; i < _keystreamPosn; i += 1) {
+                    state.advance();
+                }
             }
+            positions = new int[state.numRotors() - 1];
+            for (int i = 0; i < positions.length; i += 1) {
+                positions[i] = state.getRotor(i + 1).setting();
+            }
+        }
+        try {
+            new Checkpoint(_configName, _inputName, _outputName,
+                           _lines.offset(), _outputChannel.position(),
+                           _settings, positions).write(_checkpointName);
+        } catch (IOException excp) {
+            throw error("could not write %s", _outputName);
+        }
+        _nextCheckpoint = _lines.offset() + _checkpointEvery;
+    }
+
+    /** Put MACH in the state recorded by CHECKPOINT. */
+    private void restore(Machine mach, Checkpoint checkpoint) {
+        _settings = checkpoint.settings();
+        if (!_settings.isEmpty()) {
+            setUp(mach, _settings);
+            mach.setRotors(checkpoint.positions());
+            startSegment(mach);
+        }
+        _keystream = null;
+    }
+
+    /** Write all pending output to the output file and its device. */
+    private void flushOutput() {
+        _output.flush();
+        if (_output.checkError()) {
+            throw error("could not write %s", _outputName);
+        }
+        try {
+            _outputChannel.force(false);
+        } catch (IOException excp) {
+            throw error("could not write %s", _outputName);
+        }
+    }
+
+    /** Convert the first N characters after each settings line through
+     *  a cached keystream, if N > 0. */
+    void useKeystreams(int n) {
+        _keystreamLength = n;
+    }
+
+    /** If keystreams are in use, fetch the one for M, which has just been
+     *  set up according to SETTINGS. */
+    private void startKeystream(Machine M, String settings) {
+        _keystream = null;
+        if (_keystreamLength > 0 && !verbose()) {
+            _keystream = KeystreamCache.shared()
+                .get(_configName + "\n" + settings, M, _keystreamLength);
+            _keystreamPosn = 0;
+        }
+    }
+
+    /** Convert messages with the strategy named NAME ("auto" for an
+     *  adaptive choice; see EngineSelector), rather than with Machine
+     *  alone. */
+    void useEngine(String name) {
+        EngineSelector.parse(name);
+        _engine = name;
+    }
+
+    /** If an engine selector is in use, start its segment for M, which
+     *  has just been set up. */
+    private void startSegment(Machine M) {
+        if (_selector != null) {
+            _selector.startSegment(M);
+        }
+    }
+
+    /** Return the conversion of MSG by M with my engine selector, if
+     *  any, and otherwise by M itself. */
+    private String convertDirect(Machine M, String msg) {
+        return _selector == null ? M.convert(msg) : _selector.convert(M, msg);
+    }
+
+    /** Return the conversion of MSG by M, taking it from the current
+     *  keystream as long as that lasts. */
+    private String convert(Machine M, String msg) {
+        if (_keystream == null) {
+            return convertDirect(M, msg);
+        }
+        int n = Math.min(msg.length(), _keystream.length() - _keystreamPosn);
+        StringBuilder result = new StringBuilder(msg.length());
+        for (int i = 0; i < n; i += 1) {
+            int c = _alphabet.toInt(msg.charAt(i));
+            result.append(_alphabet.toChar(
+                _keystream.convert(_keystreamPosn + i, c)));
+        }
+        _keystreamPosn += n;
+        if (n < msg.length()) {
+            for (int i = 0; i < _keystream.length(); i += 1) {
+                M.advance();
+            }
+            _keystream = null;
+            result.append(convertDirect(M, msg.substring(n)));
+        }
+        return result.toString();
+    }
+
+    /** Close the files I opened, flushing any pending output, and
+     *  report an error if any of the output could not be written. */
+    void close() {
+        if (_config != null) {
+            _config.close();
+        }
+        if (_lines != null) {
+            _lines.close();
+        } else if (_inputIsFile) {
+            _input.close();
+        }
+        if (_output == System.out) {
+            _output.flush();
+        } else {
+            _output.close();
+        }
+        if (_output.checkError()) {
+            throw error("could not write %s",
+                        _outputName == null ? "the standard output"
+                        : _outputName);
         }
     }
 
     /** Return an Enigma machine configured from the contents of configuration
      *  file _config. */
-    private Machine readConfig() {
+    Machine readConfig() {
         try {
             String alphabet = _config.nextLine();
             _alphabetArr = new String[alphabet.length()];
@@ -179,7 +569,7 @@ public final class Main {
 
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
+    void setUp(Machine M, String settings) {
         String[] tempSet = settings.split(" ");
         if (!_rotorTypes.contains(tempSet[1])) {
             throw error("Reflector in wrong place");
@@ -246,6 +636,10 @@ public final class Main {
     /** Print MSG in groups of five (except that the last group may
      *  have fewer letters). */
     private void printMessageLine(String msg) {
+        if (_reportStartup) {
+            _reportStartup = false;
+            StartupArchive.reportStartup();
+        }
         for (int i = 0; i < msg.length(); i++) {
             if (i % 5 == 0 && i != 0) {
                 _output.print(" ");
@@ -261,12 +655,69 @@ public final class Main {
     /** Source of input messages. */
     private Scanner _input;
 
+    /** True iff _input reads a named file rather than the standard
+     *  input. */
+    private boolean _inputIsFile;
+
     /** Source of machine configuration. */
     private Scanner _config;
 
     /** File for encoded/decoded messages. */
     private PrintStream _output;
 
+    /** Absolute name of the configuration file. */
+    private String _configName;
+
+    /** Size of the buffer of a gzipped input. */
+    private static final int GZIP_BUFFER = 1 << 16;
+
+    /** Default number of input bytes between checkpoints. */
+    static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    /** Input lines when checkpointing (in place of _input), else null. */
+    private LineReader _lines;
+
+    /** Absolute names of the input and output files, if named. */
+    private String _inputName, _outputName;
+
+    /** Output file when checkpointing. */
+    private FileChannel _outputChannel;
+
+    /** Name of the checkpoint file, or null if not checkpointing. */
+    private String _checkpointName;
+
+    /** Input bytes between checkpoints. */
+    private long _checkpointEvery;
+
+    /** Input offset after which to take the next checkpoint. */
+    private long _nextCheckpoint;
+
+    /** Checkpoint to resume from, or null. */
+    private Checkpoint _resumed;
+
+    /** The settings line in force, or "" if none yet. */
+    private String _settings = "";
+
+    /** Number of characters covered by keystreams, or 0 if they are not
+     *  used. */
+    private int _keystreamLength;
+
+    /** Keystream for the current settings line, or null once exhausted
+     *  (or if not in use). */
+    private Keystream _keystream;
+
+    /** Number of characters of _keystream used so far. */
+    private int _keystreamPosn;
+
+    /** Name of the conversion strategy, or null for Machine alone. */
+    private String _engine;
+
+    /** Chooses conversion strategies, or null. */
+    private EngineSelector _selector;
+
+    /** True iff the startup time is still to be reported. */
+    private boolean _reportStartup;
+
     /** True if --verbose specified. */
     private static boolean _verbose;
 
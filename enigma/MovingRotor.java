@@ -13,21 +13,45 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        int size = perm.size();
+        _notchBits = new long[(size + Long.SIZE - 1) / Long.SIZE];
+        for (int i = 0; i < notches.length(); i++) {
+            int posn = alphabet().toInt(notches.charAt(i));
+            _notchBits[posn / Long.SIZE] |= 1L << posn;
+        }
+        _toNotch = new int[size];
+        int next = Integer.MAX_VALUE;
+        for (int k = 2 * size - 1; k >= 0; k -= 1) {
+            int posn = k % size;
+            if (isNotch(posn)) {
+                next = k;
+            }
+            if (k < size) {
+                _toNotch[k] = next == Integer.MAX_VALUE
+                    ? Integer.MAX_VALUE : next - k;
+            }
+        }
     }
 
     @Override
     boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i++) {
-            if (setting() == alphabet().toInt(_notches.charAt(i))) {
-                return true;
-            }
-        }
-        return false;
+        return isNotch(setting());
+    }
+
+    @Override
+    int stepsToNotch() {
+        return _toNotch[setting()];
     }
 
     @Override
     void advance() {
-        set((setting() + 1) % alphabet().size());
+        int posn = setting() + 1;
+        set(posn == _toNotch.length ? 0 : posn);
+    }
+
+    /** Return true iff POSN is one of my notch positions. */
+    private boolean isNotch(int posn) {
+        return (_notchBits[posn / Long.SIZE] & (1L << posn)) != 0;
     }
 
     @Override
@@ -40,6 +64,20 @@ class MovingRotor extends Rotor {
         return _notches;
     }
 
+    @Override
+    Rotor copy() {
+        return new MovingRotor(name(), permutation(), _notches);
+    }
+
     /** The notches of the rotors. */
     private String _notches;
+
+    /** Bit P is set iff position P is a notch.  A notch character
+     *  missing from the alphabet counts as position 0, as toInt
+     *  returns 0 for it. */
+    private final long[] _notchBits;
+
+    /** Number of advances from each position to the next notch
+     *  (0 at a notch), or Integer.MAX_VALUE if I have none. */
+    private final int[] _toNotch;
 }
@@ -95,4 +95,28 @@ public class MovingRotorTest {
                 rotor.convertBackward(alpha.indexOf('S')));
     }
 
+    @Test
+    public void checkNotches() {
+        setRotor("VI", NAVALA, "ZM");
+        rotor.set(alpha.indexOf('K'));
+        assertFalse(rotor.atNotch());
+        assertEquals(2, rotor.stepsToNotch());
+        rotor.advance();
+        rotor.advance();
+        assertTrue(rotor.atNotch());
+        assertEquals(0, rotor.stepsToNotch());
+        rotor.advance();
+        assertEquals(12, rotor.stepsToNotch());
+        rotor.set(25);
+        assertTrue(rotor.atNotch());
+        rotor.advance();
+        assertEquals(0, rotor.setting());
+        assertEquals(12, rotor.stepsToNotch());
+        setRotor("I", NAVALA, "");
+        assertEquals(Integer.MAX_VALUE, rotor.stepsToNotch());
+        setRotor("I", NAVALA, "*");
+        assertTrue(rotor.atNotch());
+        rotor.set(1);
+        assertEquals(25, rotor.stepsToNotch());
+    }
 }
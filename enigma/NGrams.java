@@ -0,0 +1,120 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static enigma.EnigmaException.*;
+
+/** A table of log-probabilities of the N-character sequences of an
+ *  alphabet, used to score candidate decryptions.  The table is a single
+ *  flat float array indexed by the N-gram read as a base-size number, so
+ *  scoring a text touches no objects.
+ *  @author Sharona Yang
+ */
+class NGrams {
+
+    /** The largest number of table entries I will allocate. */
+    static final int MAX_ENTRIES = 1 << 24;
+
+    /** A table of N-grams over ALPHABET counted in the text TRAINING.
+     *  Characters of TRAINING not in ALPHABET (after also trying their
+     *  upper-case forms) separate words and are otherwise ignored. */
+    NGrams(Alphabet alphabet, int n, String training) {
+        long entries = 1;
+        for (int i = 0; i < n; i += 1) {
+            entries *= alphabet.size();
+        }
+        if (n < 1 || entries > MAX_ENTRIES) {
+            throw error("%d-grams over %d characters are too many to score",
+                        n, alphabet.size());
+        }
+        _alphabet = alphabet;
+        _n = n;
+        _logProbs = new float[(int) entries];
+
+        int[] counts = new int[_logProbs.length];
+        long total = 0;
+        int run = 0, index = 0;
+        for (int i = 0; i < training.length(); i += 1) {
+            char c = training.charAt(i);
+            if (!alphabet.contains(c)) {
+                c = Character.toUpperCase(c);
+            }
+            if (!alphabet.contains(c)) {
+                run = 0;
+                continue;
+            }
+            index = (int) (((long) index * alphabet.size()
+                             + alphabet.toInt(c)) % _logProbs.length);
+            run += 1;
+            if (run >= n) {
+                counts[index] += 1;
+                total += 1;
+            }
+        }
+        if (total == 0) {
+            throw error("training text contains no %d-grams", n);
+        }
+        float floor = (float) Math.log10(0.01 / total);
+        for (int i = 0; i < counts.length; i += 1) {
+            _logProbs[i] = counts[i] == 0 ? floor
+                : (float) Math.log10((double) counts[i] / total);
+        }
+    }
+
+    /** Return a table of the longest N-grams over ALPHABET of which there
+     *  are at most MAX_ENTRIES (but at least bigrams), counted in the
+     *  contents of the file named NAME. */
+    static NGrams read(Alphabet alphabet, String name) {
+        String text;
+        try {
+            text = new String(Files.readAllBytes(Paths.get(name)),
+                              StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+        int n = 2;
+        while (n < 4 && Math.pow(alphabet.size(), n + 1) <= MAX_ENTRIES) {
+            n += 1;
+        }
+        return new NGrams(alphabet, n, text);
+    }
+
+    /** Return my N. */
+    int n() {
+        return _n;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the total log-probability of the N-grams of the first LEN
+     *  indices of TEXT.  Higher is more language-like. */
+    double score(int[] text, int len) {
+        int size = _alphabet.size();
+        int index = 0;
+        double result = 0.0;
+        for (int i = 0; i < len; i += 1) {
+            index = (int) (((long) index * size + text[i])
+                           % _logProbs.length);
+            if (i >= _n - 1) {
+                result += _logProbs[index];
+            }
+        }
+        return result;
+    }
+
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Length of my N-grams. */
+    private final int _n;
+
+    /** _logProbs[K] is the log10 probability of the N-gram whose base-size
+     *  digits are the indices of its characters. */
+    private final float[] _logProbs;
+}
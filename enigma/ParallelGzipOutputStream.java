@@ -0,0 +1,172 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/** An output stream that gzips what is written to it in blocks
+ *  compressed in parallel, in the manner of pigz.  Each block becomes a
+ *  complete gzip member, and the members are written in order; gzip
+ *  readers (including gunzip and GZIPInputStream) read a concatenation
+ *  of members as one stream.  Blocks are compressed independently, so
+ *  the output is slightly larger than that of a single member, but
+ *  compression is spread over a pool of threads rather than done on
+ *  the one thread producing the data.  At most about twice as many
+ *  blocks as threads are held at once, and their buffers are reused.
+ *  Flushing ends the current block early, so it is best done rarely.
+ *  @author Sharona Yang
+ */
+class ParallelGzipOutputStream extends OutputStream {
+
+    /** A stream writing to OUT, compressing blocks of BLOCKSIZE bytes on
+     *  THREADS threads. */
+    ParallelGzipOutputStream(OutputStream out, int threads, int blockSize) {
+        _out = out;
+        _threads = Math.max(1, threads);
+        _blockSize = Math.max(1, blockSize);
+        _pool = Executors.newFixedThreadPool(_threads, task -> {
+            Thread thread = new Thread(task, "gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _block = new byte[_blockSize];
+    }
+
+    /** A stream writing to OUT, compressing blocks of the default size on
+     *  as many threads as there are processors. */
+    ParallelGzipOutputStream(OutputStream out) {
+        this(out, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        _block[_length++] = (byte) b;
+        if (_length == _blockSize) {
+            submit();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, _blockSize - _length);
+            System.arraycopy(b, off, _block, _length, n);
+            _length += n;
+            off += n;
+            len -= n;
+            if (_length == _blockSize) {
+                submit();
+            }
+        }
+    }
+
+    /** Compress whatever has been written, write it out and flush the
+     *  underlying stream. */
+    @Override
+    public void flush() throws IOException {
+        if (_length > 0) {
+            submit();
+        }
+        drain(0);
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        try {
+            flush();
+        } finally {
+            _pool.shutdownNow();
+            _out.close();
+        }
+    }
+
+    /** Start compressing the current block, and then write out finished
+     *  members until no more than twice _threads are pending. */
+    private void submit() throws IOException {
+        byte[] block = _block;
+        int length = _length;
+        _pending.add(_pool.submit(() -> compress(block, length)));
+        _blocks.add(block);
+        _block = _free.isEmpty() ? new byte[_blockSize] : _free.pop();
+        _length = 0;
+        drain(2 * _threads);
+    }
+
+    /** Write out members, in order, until at most LIMIT are pending. */
+    private void drain(int limit) throws IOException {
+        while (_pending.size() > limit) {
+            try {
+                _pending.remove().get().writeTo(_out);
+            } catch (InterruptedException excp) {
+                throw new IOException("interrupted while compressing");
+            } catch (ExecutionException excp) {
+                throw new IOException("compression failed",
+                                      excp.getCause());
+            }
+            _free.push(_blocks.remove());
+        }
+    }
+
+    /** Return the first LENGTH bytes of BLOCK as a gzip member. */
+    private static ByteArrayOutputStream compress(byte[] block, int length)
+        throws IOException {
+        ByteArrayOutputStream result =
+            new ByteArrayOutputStream(length / 2 + MEMBER_OVERHEAD);
+        try (GZIPOutputStream gzip =
+             new GZIPOutputStream(result, BUFFER_SIZE)) {
+            gzip.write(block, 0, length);
+        }
+        return result;
+    }
+
+    /** Default size of a block in bytes. */
+    static final int DEFAULT_BLOCK = 1 << 20;
+
+    /** Bytes of header and trailer in a gzip member, and then some. */
+    private static final int MEMBER_OVERHEAD = 64;
+
+    /** Size of the compressor's output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Destination of the members. */
+    private final OutputStream _out;
+
+    /** Number of compressing threads. */
+    private final int _threads;
+
+    /** Size of a block in bytes. */
+    private final int _blockSize;
+
+    /** Threads compressing blocks. */
+    private final ExecutorService _pool;
+
+    /** Members being compressed, in order. */
+    private final ArrayDeque<Future<ByteArrayOutputStream>> _pending =
+        new ArrayDeque<>();
+
+    /** Buffers of the blocks being compressed, in the same order. */
+    private final ArrayDeque<byte[]> _blocks = new ArrayDeque<>();
+
+    /** Buffers free for reuse. */
+    private final ArrayDeque<byte[]> _free = new ArrayDeque<>();
+
+    /** The block being filled. */
+    private byte[] _block;
+
+    /** Number of bytes of _block filled. */
+    private int _length;
+
+    /** True once closed. */
+    private boolean _closed;
+}
@@ -0,0 +1,183 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ParallelGzipOutputStream class
+ *  and Main's use of gzipped files.
+ *  @author Sharona Yang
+ */
+public class ParallelGzipOutputStreamTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval configuration used by the acceptance tests. */
+    private static final String CONFIG = "../testing/correct/default.conf";
+
+    /** An acceptance-test input for CONFIG. */
+    private static final String INPUT = "../testing/correct/01-carroll.in";
+
+    /** Return the bytes read from IN, which is then closed. */
+    private byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    /** Return the number of gzip members in DATA, counted by their
+     *  headers (which may overcount, since compressed data may contain
+     *  the same bytes). */
+    private int members(byte[] data) {
+        int n = 0;
+        for (int i = 0; i + 2 < data.length; i += 1) {
+            if ((data[i] & 0xff) == 0x1f && (data[i + 1] & 0xff) == 0x8b
+                && data[i + 2] == 8) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i += 1) {
+            data[i] = (byte) ('A' + (i * 7 + i / 26) % 26);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new ParallelGzipOutputStream(bytes, 3, 1000);
+        int i = 0;
+        for (int len = 1; i + len <= data.length; len = len * 3 % 2047) {
+            out.write(data, i, len);
+            i += len;
+            out.write(data[i]);
+            i += 1;
+            if (i > data.length / 2 && i < data.length / 2 + 2048) {
+                out.flush();
+            }
+        }
+        out.write(data, i, data.length - i);
+        out.close();
+        out.close();
+        byte[] gz = bytes.toByteArray();
+        assertTrue(members(gz) >= data.length / 1000);
+        assertArrayEquals(data, readAll(new GZIPInputStream(
+            new ByteArrayInputStream(gz))));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(bytes, 2, 100).close();
+        assertEquals(0, bytes.size());
+    }
+
+    @Test
+    public void testMain() throws IOException {
+        Path dir = Files.createTempDirectory("enigma-gzip");
+        String gzIn = dir.resolve("in.gz").toString(),
+            gzOut = dir.resolve("out.gz").toString(),
+            plainOut = dir.resolve("out.txt").toString();
+        try (OutputStream out =
+             new GZIPOutputStream(new FileOutputStream(gzIn))) {
+            out.write(readAll(new FileInputStream(INPUT)));
+        }
+        Main plain = new Main(List.of(CONFIG, INPUT, plainOut));
+        plain.process();
+        plain.close();
+        Main gzipped = new Main(List.of(CONFIG, gzIn, gzOut));
+        gzipped.process();
+        gzipped.close();
+        assertArrayEquals(readAll(new FileInputStream(plainOut)),
+                          readAll(new GZIPInputStream(
+                              new FileInputStream(gzOut))));
+    }
+
+    @Test
+    public void testTruncatedInput() throws IOException {
+        Path dir = Files.createTempDirectory("enigma-gzip");
+        Path gzIn = dir.resolve("in.gz");
+        try (OutputStream out =
+             new GZIPOutputStream(new FileOutputStream(gzIn.toString()))) {
+            out.write(readAll(new FileInputStream(INPUT)));
+        }
+        byte[] whole = Files.readAllBytes(gzIn);
+        Files.write(gzIn, Arrays.copyOf(whole, whole.length / 2));
+        Main main = new Main(List.of(CONFIG, gzIn.toString(),
+                                     dir.resolve("out.txt").toString()));
+        try {
+            main.process();
+            fail("truncated input accepted");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().startsWith("could not read"));
+        }
+    }
+
+    @Test
+    public void testFailingSink() {
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        PrintStream out =
+            new PrintStream(new ParallelGzipOutputStream(sink, 2, 100));
+        for (int i = 0; i < 1000; i += 1) {
+            out.print("ABCDEFGHIJ");
+        }
+        out.close();
+        assertTrue(out.checkError());
+    }
+
+    @Test
+    public void testFailingOutput() throws IOException {
+        Path full = Paths.get("/dev/full");
+        if (!Files.exists(full)) {
+            return;
+        }
+        Path dir = Files.createTempDirectory("enigma-gzip");
+        Path gzOut = dir.resolve("out.gz");
+        Files.createSymbolicLink(gzOut, full);
+        Main main = new Main(List.of(CONFIG, INPUT, gzOut.toString()));
+        main.process();
+        try {
+            main.close();
+            fail("failed write not reported");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().startsWith("could not write"));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNoCheckpoints() {
+        new Main(List.of(CONFIG, INPUT, "out.gz"), "checkpoint", 100,
+                 false);
+    }
+}
@@ -1,5 +1,8 @@
 package enigma;
 
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -11,63 +14,58 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace is ignored.  When few characters are moved, only those
+     *  are stored, so that the space used grows with the number of moved
+     *  characters rather than with the size of ALPHABET. */
     Permutation(String cycles, Alphabet alphabet) {
-        int index = 0;
         _alphabet = alphabet;
-        _cycles = new String[_alphabet.size()];
-        char curr;
-        if (cycles == "") {
-            for (int i = 0; i < _cycles.length; i++) {
-                _cycles[i] = Character.toString
-                        (_alphabet.toChar(i));
+        String[] parsed = cycles.replaceAll("\\s", "")
+            .replace("(", "").split("\\)");
+        int moved = 0;
+        for (String cycle : parsed) {
+            if (cycle.length() > 1) {
+                moved += cycle.length();
             }
+        }
+        if (size() >= SPARSE_MIN_SIZE && moved * SPARSE_RATIO <= size()) {
+            _sparseForward = new IntMap(moved);
+            _sparseInverse = new IntMap(moved);
         } else {
-            for (int i = 0; i < cycles.length(); i++) {
-                curr = cycles.charAt(i);
-                if (curr == ' ' || curr == '(') {
-                    continue;
-                } else if (curr == ')') {
-                    index++;
-                    continue;
-                } else {
-                    if (_cycles[index] == null) {
-                        _cycles[index] = Character.toString(curr);
-                    } else {
-                        _cycles[index] += Character.toString(curr);
-                    }
-                }
-            }
-            boolean[] contains = new boolean[_alphabet.size()];
-            boolean btemp = false;
-            char achar;
-            for (int i = 0; i < _alphabet.size(); i++) {
-                achar = _alphabet.toChar(i);
-                for (int j = 0; j < index; j++) {
-                    for (int k = 0; k < _cycles[j].length(); k++) {
-                        if (_cycles[j].charAt(k) == achar) {
-                            btemp = true;
-                        }
-                    }
-                }
-                contains[i] = btemp;
-            }
-
-            for (int i = 0; i < _cycles.length; i++) {
-                if (!contains[i]) {
-                    _cycles[index] = Character.
-                            toString(_alphabet.toChar(i));
-                    index++;
-                }
+            _forward = new int[size()];
+            _inverse = new int[size()];
+            for (int i = 0; i < _forward.length; i += 1) {
+                _forward[i] = _inverse[i] = i;
             }
-
         }
-
+        for (String cycle : parsed) {
+            addCycle(cycle);
+        }
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
     private void addCycle(String cycle) {
+        int len = cycle.length();
+        for (int j = 0; j < len; j += 1) {
+            char from = cycle.charAt(j), to = cycle.charAt((j + 1) % len);
+            if (!_alphabet.contains(from)) {
+                throw error("'%c' is not in the alphabet", from);
+            }
+            int p = _alphabet.toInt(from), c = _alphabet.toInt(to);
+            if (p == c) {
+                continue;
+            }
+            if (permute(p) == p) {
+                _moved += 1;
+            }
+            if (_forward != null) {
+                _forward[p] = c;
+                _inverse[c] = p;
+            } else {
+                _sparseForward.put(p, c);
+                _sparseInverse.put(c, p);
+            }
+        }
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -87,53 +85,19 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char target = _alphabet.toChar(wrap(p));
-        char temp;
-        int num;
-        for (int i = 0; i < _cycles.length; i++) {
-            if (_cycles[i] == null) {
-                break;
-            } else {
-                for (int j = 0; j < _cycles[i].length(); j++) {
-                    if (target == _cycles[i].charAt(j)) {
-                        num = (j + 1) % _cycles[i].length();
-                        temp = _cycles[i].charAt(num);
-                        return _alphabet.toInt(temp);
-                    }
-                }
-            }
+        if (_forward != null) {
+            return _forward[wrap(p)];
         }
-        return p;
+        return _sparseForward.get(wrap(p));
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char target = _alphabet.toChar(wrap(c));
-        char temp;
-        int num;
-        for (int i = 0; i < _cycles.length; i++) {
-            if (_cycles[i] == null) {
-                break;
-            } else {
-                for (int j = 0; j < _cycles[i].length(); j++) {
-                    if (target == _cycles[i].charAt(j)) {
-                        if (j <= 0) {
-                            j += _cycles[i].length();
-                            num = (j - 1) % _cycles[i].length();
-                            temp = _cycles[i].charAt(num);
-                            return _alphabet.toInt(temp);
-                        } else {
-                            num = (j - 1) % _cycles[i].length();
-                            temp = _cycles[i].charAt(num);
-                            return _alphabet.toInt(temp);
-                        }
-                    }
-                }
-            }
-
+        if (_inverse != null) {
+            return _inverse[wrap(c)];
         }
-        return c;
+        return _sparseInverse.get(wrap(c));
     }
 
     /** Return the result of applying this permutation to the index of P
@@ -147,6 +111,45 @@ class Permutation {
         return _alphabet.toChar(invert(_alphabet.toInt(c)));
     }
 
+    /** Return the lengths of my cycles, longest first. */
+    int[] cycleLengths() {
+        int[] lengths = new int[size()];
+        int[] table = _forward;
+        if (table == null) {
+            table = new int[size()];
+            for (int i = 0; i < table.length; i += 1) {
+                table[i] = permute(i);
+            }
+        }
+        int n = cycleLengths(table, new boolean[size()], lengths);
+        return Arrays.copyOf(lengths, n);
+    }
+
+    /** Store in LENGTHS the lengths of the cycles of the permutation
+     *  taking K to TABLE[K], longest first, using SEEN (as long as TABLE)
+     *  as scratch space.  Return the number of cycles. */
+    static int cycleLengths(int[] table, boolean[] seen, int[] lengths) {
+        Arrays.fill(seen, false);
+        int n = 0;
+        for (int k = 0; k < table.length; k += 1) {
+            if (!seen[k]) {
+                int len = 0;
+                for (int j = k; !seen[j]; j = table[j]) {
+                    seen[j] = true;
+                    len += 1;
+                }
+                lengths[n++] = len;
+            }
+        }
+        Arrays.sort(lengths, 0, n);
+        for (int i = 0, j = n - 1; i < j; i += 1, j -= 1) {
+            int t = lengths[i];
+            lengths[i] = lengths[j];
+            lengths[j] = t;
+        }
+        return n;
+    }
+
     /** Return the alphabet used to initialize this Permutation. */
     Alphabet alphabet() {
         return _alphabet;
@@ -155,19 +158,90 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        int len = 0;
-        for (int i = 0; i < _cycles.length; i++) {
-            len = len + _cycles[i].length();
+        return _moved == size();
+    }
+
+    /** Return the number of characters I move. */
+    int moved() {
+        return _moved;
+    }
+
+    /** Return true iff I store only the characters I move. */
+    boolean sparse() {
+        return _forward == null;
+    }
+
+    /** A map from ints to ints taking keys not put in it to themselves,
+     *  held in open-addressed arrays. */
+    private static final class IntMap {
+
+        /** An empty map with room for N keys. */
+        IntMap(int n) {
+            int capacity = Integer.highestOneBit(Math.max(1, 2 * n)) << 1;
+            _keys = new int[capacity];
+            _values = new int[capacity];
+            Arrays.fill(_keys, -1);
+            _mask = capacity - 1;
         }
-        if (len > _alphabet.size()) {
-            return false;
+
+        /** Map KEY, which is non-negative, to VALUE. */
+        void put(int key, int value) {
+            int i = slot(key);
+            _keys[i] = key;
+            _values[i] = value;
         }
-        return true;
+
+        /** Return the value of KEY, or KEY if it has none. */
+        int get(int key) {
+            int i = slot(key);
+            return _keys[i] == key ? _values[i] : key;
+        }
+
+        /** Return the slot holding KEY, or the empty slot where it would
+         *  go. */
+        private int slot(int key) {
+            int i = (key * 0x9e3779b9) >>> 7 & _mask;
+            while (_keys[i] != key && _keys[i] != -1) {
+                i = (i + 1) & _mask;
+            }
+            return i;
+        }
+
+        /** Keys of the map, -1 marking an empty slot. */
+        private final int[] _keys;
+
+        /** _values[I] is the value of _keys[I]. */
+        private final int[] _values;
+
+        /** One less than the number of slots, a power of 2. */
+        private final int _mask;
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** Cycles of the permutation. */
-    private String[] _cycles;
+    /** Smallest alphabet for which moved characters may be stored
+     *  alone. */
+    private static final int SPARSE_MIN_SIZE = 1024;
+
+    /** Moved characters are stored alone when at most one in this many
+     *  characters is moved. */
+    private static final int SPARSE_RATIO = 8;
+
+    /** Number of characters I move. */
+    private int _moved;
+
+    /** _forward[K] is the image of K under this permutation, or null if
+     *  I am sparse. */
+    private int[] _forward;
+
+    /** _inverse[K] is the preimage of K under this permutation, or null
+     *  if I am sparse. */
+    private int[] _inverse;
+
+    /** The images of the characters I move, if I am sparse. */
+    private IntMap _sparseForward;
+
+    /** The preimages of the characters I move, if I am sparse. */
+    private IntMap _sparseInverse;
 }
@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -51,5 +53,52 @@ public class PermutationTest {
         checkPerm("identity", UPPER_STRING, UPPER_STRING);
     }
 
+    @Test
+    public void checkCycleLengths() {
+        perm = new Permutation(NAVALA.get("I"), UPPER);
+        assertArrayEquals(new int[] { 10, 4, 4, 3, 2, 2, 1 },
+                          perm.cycleLengths());
+        perm = new Permutation("", UPPER);
+        assertEquals(26, perm.cycleLengths().length);
+    }
 
+    @Test
+    public void checkDerangement() {
+        assertTrue(new Permutation(NAVALA.get("B"), UPPER).derangement());
+        assertFalse(new Permutation(NAVALA.get("I"), UPPER).derangement());
+        assertFalse(new Permutation("", UPPER).derangement());
+    }
+
+    @Test
+    public void checkSparse() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = 0x100; c < 0x100 + 40000; c += 1) {
+            chars.append(c);
+        }
+        Alphabet big = new Alphabet(chars.toString());
+        String cycles = "(\u0100\u9000\u0101) (\u0200\u0201) "
+            + "(\u9d3f\u0102)";
+        perm = new Permutation(cycles, big);
+        assertTrue(perm.sparse());
+        assertEquals(7, perm.moved());
+        assertEquals(0x8f00, perm.permute(0));
+        assertEquals(1, perm.permute(0x8f00));
+        assertEquals(0, perm.permute(1));
+        assertEquals(1, perm.invert(0));
+        assertEquals(0x101, perm.invert(0x100));
+        assertEquals(39999, perm.invert(2));
+        assertEquals(2, perm.permute(-1));
+        assertEquals(12345, perm.permute(12345));
+        assertEquals(12345, perm.invert(12345));
+        assertEquals('\u0200', perm.permute('\u0201'));
+        assertArrayEquals(new int[] { 3, 2, 2 },
+                          Arrays.copyOf(perm.cycleLengths(), 3));
+
+        Permutation dense =
+            new Permutation(cycles, new Alphabet(chars.substring(0, 3)
+                                                 + "\u9000\u9d3f"
+                                                 + "\u0200\u0201"));
+        assertFalse(dense.sparse());
+        assertEquals(7, dense.moved());
+    }
 }
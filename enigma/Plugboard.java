@@ -0,0 +1,100 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** A plugboard that can be rewired in place: an involution on the indices
+ *  of an alphabet, each index either unplugged (mapping to itself) or
+ *  paired with another.  Unlike a Permutation, it is changed by swapping
+ *  pairs in its table, so trying a new wiring allocates nothing.
+ *  @author Sharona Yang
+ */
+class Plugboard {
+
+    /** An empty plugboard for an alphabet of SIZE characters. */
+    Plugboard(int size) {
+        _table = new int[size];
+        clear();
+    }
+
+    /** A plugboard wired as PERM, which must be an involution. */
+    Plugboard(Permutation perm) {
+        this(perm.size());
+        for (int c = 0; c < _table.length; c += 1) {
+            int d = perm.permute(c);
+            if (perm.permute(d) != c) {
+                throw error("plugboard is not made of pairs");
+            }
+            _table[c] = d;
+            if (d > c) {
+                _pairs += 1;
+            }
+        }
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _table.length;
+    }
+
+    /** Return the index to which C is plugged (C itself if unplugged). */
+    int permute(int c) {
+        return _table[c];
+    }
+
+    /** Return my table: element C is permute(C).  It must not be
+     *  modified. */
+    int[] table() {
+        return _table;
+    }
+
+    /** Return the number of my pairs. */
+    int pairs() {
+        return _pairs;
+    }
+
+    /** Pair A with B, first unplugging both. */
+    void pair(int a, int b) {
+        unpair(a);
+        unpair(b);
+        if (a != b) {
+            _table[a] = b;
+            _table[b] = a;
+            _pairs += 1;
+        }
+    }
+
+    /** Unplug A and its partner, if any. */
+    void unpair(int a) {
+        int b = _table[a];
+        if (b != a) {
+            _table[a] = a;
+            _table[b] = b;
+            _pairs -= 1;
+        }
+    }
+
+    /** Unplug everything. */
+    void clear() {
+        for (int c = 0; c < _table.length; c += 1) {
+            _table[c] = c;
+        }
+        _pairs = 0;
+    }
+
+    /** Wire me as OTHER, which has my size. */
+    void copyFrom(Plugboard other) {
+        System.arraycopy(other._table, 0, _table, 0, _table.length);
+        _pairs = other._pairs;
+    }
+
+    /** Return my wiring as a Permutation over ALPHABET. */
+    Permutation permutation(Alphabet alphabet) {
+        return new Permutation(Cracker.cycles(_table, alphabet), alphabet);
+    }
+
+    /** Image of each index. */
+    private final int[] _table;
+
+    /** Number of pairs. */
+    private int _pairs;
+}
@@ -24,4 +24,9 @@ class Reflector extends FixedRotor {
             throw error("reflector has only one position");
         }
     }
+
+    @Override
+    Rotor copy() {
+        return new Reflector(name(), permutation());
+    }
 }
@@ -83,10 +83,23 @@ class Rotor {
         return false;
     }
 
+    /** Returns the number of times I must advance before atNotch()
+     *  becomes true (0 if it is true now), or Integer.MAX_VALUE if it
+     *  never will. */
+    int stepsToNotch() {
+        return Integer.MAX_VALUE;
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
 
+    /** Return a new rotor of my kind with my name, permutation and
+     *  notches, in its 0 setting. */
+    Rotor copy() {
+        return new Rotor(_name, _permutation);
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
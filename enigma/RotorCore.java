@@ -0,0 +1,69 @@
+package enigma;
+
+/** The conversions performed by a machine's rotors alone, without its
+ *  plugboard, at each of a run of consecutive steps.  With plugboard P,
+ *  the machine converts C at step I to P(R(P(C))), where R is the rotor
+ *  conversion at that step, so once the R are recorded a message may be
+ *  converted under any number of plugboards, by conjugation, without
+ *  stepping or running the rotors again.
+ *  @author Sharona Yang
+ */
+class RotorCore {
+
+    /** The rotor conversions of MACH for the next LENGTH characters, as
+     *  convert would step it from its current position.  Advances MACH
+     *  LENGTH steps; its plugboard is ignored. */
+    RotorCore(Machine mach, int length) {
+        _size = mach.alphabet().size();
+        _length = length;
+        _core = new int[length * _size];
+        int[] table = new int[_size];
+        for (int i = 0; i < length; i += 1) {
+            mach.advance();
+            mach.rotorComposite(table);
+            System.arraycopy(table, 0, _core, i * _size, _size);
+        }
+    }
+
+    /** Return the number of steps I record. */
+    int length() {
+        return _length;
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the conversion of C at step I with plugboard PLUG. */
+    int convert(int i, int c, Plugboard plug) {
+        int[] p = plug.table();
+        return p[_core[i * _size + p[c]]];
+    }
+
+    /** Store in RESULT the conversion of the first N indices of MSG, the
+     *  first at step 0, with plugboard PLUG. */
+    void convert(int[] msg, int[] result, int n, Plugboard plug) {
+        int[] p = plug.table(), core = _core;
+        for (int i = 0, row = 0; i < n; i += 1, row += _size) {
+            result[i] = p[core[row + p[msg[i]]]];
+        }
+    }
+
+    /** Fill TABLE, of alphabet size, with the conversion of every index
+     *  at step I with plugboard PLUG. */
+    void composite(int i, Plugboard plug, int[] table) {
+        for (int c = 0; c < _size; c += 1) {
+            table[c] = convert(i, c, plug);
+        }
+    }
+
+    /** Alphabet size. */
+    private final int _size;
+
+    /** Number of steps. */
+    private final int _length;
+
+    /** Rotor conversion of index C at step I, at I * _size + C. */
+    private final int[] _core;
+}
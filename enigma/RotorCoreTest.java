@@ -0,0 +1,100 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RotorCore and Plugboard classes.
+ *  @author Sharona Yang
+ */
+public class RotorCoreTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with the naval rotors B Beta III IV I at AXLE,
+     *  with no plugboard. */
+    private Machine naval() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"),
+                                                          UPPER)));
+        rotors.add(new MovingRotor("III", new Permutation(NAVALA.get("III"),
+                                                          UPPER), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(NAVALA.get("IV"),
+                                                         UPPER), "J"));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                        UPPER), "Q"));
+        Machine mach = new Machine(UPPER, 5, 3, rotors);
+        mach.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("", UPPER));
+        return mach;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConjugation() {
+        Random random = new Random(39);
+        int[] msg = new int[2000], expected = new int[msg.length],
+            result = new int[msg.length];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = random.nextInt(UPPER.size());
+        }
+        RotorCore core = new RotorCore(naval(), msg.length);
+        assertEquals(msg.length, core.length());
+        Plugboard plug = new Plugboard(UPPER.size());
+        for (int trial = 0; trial < 20; trial += 1) {
+            plug.pair(random.nextInt(26), random.nextInt(26));
+            Machine mach = naval();
+            mach.setPlugboard(plug.permutation(UPPER));
+            mach.convert(msg, expected, msg.length);
+            core.convert(msg, result, msg.length, plug);
+            assertArrayEquals(expected, result);
+            assertEquals(expected[7], core.convert(7, msg[7], plug));
+        }
+        int[] table = new int[UPPER.size()],
+            composite = new int[table.length];
+        Machine mach = naval();
+        mach.setPlugboard(plug.permutation(UPPER));
+        mach.advance();
+        mach.composite(composite);
+        core.composite(0, plug, table);
+        assertArrayEquals(composite, table);
+    }
+
+    @Test
+    public void testPlugboard() {
+        Plugboard plug = new Plugboard(new Permutation("(AB) (CD)", UPPER));
+        assertEquals(2, plug.pairs());
+        plug.pair(1, 2);
+        assertEquals(1, plug.pairs());
+        assertEquals(2, plug.permute(1));
+        assertEquals(0, plug.permute(0));
+        assertEquals(3, plug.permute(3));
+        plug.unpair(2);
+        assertEquals(0, plug.pairs());
+        plug.pair(4, 4);
+        assertEquals(0, plug.pairs());
+        Plugboard other = new Plugboard(UPPER.size());
+        other.pair(0, 25);
+        plug.copyFrom(other);
+        assertEquals("(AZ)", Cracker.cycles(plug.table(), UPPER));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNotPairs() {
+        new Plugboard(new Permutation("(ABC)", UPPER));
+    }
+}
@@ -0,0 +1,145 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Class-data-sharing (AppCDS) archives for Main.  Short runs spend
+ *  more time starting the JVM and loading and verifying classes than
+ *  converting; an archive of the classes a typical run loads, already
+ *  parsed and verified, lets later JVMs map them in instead.
+ *
+ *  An archive is made by a training run of Main in a child JVM started
+ *  with -XX:ArchiveClassesAtExit: it reads a configuration, sets up
+ *  machines and converts a message, and the archive is written as it
+ *  exits.  A JVM uses the archive when started with
+ *  -XX:SharedArchiveFile=ARCHIVE; the option may also be given once in
+ *  the environment variable JDK_JAVA_OPTIONS, which the java launcher
+ *  reads for every run.  The JVM only archives classes loaded from JAR
+ *  files, so the class path must not include directories of classes
+ *  (see the "archive" target of the Makefile, and its "run" target,
+ *  which passes the option whenever the archive exists).  A JVM whose
+ *  class path differs from the training run's ignores the archive.
+ *  @author Sharona Yang
+ */
+final class StartupArchive {
+
+    /** Not instantiable. */
+    private StartupArchive() {
+    }
+
+    /** Write the archive ARCHIVE from a training run of Main with the
+     *  configuration in the file CONFIG. */
+    static void create(String archive, String config) {
+        String classPath = System.getProperty("java.class.path");
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (new File(entry.isEmpty() ? "." : entry).isDirectory()) {
+                throw error("startup archives need classes in JAR files, "
+                            + "but the class path includes the directory "
+                            + "%s", entry.isEmpty() ? "." : entry);
+            }
+        }
+        Main parsed = new Main(List.of(config));
+        Machine mach = parsed.readConfig();
+        parsed.close();
+        Path input = null, output = null;
+        try {
+            input = Files.createTempFile("enigma-training", ".in");
+            output = Files.createTempFile("enigma-training", ".out");
+            writeTraining(mach, input);
+            Files.deleteIfExists(Paths.get(archive));
+            String java = Paths.get(System.getProperty("java.home"), "bin",
+                                    "java").toString();
+            Process child = new ProcessBuilder(
+                java, "-XX:ArchiveClassesAtExit=" + archive, "-cp",
+                classPath, Main.class.getName(), config, input.toString(),
+                output.toString()).inheritIO().start();
+            if (child.waitFor() != 0 || !new File(archive).exists()) {
+                throw error("training run failed; no archive written");
+            }
+        } catch (IOException excp) {
+            throw error("could not write startup archive: %s",
+                        excp.getMessage());
+        } catch (InterruptedException excp) {
+            throw error("interrupted while writing startup archive");
+        } finally {
+            delete(input);
+            delete(output);
+        }
+        System.err.printf("Wrote %s; runs use it when started with "
+                          + "-XX:SharedArchiveFile=%s (e.g., set in "
+                          + "JDK_JAVA_OPTIONS) and the same class path.%n",
+                          archive,
+                          Paths.get(archive).toAbsolutePath().normalize());
+    }
+
+    /** Write to FILE the input for a training run of MACH: a message
+     *  under each of two settings lines, the second with a plugboard. */
+    static void writeTraining(Machine mach, Path file)
+        throws IOException {
+        Alphabet alpha = mach.alphabet();
+        String[] order = Cracker.rotorOrders(mach).get(0);
+        StringBuilder settings = new StringBuilder("*");
+        for (String name : order) {
+            settings.append(' ').append(name);
+        }
+        settings.append(' ');
+        for (int i = 1; i < order.length; i += 1) {
+            settings.append(alpha.toChar(0));
+        }
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < TRAINING_CHARS; i += 1) {
+            msg.append(alpha.toChar((i * 7 + i / alpha.size())
+                                    % alpha.size()));
+        }
+        try (PrintWriter out =
+             new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println(settings);
+            out.println(msg);
+            out.printf("%s (%c%c)%n", settings, alpha.toChar(0),
+                       alpha.toChar(alpha.size() - 1));
+            out.println(msg);
+        }
+    }
+
+    /** Delete FILE, if it is not null, ignoring failures. */
+    private static void delete(Path file) {
+        if (file != null) {
+            file.toFile().delete();
+        }
+    }
+
+    /** Report on the standard error the time since this JVM started and
+     *  the class-data archive it was started with, if any. */
+    static void reportStartup() {
+        long now = System.currentTimeMillis();
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        String archive = "none";
+        if (System.getProperty("java.vm.info", "").contains("sharing")) {
+            archive = "JDK classes only";
+            for (String arg : runtime.getInputArguments()) {
+                if (arg.startsWith(ARCHIVE_OPTION)) {
+                    archive = arg.substring(ARCHIVE_OPTION.length());
+                }
+            }
+        }
+        System.err.printf("startup: %d ms from JVM start to first "
+                          + "output (class-data archive: %s)%n",
+                          now - runtime.getStartTime(), archive);
+    }
+
+    /** Number of characters converted under each settings line of a
+     *  training run. */
+    private static final int TRAINING_CHARS = 2000;
+
+    /** The JVM option naming an archive to use. */
+    private static final String ARCHIVE_OPTION = "-XX:SharedArchiveFile=";
+}
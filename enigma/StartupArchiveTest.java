@@ -0,0 +1,95 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the StartupArchive class.
+ *  @author Sharona Yang
+ */
+public class StartupArchiveTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The naval configuration used by the acceptance tests. */
+    private static final String CONFIG = "../testing/correct/default.conf";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testDirectoryClassPath() {
+        String classPath = System.getProperty("java.class.path");
+        try {
+            System.setProperty("java.class.path",
+                               System.getProperty("java.io.tmpdir"));
+            StartupArchive.create("unused.jsa",
+                                  CONFIG);
+            fail("archive made from a directory of classes");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().contains("JAR files"));
+        } finally {
+            System.setProperty("java.class.path", classPath);
+        }
+    }
+
+    @Test
+    public void testTraining() throws IOException {
+        Main parsed = new Main(List.of(CONFIG));
+        Machine mach = parsed.readConfig();
+        parsed.close();
+        Path input = Files.createTempFile("enigma-training", ".in");
+        Path output = Files.createTempFile("enigma-training", ".out");
+        try {
+            StartupArchive.writeTraining(mach, input);
+            List<String> lines = Files.readAllLines(input);
+            assertEquals(4, lines.size());
+            assertTrue(lines.get(0), lines.get(0).startsWith("* "));
+            assertEquals(lines.get(0) + " (AZ)", lines.get(2));
+            assertEquals(lines.get(1), lines.get(3));
+            Main main = new Main(List.of(CONFIG, input.toString(),
+                                         output.toString()));
+            main.process();
+            main.close();
+            List<String> converted = Files.readAllLines(output);
+            assertEquals(2, converted.size());
+            for (String line : converted) {
+                assertEquals(lines.get(1).length(),
+                             line.replace(" ", "").length());
+            }
+            assertNotEquals(converted.get(0), converted.get(1));
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void testReport() {
+        PrintStream err = System.err;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            System.setErr(new PrintStream(bytes, true));
+            StartupArchive.reportStartup();
+        } finally {
+            System.setErr(err);
+        }
+        String text = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(text, text.matches("startup: \\d+ ms from JVM start to "
+                                      + "first output \\(class-data "
+                                      + "archive: [^)]+\\)\\R"));
+    }
+}
@@ -0,0 +1,538 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** Statistics of a (possibly very large) file of ciphertext in the input
+ *  format of Main: letter frequencies, index of coincidence (overall and
+ *  for each segment following a settings line), bigram and trigram
+ *  counts, and coincidence rates at shifts 1..period for spotting
+ *  periodicity.  Settings lines are not counted; within message lines,
+ *  characters outside the alphabet (such as spaces) are skipped, and
+ *  n-grams and shifts are counted within lines.
+ *
+ *  The file is divided into chunks, each starting at a line boundary,
+ *  which worker threads read with positional reads into their own
+ *  buffers and count into their own long[] histograms.  Per-segment
+ *  counts are kept per chunk and stitched together afterwards by
+ *  numbering each chunk's segments after those of the chunks before it.
+ *  Bytes are taken as characters with the same codes (ISO-8859-1), so
+ *  alphabets must lie within that range.  Shifted letters are compared
+ *  with the incubating Vector API (javac and java option --add-modules
+ *  jdk.incubator.vector).
+ *  @author Sharona Yang
+ */
+public final class Stats {
+
+    /** Print statistics of the file ARGS[1], with the alphabet of the
+     *  configuration file ARGS[0].  Options: --threads (default: the
+     *  number of processors), --period, the largest shift for which to
+     *  report coincidences (default 26), and --chunk, the chunk size in
+     *  bytes (default 16 MiB). */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--threads=(\\d+){0,1} --period=(\\d+){0,1} "
+                                + "--chunk=(\\d+){0,1} --=(.*){2,2}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Stats [--threads=N] "
+                            + "[--period=P] [--chunk=BYTES] CONFIG INPUT");
+            }
+            int threads =
+                Main.intOption(options, "--threads",
+                               Runtime.getRuntime().availableProcessors());
+            int period = Main.intOption(options, "--period", DEFAULT_PERIOD);
+            int chunk = Main.intOption(options, "--chunk", DEFAULT_CHUNK);
+            if (threads < 1 || chunk < 1) {
+                throw error("threads and chunk size must be positive");
+            }
+            Main parsed = new Main(options.get("--").subList(0, 1));
+            Alphabet alpha = parsed.readConfig().alphabet();
+            parsed.close();
+            Stats stats = new Stats(alpha, period);
+            stats.count(options.get("--").get(1), threads, chunk);
+            stats.report(System.out);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Statistics over ALPHA, with coincidences at shifts up to
+     *  PERIOD. */
+    Stats(Alphabet alpha, int period) {
+        _alphabet = alpha;
+        _size = alpha.size();
+        _period = Math.max(0, period);
+        _byteIndex = new int[1 << Byte.SIZE];
+        Arrays.fill(_byteIndex, OTHER);
+        for (int i = 0; i < _size; i += 1) {
+            char c = alpha.toChar(i);
+            if (c >= _byteIndex.length) {
+                throw error("character '%c' does not fit in a byte", c);
+            }
+            _byteIndex[c] = i;
+        }
+        _byteIndex['\n'] = NEWLINE;
+        _trigrams = (long) _size * _size * _size <= MAX_TRIGRAMS;
+        _totals = new Counts(this);
+    }
+
+    /** Count the file NAME with THREADS threads, in chunks of about
+     *  CHUNKSIZE bytes. */
+    void count(String name, int threads, int chunkSize) {
+        FileChannel channel;
+        long fileSize;
+        try {
+            channel = FileChannel.open(Paths.get(name),
+                                       StandardOpenOption.READ);
+            fileSize = channel.size();
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        long size = Math.max(1, chunkSize);
+        int numChunks = (int) Math.max(1, (fileSize + size - 1) / size);
+        Chunk[] chunks = new Chunk[numChunks];
+        AtomicInteger next = new AtomicInteger();
+        int numWorkers = Math.max(1, Math.min(threads, numChunks));
+        ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+        try {
+            List<Future<Counts>> workers = new ArrayList<>();
+            for (int t = 0; t < numWorkers; t += 1) {
+                workers.add(pool.submit(() -> {
+                    Counts counts = new Counts(this);
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    for (int k = next.getAndIncrement(); k < numChunks;
+                         k = next.getAndIncrement()) {
+                        chunks[k] = scan(channel, fileSize, k * size,
+                                         (k + 1) * size, buffer, counts);
+                    }
+                    return counts;
+                }));
+            }
+            for (Future<Counts> worker : workers) {
+                _totals.add(worker.get());
+            }
+        } catch (InterruptedException excp) {
+            throw error("interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("%s", excp.getCause());
+        } finally {
+            pool.shutdown();
+            try {
+                channel.close();
+            } catch (IOException excp) {
+                /* Ignore. */
+            }
+        }
+        _segments.clear();
+        _segments.add(new Segment(null, new long[_size]));
+        for (Chunk chunk : chunks) {
+            _segments.get(_segments.size() - 1).add(chunk._first);
+            for (int i = 0; i < chunk._settings.size(); i += 1) {
+                _segments.add(new Segment(chunk._settings.get(i),
+                                          chunk._letters.get(i)));
+            }
+        }
+        if (_segments.get(0).letters() == 0 && _segments.size() > 1) {
+            _segments.remove(0);
+        }
+    }
+
+    /** Count the lines of CHANNEL (of FILESIZE bytes) that start in
+     *  START .. END-1, after the first line boundary at or after START,
+     *  into COUNTS, using BUFFER for reading.  Return the segment
+     *  counts of the chunk. */
+    private Chunk scan(FileChannel channel, long fileSize, long start,
+                       long end, byte[] buffer, Counts counts)
+        throws IOException {
+        Chunk chunk = new Chunk(_size);
+        long[] letters = chunk._first;
+        int[] index = _byteIndex;
+        int size = _size, period = _period;
+        long[] unigrams = counts._unigrams, bigrams = counts._bigrams,
+            trigrams = counts._trigrams, same = counts._same,
+            pairs = counts._pairs;
+        byte[] line = new byte[Math.max(LINE_BUFFER, 2 * period)];
+        int p1 = -1, p2 = -1, inLine = 0, from = 0;
+        boolean lineStart = start == 0, skipping = start > 0,
+            settings = false;
+        StringBuilder settingsLine = new StringBuilder();
+        long pos = start > 0 ? start - 1 : 0;
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        while (pos < fileSize) {
+            wrapped.clear();
+            int n = channel.read(wrapped, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i += 1, pos += 1) {
+                int b = buffer[i] & 0xff;
+                if (lineStart) {
+                    if (pos >= end) {
+                        return chunk;
+                    }
+                    lineStart = false;
+                    settings = b == '*';
+                    if (settings) {
+                        settingsLine.setLength(0);
+                    }
+                }
+                int k = index[b];
+                if (k == NEWLINE) {
+                    if (settings && !skipping) {
+                        chunk.startSegment(settingsLine.toString().trim());
+                        letters = chunk._letters.get(
+                            chunk._letters.size() - 1);
+                    }
+                    coincide(line, from, inLine, same, pairs);
+                    lineStart = true;
+                    skipping = settings = false;
+                    p1 = p2 = -1;
+                    inLine = from = 0;
+                } else if (skipping) {
+                    continue;
+                } else if (settings) {
+                    settingsLine.append((char) b);
+                } else if (k >= 0) {
+                    letters[k] += 1;
+                    unigrams[k] += 1;
+                    if (p1 >= 0) {
+                        bigrams[p1 * size + k] += 1;
+                        if (p2 >= 0 && trigrams != null) {
+                            trigrams[(p2 * size + p1) * size + k] += 1;
+                        }
+                    }
+                    p2 = p1;
+                    p1 = k;
+                    if (inLine == line.length) {
+                        coincide(line, from, inLine, same, pairs);
+                        System.arraycopy(line, inLine - period, line, 0,
+                                         period);
+                        inLine = from = period;
+                    }
+                    line[inLine++] = (byte) k;
+                }
+            }
+        }
+        coincide(line, from, inLine, same, pairs);
+        if (settings && !skipping) {
+            chunk.startSegment(settingsLine.toString().trim());
+        }
+        return chunk;
+    }
+
+    /** Add to SAME[d] the number of letters LINE[i], FROM <= i < N, equal
+     *  to LINE[i - d], and to PAIRS[d] the number compared, for each
+     *  shift d, 1 <= d <= period, with i - d >= 0. */
+    private void coincide(byte[] line, int from, int n, long[] same,
+                          long[] pairs) {
+        for (int d = 1; d <= _period; d += 1) {
+            int lo = Math.max(d, from);
+            if (lo >= n) {
+                break;
+            }
+            int count = 0, i = lo;
+            for (int top = n - SPECIES.length(); i <= top;
+                 i += SPECIES.length()) {
+                count += ByteVector.fromArray(SPECIES, line, i)
+                    .eq(ByteVector.fromArray(SPECIES, line, i - d))
+                    .trueCount();
+            }
+            for (; i < n; i += 1) {
+                count += line[i] == line[i - d] ? 1 : 0;
+            }
+            same[d] += count;
+            pairs[d] += n - lo;
+        }
+    }
+
+    /** Return the index of coincidence of the letter counts COUNTS. */
+    static double ioc(long[] counts) {
+        long total = 0;
+        double sum = 0;
+        for (long f : counts) {
+            total += f;
+            sum += (double) f * (f - 1);
+        }
+        return total < 2 ? 0 : sum / ((double) total * (total - 1));
+    }
+
+    /** Return the number of letters counted. */
+    long letters() {
+        return Arrays.stream(_totals._unigrams).sum();
+    }
+
+    /** Return the count of each letter, by index. */
+    long[] unigrams() {
+        return _totals._unigrams;
+    }
+
+    /** Return the count of the bigram of indices A, B. */
+    long bigram(int a, int b) {
+        return _totals._bigrams[a * _size + b];
+    }
+
+    /** Return the count of the trigram of indices A, B, C, or -1 if
+     *  trigrams are not counted (for large alphabets). */
+    long trigram(int a, int b, int c) {
+        if (_totals._trigrams == null) {
+            return -1;
+        }
+        return _totals._trigrams[(a * _size + b) * _size + c];
+    }
+
+    /** Return the fraction of letters equal to the letter D places
+     *  earlier in the same line (1 <= D <= period). */
+    double coincidence(int d) {
+        long pairs = _totals._pairs[d];
+        return pairs == 0 ? 0 : (double) _totals._same[d] / pairs;
+    }
+
+    /** Return the segments: the text before the first settings line (if
+     *  it has any letters) and after each settings line. */
+    List<Segment> segments() {
+        return _segments;
+    }
+
+    /** Write a report of my statistics to OUT. */
+    void report(PrintStream out) {
+        long total = letters();
+        double ioc = ioc(_totals._unigrams);
+        out.printf("letters %d%n", total);
+        out.printf("ioc %.6f (x%d = %.4f; uniform %.4f)%n", ioc, _size,
+                   ioc * _size, 1.0);
+        out.println("# letter count percent");
+        for (int i = 0; i < _size; i += 1) {
+            out.printf("%c %d %.3f%n", _alphabet.toChar(i),
+                       _totals._unigrams[i],
+                       total == 0 ? 0 : 100.0 * _totals._unigrams[i] / total);
+        }
+        out.println("# top bigrams");
+        reportTop(out, _totals._bigrams, 2);
+        if (_totals._trigrams != null) {
+            out.println("# top trigrams");
+            reportTop(out, _totals._trigrams, 3);
+        }
+        out.println("# shift coincidence");
+        for (int d = 1; d <= _period; d += 1) {
+            out.printf("%d %.5f%n", d, coincidence(d));
+        }
+        out.println("# segment letters ioc settings");
+        for (int i = 0; i < _segments.size(); i += 1) {
+            Segment seg = _segments.get(i);
+            out.printf("%d %d %.6f %s%n", i, seg.letters(),
+                       ioc(seg.counts()),
+                       seg.settings() == null ? "-" : seg.settings());
+        }
+    }
+
+    /** Print the TOP most frequent N-grams whose counts are in
+     *  COUNTS to OUT. */
+    private void reportTop(PrintStream out, long[] counts, int n) {
+        Integer[] order = new Integer[counts.length];
+        for (int i = 0; i < order.length; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        for (int i = 0; i < Math.min(TOP, order.length); i += 1) {
+            if (counts[order[i]] == 0) {
+                break;
+            }
+            char[] gram = new char[n];
+            for (int j = n - 1, x = order[i]; j >= 0; j -= 1, x /= _size) {
+                gram[j] = _alphabet.toChar(x % _size);
+            }
+            out.printf("%s %d%n", new String(gram), counts[order[i]]);
+        }
+    }
+
+    /** The text following one settings line (or preceding the first). */
+    static final class Segment {
+
+        /** A segment following SETTINGS (null for the text before any
+         *  settings line) with letter counts COUNTS. */
+        Segment(String settings, long[] counts) {
+            _settings = settings;
+            _counts = counts;
+        }
+
+        /** Return my settings line, or null. */
+        String settings() {
+            return _settings;
+        }
+
+        /** Return my letter counts, by index. */
+        long[] counts() {
+            return _counts;
+        }
+
+        /** Return my number of letters. */
+        long letters() {
+            return Arrays.stream(_counts).sum();
+        }
+
+        /** Add COUNTS to my counts. */
+        void add(long[] counts) {
+            for (int i = 0; i < counts.length; i += 1) {
+                _counts[i] += counts[i];
+            }
+        }
+
+        /** Settings line. */
+        private final String _settings;
+
+        /** Letter counts. */
+        private final long[] _counts;
+    }
+
+    /** Segment counts of one chunk: the letters continuing the segment
+     *  in progress at its start, then those following each settings line
+     *  it contains. */
+    private static final class Chunk {
+
+        /** Counts for an alphabet of SIZE letters. */
+        Chunk(int size) {
+            _size = size;
+            _first = new long[size];
+        }
+
+        /** Start counting letters of the segment following SETTINGS. */
+        void startSegment(String settings) {
+            _settings.add(settings);
+            _letters.add(new long[_size]);
+        }
+
+        /** Alphabet size. */
+        private final int _size;
+
+        /** Letters of the segment in progress at the start. */
+        private final long[] _first;
+
+        /** Settings lines starting segments in this chunk. */
+        private final ArrayList<String> _settings = new ArrayList<>();
+
+        /** Letter counts following each of _settings. */
+        private final ArrayList<long[]> _letters = new ArrayList<>();
+    }
+
+    /** The histograms of one thread. */
+    private static final class Counts {
+
+        /** Empty histograms for STATS. */
+        Counts(Stats stats) {
+            int size = stats._size;
+            _unigrams = new long[size];
+            _bigrams = new long[size * size];
+            _trigrams = stats._trigrams ? new long[size * size * size]
+                : null;
+            _same = new long[stats._period + 1];
+            _pairs = new long[stats._period + 1];
+        }
+
+        /** Add the counts in OTHER to mine. */
+        void add(Counts other) {
+            addTo(_unigrams, other._unigrams);
+            addTo(_bigrams, other._bigrams);
+            if (_trigrams != null) {
+                addTo(_trigrams, other._trigrams);
+            }
+            addTo(_same, other._same);
+            addTo(_pairs, other._pairs);
+        }
+
+        /** Add the elements of FROM to those of TO. */
+        private static void addTo(long[] to, long[] from) {
+            for (int i = 0; i < to.length; i += 1) {
+                to[i] += from[i];
+            }
+        }
+
+        /** Letter counts. */
+        private final long[] _unigrams;
+
+        /** Bigram counts, indexed first * size + second. */
+        private final long[] _bigrams;
+
+        /** Trigram counts, indexed as for bigrams, or null. */
+        private final long[] _trigrams;
+
+        /** Number of letters equal to the one D before, indexed by D. */
+        private final long[] _same;
+
+        /** Number of letters with one D before in the line, by D. */
+        private final long[] _pairs;
+    }
+
+    /** Vector shape for comparing shifted letters. */
+    private static final VectorSpecies<Byte> SPECIES =
+        ByteVector.SPECIES_PREFERRED;
+
+    /** Default largest shift for coincidences. */
+    static final int DEFAULT_PERIOD = 26;
+
+    /** Default chunk size in bytes. */
+    static final int DEFAULT_CHUNK = 16 << 20;
+
+    /** Size of each thread's read buffer. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Minimum size of each thread's buffer of the letters of a line. */
+    private static final int LINE_BUFFER = 1 << 16;
+
+    /** Largest number of trigrams counted. */
+    private static final long MAX_TRIGRAMS = 1 << 21;
+
+    /** Number of n-grams reported. */
+    private static final int TOP = 10;
+
+    /** _byteIndex value for characters outside the alphabet. */
+    private static final int OTHER = -1;
+
+    /** _byteIndex value for a line break. */
+    private static final int NEWLINE = -2;
+
+    /** The alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Its size. */
+    private final int _size;
+
+    /** Largest shift for coincidences. */
+    private final int _period;
+
+    /** Alphabet index of each byte, or OTHER or NEWLINE. */
+    private final int[] _byteIndex;
+
+    /** True iff trigrams are counted. */
+    private final boolean _trigrams;
+
+    /** Totals over all threads. */
+    private final Counts _totals;
+
+    /** Segments, in order. */
+    private final ArrayList<Segment> _segments = new ArrayList<>();
+}
@@ -0,0 +1,133 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Stats class.
+ *  @author Sharona Yang
+ */
+public class StatsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a file of NUMSEGMENTS segments, with CRLF line breaks on
+     *  some lines and no line break at the end. */
+    private Path input(int numSegments) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int k = 0; k < numSegments; k += 1) {
+            text.append("* B Beta III IV I A").append((char) ('A' + k % 26))
+                .append("LE\r\n");
+            for (int i = 0; i < 4; i += 1) {
+                for (int j = 0; j < 11 + 5 * i + k; j += 1) {
+                    text.append(j % 6 == 5 ? ' '
+                                : (char) ('A' + (i * j + k) % (k % 3 + 2)));
+                }
+                text.append(i % 2 == 0 ? "\n" : "\r\n");
+            }
+        }
+        text.append("ABAB");
+        Path file = Files.createTempFile("enigma-stats", ".txt");
+        Files.write(file, text.toString().getBytes());
+        return file;
+    }
+
+    /** Return the statistics of FILE counted with THREADS threads and
+     *  chunks of CHUNKSIZE bytes. */
+    private Stats count(Path file, int threads, int chunkSize) {
+        Stats stats = new Stats(UPPER, 8);
+        stats.count(file.toString(), threads, chunkSize);
+        return stats;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSmall() throws IOException {
+        Path file = Files.createTempFile("enigma-stats", ".txt");
+        Files.write(file, "AAB A\n* X\nABAB\n*Y\n\n".getBytes());
+        Stats stats = count(file, 1, 1 << 20);
+        assertEquals(8, stats.letters());
+        assertEquals(5, stats.unigrams()[0]);
+        assertEquals(3, stats.unigrams()[1]);
+        assertEquals(3, stats.bigram(0, 1));
+        assertEquals(1, stats.bigram(0, 0));
+        assertEquals(2, stats.trigram(0, 1, 0));
+        assertEquals(1, stats.trigram(1, 0, 1));
+        assertEquals(3, stats.segments().size());
+        assertNull(stats.segments().get(0).settings());
+        assertEquals(4, stats.segments().get(0).letters());
+        assertEquals("* X", stats.segments().get(1).settings());
+        assertEquals(1.0 / 3, Stats.ioc(stats.segments().get(1).counts()),
+                     1e-9);
+        assertEquals(0, stats.segments().get(2).letters());
+        assertEquals(1.0 / 6, stats.coincidence(1), 1e-9);
+        assertEquals(3.0 / 4, stats.coincidence(2), 1e-9);
+        assertEquals(26.0 / 56, Stats.ioc(stats.unigrams()), 1e-9);
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        Path file = input(50);
+        Stats whole = count(file, 1, 1 << 20);
+        assertEquals(50, whole.segments().size());
+        for (int chunk : new int[] { 1, 7, 40, 333 }) {
+            Stats parts = count(file, 3, chunk);
+            assertArrayEquals(whole.unigrams(), parts.unigrams());
+            assertEquals(whole.segments().size(), parts.segments().size());
+            for (int i = 0; i < whole.segments().size(); i += 1) {
+                assertEquals(whole.segments().get(i).settings(),
+                             parts.segments().get(i).settings());
+                assertArrayEquals(whole.segments().get(i).counts(),
+                                  parts.segments().get(i).counts());
+            }
+            for (int a = 0; a < 4; a += 1) {
+                for (int b = 0; b < 4; b += 1) {
+                    assertEquals(whole.bigram(a, b), parts.bigram(a, b));
+                    assertEquals(whole.trigram(a, b, 0),
+                                 parts.trigram(a, b, 0));
+                }
+            }
+            for (int d = 1; d <= 8; d += 1) {
+                assertEquals(whole.coincidence(d), parts.coincidence(d),
+                             1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testNoThreads() throws IOException {
+        Path file = input(5);
+        Stats whole = count(file, 1, 1 << 20);
+        Stats stats = count(file, 0, 0);
+        assertArrayEquals(whole.unigrams(), stats.unigrams());
+        assertEquals(whole.segments().size(), stats.segments().size());
+    }
+
+    @Test
+    public void testLongLine() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200000; i += 1) {
+            text.append((char) ('A' + i % 3));
+        }
+        Path file = Files.createTempFile("enigma-stats", ".txt");
+        Files.write(file, text.append("\nAB").toString().getBytes());
+        Stats stats = count(file, 2, 1 << 20);
+        assertEquals(0.0, stats.coincidence(1), 1e-12);
+        assertEquals(1.0, stats.coincidence(3), 1e-12);
+        assertEquals(1.0, stats.coincidence(6), 1e-12);
+        assertEquals(200000, stats.bigram(0, 1) + stats.bigram(1, 2)
+                     + stats.bigram(2, 0));
+    }
+}
@@ -16,7 +16,27 @@ public class UnitTest {
         }
         System.exit(textui.runClasses(PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                MachineTest.class,
+                CrackerTest.class,
+                VectorMachineTest.class,
+                KeystreamTest.class,
+                BatchTest.class,
+                CompiledMachineTest.class,
+                CheckpointTest.class,
+                EnigmaProcessorTest.class,
+                EnigmaStreamsTest.class,
+                StatsTest.class,
+                CatalogTest.class,
+                RotorCoreTest.class,
+                InteractiveTest.class,
+                KeySheetsTest.class,
+                FuzzTest.class,
+                CompositeStoreTest.class,
+                KeySearchTest.class,
+                EngineSelectorTest.class,
+                StartupArchiveTest.class,
+                ColumnCipherTest.class,
+                ParallelGzipOutputStreamTest.class));
     }
 
 }
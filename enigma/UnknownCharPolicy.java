@@ -0,0 +1,14 @@
+package enigma;
+
+/** What the Enigma filter streams do with a character that is not in
+ *  the machine's alphabet.
+ *  @author Sharona Yang
+ */
+enum UnknownCharPolicy {
+    /** Pass it on unchanged, without advancing the rotors. */
+    PASS,
+    /** Leave it out. */
+    DROP,
+    /** Throw an IOException. */
+    FAIL
+}
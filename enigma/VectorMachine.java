@@ -0,0 +1,274 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static enigma.EnigmaException.*;
+
+/** A bank of Enigma machines sharing an alphabet, rotor count and pawl
+ *  count, but each with its own key (rotor order, positions and
+ *  plugboard), that convert the same message in lockstep.  Each machine
+ *  occupies one lane of a SIMD vector: rotor positions are held in
+ *  vectors, stepping is done with lane masks, and every rotor hop is a
+ *  gather from a table holding the wirings of all lanes.  The results
+ *  are exactly those of the Machines the lanes were copied from.  On
+ *  one AVX-512 core it is at most 1.3 times as fast as separate
+ *  Machines with 8 lanes, and 1.5 to 2.1 times with 64 (see
+ *  bench/results/baseline.txt).
+ *
+ *  Requires the jdk.incubator.vector module (javac and java option
+ *  --add-modules jdk.incubator.vector).
+ *  @author Sharona Yang
+ */
+class VectorMachine {
+
+    /** Vector shape used for lanes. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** A bank of KEYS.length lanes, lane K starting in the state of
+     *  KEYS[K], each of which must have its rotors inserted. The KEYS
+     *  themselves are not modified. */
+    VectorMachine(Machine[] keys) {
+        if (keys.length == 0) {
+            throw error("a vector machine needs at least one key");
+        }
+        _alphabet = keys[0].alphabet();
+        _size = _alphabet.size();
+        _numRotors = keys[0].numRotors();
+        _pawls = keys[0].numPawls();
+        _lanes = keys.length;
+        int padded = (_lanes + SPECIES.length() - 1)
+            / SPECIES.length() * SPECIES.length();
+        int tableSize = padded * _size;
+
+        _plugboard = new int[tableSize];
+        _forward = new int[_numRotors][tableSize];
+        _backward = new int[_numRotors][tableSize];
+        _notches = new int[_numRotors][tableSize];
+        _rotates = new boolean[_numRotors][padded];
+        _positions = new int[_numRotors][padded];
+        _bases = new int[padded];
+        for (int lane = 0; lane < padded; lane += 1) {
+            _bases[lane] = lane * _size;
+        }
+        for (int lane = 0; lane < padded; lane += 1) {
+            setKey(lane, keys[Math.min(lane, _lanes - 1)]);
+        }
+    }
+
+    /** Return the number of machines I run. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Return the number of rotor slots of each lane. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls of each lane. */
+    int numPawls() {
+        return _pawls;
+    }
+
+    /** Return the common alphabet of my lanes. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the setting of rotor #K of lane LANE. */
+    int setting(int lane, int k) {
+        return _positions[k][lane];
+    }
+
+    /** Set lane LANE to the current state of KEY, which must have my
+     *  alphabet, rotor count and pawl count, and its rotors inserted. */
+    void setKey(int lane, Machine key) {
+        if (key.alphabet().size() != _size || key.numRotors() != _numRotors
+            || key.numPawls() != _pawls) {
+            throw error("keys of a vector machine must have the same shape");
+        }
+        int base = _bases[lane];
+        Permutation plugboard = key.plugboard();
+        for (int c = 0; c < _size; c += 1) {
+            _plugboard[base + c] =
+                plugboard == null ? c : plugboard.permute(c);
+        }
+        for (int k = 0; k < _numRotors; k += 1) {
+            Rotor rotor = key.getRotor(k);
+            if (rotor == null) {
+                throw error("keys of a vector machine need all rotors");
+            }
+            Permutation perm = rotor.permutation();
+            Rotor probe = rotor.copy();
+            for (int c = 0; c < _size; c += 1) {
+                _forward[k][base + c] = perm.permute(c);
+                _backward[k][base + c] = perm.invert(c);
+                if (k > 0) {
+                    probe.set(c);
+                    _notches[k][base + c] = probe.atNotch() ? 1 : 0;
+                }
+            }
+            _rotates[k][lane] = rotor.rotates();
+            _positions[k][lane] = rotor.setting();
+        }
+    }
+
+    /** Convert the first N indices of MSG in every lane, storing the
+     *  result of lane K in the first N elements of RESULT[K] and updating
+     *  the positions of the rotors accordingly. */
+    void convert(int[] msg, int[][] result, int n) {
+        int[] scratch = new int[SPECIES.length()];
+        int[] out = new int[SPECIES.length()];
+        IntVector[] posns = new IntVector[_numRotors];
+        VectorMask<Integer>[] rotates = newMasks();
+        VectorMask<Integer>[] turns = newMasks();
+        for (int lane0 = 0; lane0 < _bases.length;
+             lane0 += SPECIES.length()) {
+            IntVector bases = IntVector.fromArray(SPECIES, _bases, lane0);
+            for (int k = 0; k < _numRotors; k += 1) {
+                posns[k] = IntVector.fromArray(SPECIES, _positions[k], lane0);
+                rotates[k] = VectorMask.fromArray(SPECIES, _rotates[k],
+                                                  lane0);
+            }
+            for (int i = 0; i < n; i += 1) {
+                advanceRotors(posns, bases, rotates, turns, scratch);
+                IntVector c = gather(_plugboard,
+                                     bases.add(msg[i]), scratch);
+                for (int k = _numRotors - 1; k >= 0; k -= 1) {
+                    c = hop(_forward[k], c, posns[k], bases, scratch);
+                }
+                for (int k = 1; k < _numRotors; k += 1) {
+                    c = hop(_backward[k], c, posns[k], bases, scratch);
+                }
+                c = gather(_plugboard, bases.add(c), scratch);
+                c.intoArray(out, 0);
+                int lanes = Math.min(SPECIES.length(), _lanes - lane0);
+                for (int j = 0; j < lanes; j += 1) {
+                    result[lane0 + j][i] = out[j];
+                }
+            }
+            for (int k = 0; k < _numRotors; k += 1) {
+                posns[k].intoArray(_positions[k], lane0);
+            }
+        }
+    }
+
+    /** Returns the encodings/decodings of MSG, one per lane, updating the
+     *  state of the rotors accordingly. */
+    String[] convert(String msg) {
+        int[] text = new int[msg.length()];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = _alphabet.toInt(msg.charAt(i));
+        }
+        int[][] converted = new int[_lanes][text.length];
+        convert(text, converted, text.length);
+        String[] result = new String[_lanes];
+        char[] chars = new char[text.length];
+        for (int lane = 0; lane < _lanes; lane += 1) {
+            for (int i = 0; i < chars.length; i += 1) {
+                chars[i] = _alphabet.toChar(converted[lane][i]);
+            }
+            result[lane] = new String(chars);
+        }
+        return result;
+    }
+
+    /** Advance the rotor positions POSNS of the lanes at BASES as
+     *  Machine does, given which of them ROTATE.  TURNS and SCRATCH are
+     *  scratch space. */
+    private void advanceRotors(IntVector[] posns, IntVector bases,
+                               VectorMask<Integer>[] rotate,
+                               VectorMask<Integer>[] turns, int[] scratch) {
+        int fast = _numRotors - 1, first = _numRotors - _pawls;
+        for (int k = Math.max(first + 1, 1); k <= fast; k += 1) {
+            turns[k] = gather(_notches[k], bases.add(posns[k]), scratch)
+                .compare(VectorOperators.NE, 0);
+        }
+        VectorMask<Integer> none = SPECIES.maskAll(false);
+        for (int k = Math.max(first, 1); k < fast; k += 1) {
+            VectorMask<Integer> moves = turns[k + 1].and(rotate[k]);
+            if (k > first) {
+                moves = moves.or(turns[k].and(rotate[k - 1]));
+            }
+            posns[k] = step(posns[k], moves);
+        }
+        posns[fast] = step(posns[fast], rotate[fast]);
+    }
+
+    /** Return POSN advanced by one, with wraparound, in the lanes in
+     *  MOVES. */
+    private IntVector step(IntVector posn, VectorMask<Integer> moves) {
+        IntVector next = posn.add(1, moves);
+        return next.blend(0, next.compare(VectorOperators.EQ, _size));
+    }
+
+    /** Return the conversion of C by the rotors at POSN whose wirings,
+     *  for the lanes at BASES, are in TABLE. SCRATCH is scratch space. */
+    private IntVector hop(int[] table, IntVector c, IntVector posn,
+                          IntVector bases, int[] scratch) {
+        IntVector p = wrap(c.add(posn));
+        IntVector e = gather(table, bases.add(p), scratch);
+        return wrap(e.sub(posn));
+    }
+
+    /** Return X, whose lanes are in -size..2*size-1, modulo size. */
+    private IntVector wrap(IntVector x) {
+        x = x.sub(_size, x.compare(VectorOperators.GE, _size));
+        return x.add(_size, x.compare(VectorOperators.LT, 0));
+    }
+
+    /** Return the elements of TABLE at INDICES, using SCRATCH to hold
+     *  the index map. */
+    private static IntVector gather(int[] table, IntVector indices,
+                                    int[] scratch) {
+        indices.intoArray(scratch, 0);
+        return IntVector.fromArray(SPECIES, table, 0, scratch, 0);
+    }
+
+    /** Return an array of masks, one per rotor slot. */
+    @SuppressWarnings("unchecked")
+    private VectorMask<Integer>[] newMasks() {
+        return (VectorMask<Integer>[]) new VectorMask<?>[_numRotors];
+    }
+
+    /** Common alphabet of my lanes. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** The number of rotors of each lane. */
+    private final int _numRotors;
+
+    /** The number of pawls of each lane. */
+    private final int _pawls;
+
+    /** The number of lanes in use; the rest pad the last vector. */
+    private final int _lanes;
+
+    /** _bases[L] is the offset of lane L's entries in each table. */
+    private final int[] _bases;
+
+    /** Plugboard of every lane. */
+    private final int[] _plugboard;
+
+    /** _forward[K] holds the permutations of rotor #K of every lane. */
+    private final int[][] _forward;
+
+    /** _backward[K] holds the inverse permutations of rotor #K. */
+    private final int[][] _backward;
+
+    /** _notches[K] is nonzero at the settings of rotor #K that are at a
+     *  notch. */
+    private final int[][] _notches;
+
+    /** _rotates[K][L] is true iff rotor #K of lane L rotates. */
+    private final boolean[][] _rotates;
+
+    /** _positions[K][L] is the setting of rotor #K of lane L. */
+    private final int[][] _positions;
+}
@@ -0,0 +1,89 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the VectorMachine class.
+ *  @author Sharona Yang
+ */
+public class VectorMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(100);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String[][] ORDERS = {
+        { "B", "Beta", "III", "IV", "I" },
+        { "C", "Gamma", "I", "II", "III" },
+        { "B", "Gamma", "V", "VI", "VII" },
+        { "C", "Beta", "VIII", "II", "IV" },
+    };
+
+    private static final String[] NOTCHES = {
+        "I", "Q", "II", "E", "III", "V", "IV", "J", "V", "Z",
+        "VI", "ZM", "VII", "ZM", "VIII", "ZM",
+    };
+
+    /** Return an unkeyed machine with the naval rotors. */
+    private Machine naval() {
+        HashMap<String, String> nav = NAVALA;
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(nav.get("B"), UPPER)));
+        rotors.add(new Reflector("C", new Permutation(nav.get("C"), UPPER)));
+        rotors.add(new FixedRotor("Beta",
+                                  new Permutation(nav.get("Beta"), UPPER)));
+        rotors.add(new FixedRotor("Gamma",
+                                  new Permutation(nav.get("Gamma"), UPPER)));
+        for (int i = 0; i < NOTCHES.length; i += 2) {
+            rotors.add(new MovingRotor(NOTCHES[i],
+                                       new Permutation(nav.get(NOTCHES[i]),
+                                                       UPPER),
+                                       NOTCHES[i + 1]));
+        }
+        return new Machine(UPPER, 5, 3, rotors);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesMachine() {
+        int lanes = 37;
+        Machine[] keys = new Machine[lanes];
+        for (int k = 0; k < lanes; k += 1) {
+            keys[k] = naval();
+            keys[k].insertRotors(ORDERS[k % ORDERS.length]);
+            keys[k].setRotors(new int[] { k % 26, (k * 7) % 26,
+                                          (k * 11 + 3) % 26, (k * 5) % 26 });
+            keys[k].setPlugboard(new Permutation(k % 2 == 0 ? "(AQ) (EX)"
+                                                 : "(TR) (BY) (HZ)", UPPER));
+        }
+        VectorMachine vec = new VectorMachine(keys);
+        assertEquals(lanes, vec.lanes());
+
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 2000; i += 1) {
+            msg.append(UPPER_STRING.charAt((i * 17 + i / 26) % 26));
+        }
+        String first = msg.substring(0, 700), rest = msg.substring(700);
+        String[] got1 = vec.convert(first), got2 = vec.convert(rest);
+        for (int k = 0; k < lanes; k += 1) {
+            assertEquals(msg("lane " + k, "first part"),
+                         keys[k].convert(first), got1[k]);
+            assertEquals(msg("lane " + k, "second part"),
+                         keys[k].convert(rest), got2[k]);
+            for (int r = 1; r < keys[k].numRotors(); r += 1) {
+                assertEquals(keys[k].getRotor(r).setting(),
+                             vec.setting(k, r));
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+# Usage: python3 loadtest.py [--profile=P] [--tolerance=T] [--update]
+#                            [--java=JAVA] [--keep] [CASE ...]
+#     Generates deterministic large inputs for the profile P (smoke, mb or
+#     gb; default smoke), runs each through java enigma.Main end to end,
+#     and records its throughput, peak RSS, peak heap and total GC pause
+#     time.  The results are compared against baselines/P.txt; a case
+#     fails if it is slower, or uses more memory or GC time, than its
+#     baseline by more than the fraction T (default 0.25).  With --update,
+#     the results are written to baselines/P.txt instead.  Generated files
+#     are kept in load/ for reuse with --keep, and otherwise deleted.
+#     Exits normally if there are no regressions, and otherwise with code 1.
+
+import os, re, sys, time, random, subprocess, tempfile
+
+HERE = os.path.dirname(os.path.abspath(__file__))
+LOAD = os.path.join(HERE, "load")
+BASELINES = os.path.join(HERE, "baselines")
+
+# Total input size of each case, by profile, in bytes.
+PROFILES = { "smoke": 4 << 20, "mb": 64 << 20, "gb": 1 << 30 }
+
+# Size of the block of text from which inputs are assembled.
+BLOCK = 1 << 20
+
+# Metrics, whether larger values are better, and the least change in each
+# that counts as a regression however small the baseline.
+METRICS = [ ("mb_per_s", True, 0.0), ("rss_mb", False, 8.0),
+            ("heap_mb", False, 8.0), ("gc_ms", False, 50.0) ]
+
+UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+
+# Printable ASCII, less the characters the configuration syntax reserves.
+# An even number of characters, so that a reflector can pair them all.
+WIDE = "".join(chr(c) for c in range(ord('!'), ord('~') + 1)
+               if chr(c) not in "*()~")
+
+def cycle(rand, chars):
+    """A single cycle through all of CHARS in a random order."""
+    order = list(chars)
+    rand.shuffle(order)
+    return "(" + "".join(order) + ")"
+
+def pairs(rand, chars, n=None):
+    """Random disjoint pairs of CHARS: N of them, or all if N is None."""
+    order = list(chars)
+    rand.shuffle(order)
+    if n is None:
+        n = len(order) // 2
+    return [ "(" + order[2 * i] + order[2 * i + 1] + ")" for i in range(n) ]
+
+def wide_config(rand):
+    """The text of a configuration over WIDE with randomly wired rotors."""
+    lines = [ WIDE, " 5 3" ]
+    for i in range(8):
+        notches = "".join(rand.sample(WIDE, 1 + i % 3))
+        lines.append(" M%d M%s %s" % (i, notches, cycle(rand, WIDE)))
+    for i in range(2):
+        lines.append(" N%d N %s" % (i, cycle(rand, WIDE)))
+    lines.append(" R0 R " + " ".join(pairs(rand, WIDE)))
+    return "\n".join(lines) + "\n"
+
+def naval_settings(rand):
+    """A random settings line for default.conf."""
+    moving = rand.sample([ "I", "II", "III", "IV", "V", "VI", "VII", "VIII" ],
+                         3)
+    return "* %s %s %s %s %s" % (rand.choice("BC"),
+                                 rand.choice([ "Beta", "Gamma" ]),
+                                 " ".join(moving),
+                                 "".join(rand.choices(UPPER, k=4)),
+                                 " ".join(pairs(rand, UPPER,
+                                                rand.randrange(11))))
+
+def wide_settings(rand):
+    """A random settings line for the configuration from wide_config."""
+    moving = rand.sample([ "M%d" % i for i in range(8) ], 3)
+    return "* R0 %s %s %s %s" % (rand.choice([ "N0", "N1" ]),
+                                 " ".join(moving),
+                                 "".join(rand.choices(WIDE, k=4)),
+                                 " ".join(pairs(rand, WIDE,
+                                                rand.randrange(20))))
+
+# Each case: a configuration (None for default.conf), the characters of its
+# messages, a function returning a settings line, the range of message line
+# lengths, and the number of message lines between settings lines.
+CASES = {
+    "settings": (None, UPPER, naval_settings, (5, 60), 4),
+    "longlines": (None, UPPER, naval_settings, (50000, 200000), 64),
+    "wide": (wide_config, WIDE, wide_settings, (20, 120), 32),
+}
+
+def block(rand, chars, settings, lengths, every):
+    """About BLOCK bytes of settings and message lines."""
+    lines, size, n = [], 0, 0
+    while size < BLOCK:
+        if n % every == 0:
+            line = settings(rand)
+        else:
+            length = rand.randint(*lengths)
+            text = "".join(rand.choices(chars, k=length))
+            line = " ".join(text[i:i + 5] for i in range(0, length, 5))
+        lines.append(line)
+        size += len(line) + 1
+        n += 1
+    return "\n".join(lines) + "\n"
+
+def generate(name, size):
+    """Write the input and configuration of case NAME, with SIZE bytes of
+    input, unless already present.  Return their file names."""
+    config, chars, settings, lengths, every = CASES[name]
+    rand = random.Random(name)
+    inp = os.path.join(LOAD, "%s-%d.in" % (name, size))
+    conf = os.path.join(HERE, "correct", "default.conf")
+    if config is not None:
+        conf = os.path.join(LOAD, "%s.conf" % name)
+        with open(conf, "w") as out:
+            out.write(config(rand))
+    if os.path.exists(inp) and os.path.getsize(inp) >= size:
+        return conf, inp
+    # A handful of distinct blocks, repeated: the data are deterministic
+    # and varied without generating gigabytes of random text in Python.
+    blocks = [ block(rand, chars, settings, lengths, every).encode()
+               for _ in range(min(8, max(1, size // BLOCK))) ]
+    with open(inp + ".tmp", "wb") as out:
+        written, i = 0, 0
+        while written < size:
+            data = blocks[i % len(blocks)]
+            out.write(data)
+            written += len(data)
+            i += 1
+    os.replace(inp + ".tmp", inp)
+    return conf, inp
+
+def run(java, conf, inp):
+    """Run enigma.Main with configuration CONF on input INP, discarding the
+    output.  Return a dictionary of metrics."""
+    gclog = os.path.join(LOAD, "GC.txt")
+    cmd = [ java, "-Xlog:gc,gc+heap+exit:file=%s" % gclog,
+            "enigma.Main", conf, inp, os.devnull ]
+    # Standard error goes to a file rather than a pipe, which a chatty
+    # run could fill while we wait for it to exit.
+    with tempfile.TemporaryFile(dir=LOAD) as err:
+        start = time.perf_counter()
+        proc = subprocess.Popen(cmd, stderr=err)
+        _, status, usage = os.wait4(proc.pid, 0)
+        elapsed = time.perf_counter() - start
+        proc.returncode = os.waitstatus_to_exitcode(status)
+        err.seek(0)
+        errors = err.read().decode()
+    if proc.returncode != 0:
+        raise RuntimeError("%s failed (%d): %s" % (" ".join(cmd),
+                                                   proc.returncode, errors))
+    heap, pauses = 0, 0.0
+    with open(gclog) as log:
+        for line in log:
+            m = re.search(r"(\d+)M->\d+M\(\d+M\) ([\d.]+)ms", line)
+            if m:
+                heap = max(heap, int(m.group(1)))
+                pauses += float(m.group(2))
+            m = re.search(r"used (\d+)K", line)
+            if m:
+                heap = max(heap, int(m.group(1)) // 1024)
+    os.remove(gclog)
+    return { "mb_per_s": os.path.getsize(inp) / (1 << 20) / elapsed,
+             "rss_mb": usage.ru_maxrss / 1024.0,
+             "heap_mb": float(heap), "gc_ms": pauses }
+
+def read_baselines(name):
+    """The baselines in file NAME, as a dictionary of metric dictionaries
+    by case, or {} if there are none."""
+    result = {}
+    if not os.path.exists(name):
+        return result
+    with open(name) as inp:
+        for line in inp:
+            fields = line.split()
+            if not fields or fields[0].startswith("#"):
+                continue
+            result[fields[0]] = { key: float(value) for key, value in
+                                  (f.split("=") for f in fields[1:]) }
+    return result
+
+def write_baselines(name, results):
+    """Write RESULTS, a dictionary of metric dictionaries by case, to the
+    file NAME."""
+    with open(name, "w") as out:
+        out.write("# case metric=value ...\n")
+        for case in sorted(results):
+            out.write(case + " " +
+                      " ".join("%s=%.3f" % (key, results[case][key])
+                               for key, _, _ in METRICS) + "\n")
+
+def regressions(result, baseline, tolerance):
+    """Descriptions of the metrics in RESULT that are worse than those in
+    BASELINE by more than TOLERANCE."""
+    found = []
+    for key, larger, slack in METRICS:
+        if key not in baseline:
+            continue
+        old, new = baseline[key], result[key]
+        if larger:
+            bad = new < old * (1 - tolerance) - slack
+        else:
+            bad = new > old * (1 + tolerance) + slack
+        if bad:
+            found.append("%s %.1f (baseline %.1f)" % (key, new, old))
+    return found
+
+def main(args):
+    profile, tolerance, update, keep = "smoke", 0.25, False, False
+    java = os.environ.get("JAVA", "java")
+    cases = []
+    for arg in args:
+        if arg.startswith("--profile="):
+            profile = arg.split("=", 1)[1]
+        elif arg.startswith("--tolerance="):
+            tolerance = float(arg.split("=", 1)[1])
+        elif arg.startswith("--java="):
+            java = arg.split("=", 1)[1]
+        elif arg == "--update":
+            update = True
+        elif arg == "--keep":
+            keep = True
+        elif arg in CASES:
+            cases.append(arg)
+        else:
+            print("Usage: python3 loadtest.py [--profile=P] [--tolerance=T] "
+                  "[--update] [--java=JAVA] [--keep] [CASE ...]",
+                  file=sys.stderr)
+            return 1
+    if profile not in PROFILES:
+        print("unknown profile: %s" % profile, file=sys.stderr)
+        return 1
+    cases = cases or sorted(CASES)
+    os.makedirs(LOAD, exist_ok=True)
+    baseline_file = os.path.join(BASELINES, "%s.txt" % profile)
+    baselines = read_baselines(baseline_file)
+    results = dict(baselines)
+    code = 0
+    for case in cases:
+        print("%s/%s: " % (profile, case), end="", flush=True)
+        conf, inp = generate(case, PROFILES[profile])
+        try:
+            result = run(java, conf, inp)
+        except RuntimeError as excp:
+            print("ERROR (%s)" % excp)
+            code = 1
+            continue
+        finally:
+            if not keep:
+                os.remove(inp)
+        results[case] = result
+        summary = ", ".join("%s=%.1f" % (key, result[key])
+                            for key, _, _ in METRICS)
+        if update:
+            print("%s (recorded)" % summary)
+        elif case not in baselines:
+            print("%s (no baseline)" % summary)
+        else:
+            bad = regressions(result, baselines[case], tolerance)
+            if bad:
+                code = 1
+                print("REGRESSION: " + "; ".join(bad))
+            else:
+                print("OK: " + summary)
+    if update:
+        os.makedirs(BASELINES, exist_ok=True)
+        write_baselines(baseline_file, results)
+    return code
+
+if __name__ == "__main__":
+    sys.exit(main(sys.argv[1:]))